@@ -0,0 +1,122 @@
+package com.example.lab10.bench;
+
+import com.example.lab10.Lab10Application;
+import com.example.lab10.model.Note;
+import com.example.lab10.service.NoteService;
+import com.example.lab10.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+ * NoteService CRUD against a temporary SQLite file.
+ *
+ * The whole app is started once per fork (Flyway, Hibernate, Hikari, all as in
+ * production), then the service is called directly as a logged-in user.
+ * The user owns 50 notes, so "list" returns a realistic page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteServiceBenchmark {
+
+    private static final String EMAIL = "bench@example.test";
+
+    private Path dir;
+    private ConfigurableApplicationContext app;
+    private NoteService noteService;
+    private Integer noteId;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("lab10-jmh");
+        app = new SpringApplicationBuilder(Lab10Application.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:sqlite:" + dir.resolve("bench.db"),
+                "--lab10.upload.dir=" + dir.resolve("uploads"),
+                "--lab10.upload.watch=false",
+                "--lab10.spans.enabled=false",
+                "--logging.level.root=WARN"
+        );
+        noteService = app.getBean(NoteService.class);
+
+        app.getBean(UserService.class).register(EMAIL, "Correct-Horse-Battery-9");
+        loginOnThisThread();
+
+        for (int i = 0; i < 50; i++) {
+            noteService.create("note " + i, "content of note " + i);
+        }
+        noteId = noteService.create("updated", "v0").getId();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        app.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /*
+     * NoteService reads the user from the SecurityContext (a ThreadLocal),
+     * so every benchmark thread logs in once.
+     */
+    @State(Scope.Thread)
+    public static class LoggedIn {
+        @Setup
+        public void setup() {
+            loginOnThisThread();
+        }
+    }
+
+    @Benchmark
+    public List<Note> list(LoggedIn user) {
+        return noteService.findMyNotes();
+    }
+
+    @Benchmark
+    public Note get(LoggedIn user) {
+        return noteService.getMineOr404(noteId);
+    }
+
+    @Benchmark
+    public Note update(LoggedIn user) {
+        return noteService.updateMine(noteId, "updated", "v" + System.nanoTime());
+    }
+
+    @Benchmark
+    public void createAndDelete(LoggedIn user) {
+        Note note = noteService.create("temporary", "created and deleted");
+        noteService.deleteMine(note.getId());
+    }
+
+    private static void loginOnThisThread() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                EMAIL, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.lab10.bench;
+
+import com.example.lab10.security.SimpleRateLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * SimpleRateLimitFilter under contention (4 threads).
+ *
+ * - sameClient:  every thread posts from the same IP (one hot deque; after the
+ *                first 4 requests everything is rejected and forwarded)
+ * - manyClients: each request comes from one of 10 000 IPs (map lookups spread out)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimitFilterBenchmark {
+
+    private static final FilterChain NOOP_CHAIN = (request, response) -> { };
+
+    @State(Scope.Benchmark)
+    public static class Filter {
+        SimpleRateLimitFilter filter;
+
+        @Setup
+        public void setup() {
+            filter = new SimpleRateLimitFilter(new SimpleMeterRegistry(), 4, 60);
+        }
+    }
+
+    /*
+     * One request/response pair per thread, reused for every call.
+     */
+    @State(Scope.Thread)
+    public static class Exchange {
+        MockHttpServletRequest request;
+        MockHttpServletResponse response;
+
+        @Setup
+        public void setup() {
+            request = new MockHttpServletRequest("POST", "/login");
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    @Benchmark
+    public int sameClient(Filter state, Exchange exchange) throws Exception {
+        exchange.request.setRemoteAddr("10.0.0.1");
+        return run(state, exchange);
+    }
+
+    @Benchmark
+    public int manyClients(Filter state, Exchange exchange) throws Exception {
+        int client = ThreadLocalRandom.current().nextInt(10_000);
+        exchange.request.setRemoteAddr("10.0." + (client >> 8) + "." + (client & 0xff));
+        return run(state, exchange);
+    }
+
+    private static int run(Filter state, Exchange exchange) throws Exception {
+        exchange.response.reset();
+        state.filter.doFilter(exchange.request, exchange.response, NOOP_CHAIN);
+        return exchange.response.getStatus();
+    }
+}
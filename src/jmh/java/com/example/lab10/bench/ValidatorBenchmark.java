@@ -0,0 +1,82 @@
+package com.example.lab10.bench;
+
+import com.example.lab10.dto.CreateNoteRequest;
+import com.example.lab10.dto.RegisterRequest;
+import com.example.lab10.dto.ValidTitleValidator;
+import com.example.lab10.validation.PasswordPolicyValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The custom validators, called directly and through Hibernate Validator
+ * (the way a form post runs them).
+ *
+ * A failing password needs a real ConstraintValidatorContext (the validator
+ * sets its own message), so that case only runs through the Validator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+
+    private final PasswordPolicyValidator passwordValidator = new PasswordPolicyValidator();
+    private final ValidTitleValidator titleValidator = new ValidTitleValidator();
+
+    private ValidatorFactory factory;
+    private Validator validator;
+
+    @Setup
+    public void setup() {
+        factory = Validation.buildDefaultValidatorFactory();
+        validator = factory.getValidator();
+    }
+
+    @TearDown
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Benchmark
+    public boolean passwordValidDirect() {
+        return passwordValidator.isValid("Correct-Horse-Battery-9", null);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<RegisterRequest>> passwordValidThroughValidator() {
+        return validator.validateValue(RegisterRequest.class, "password", "Correct-Horse-Battery-9");
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<RegisterRequest>> passwordMissingDigitThroughValidator() {
+        return validator.validateValue(RegisterRequest.class, "password", "Correct-Horse-Battery");
+    }
+
+    @Benchmark
+    public boolean titleDirect() {
+        return titleValidator.isValid("  Shopping list  ", null);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CreateNoteRequest>> titleThroughValidator() {
+        return validator.validateValue(CreateNoteRequest.class, "title", "  Shopping list  ");
+    }
+}
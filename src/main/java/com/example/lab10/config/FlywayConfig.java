@@ -0,0 +1,87 @@
+package com.example.lab10.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/*
+ * How Flyway runs at startup.
+ *
+ * Normally Flyway validates every applied migration (reads the history table
+ * and re-checks all scripts) and then migrates. That is a big part of a cold start.
+ *
+ * With lab10.flyway.skip-when-unchanged=true (the "fast" profile):
+ * - I compute a checksum of all migration scripts (CRC32 over names + content)
+ * - after a successful migrate, it is stored in SQLite's PRAGMA user_version
+ * - on the next start, if the stored checksum is the same, Flyway is skipped
+ * Any new or changed script gives a new checksum, so Flyway runs again.
+ */
+@Configuration
+public class FlywayConfig {
+
+    private static final String MIGRATIONS = "classpath:db/migration/*.sql";
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(
+            DataSource dataSource,
+            @Value("${lab10.flyway.skip-when-unchanged:false}") boolean skipWhenUnchanged
+    ) {
+        return flyway -> {
+            if (!skipWhenUnchanged) {
+                flyway.migrate();
+                return;
+            }
+
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            int checksum = migrationsChecksum();
+            Integer stored = jdbc.queryForObject("PRAGMA user_version", Integer.class);
+
+            if (stored != null && stored == checksum) {
+                return;
+            }
+
+            flyway.migrate();
+
+            // PRAGMA values can't be bound as parameters (it is an int, so no injection)
+            jdbc.execute("PRAGMA user_version = " + checksum);
+        };
+    }
+
+    /*
+     * CRC32 of every migration script, in file name order.
+     * Never 0, because 0 is the user_version of a new database.
+     */
+    static int migrationsChecksum() {
+        try {
+            Resource[] scripts = new PathMatchingResourcePatternResolver().getResources(MIGRATIONS);
+            Arrays.sort(scripts, Comparator.comparing(Resource::getFilename));
+
+            CRC32 crc = new CRC32();
+            for (Resource script : scripts) {
+                crc.update(script.getFilename().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = script.getInputStream()) {
+                    crc.update(in.readAllBytes());
+                }
+            }
+
+            int value = (int) crc.getValue();
+            return value == 0 ? 1 : value;
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
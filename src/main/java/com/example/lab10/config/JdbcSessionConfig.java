@@ -0,0 +1,43 @@
+package com.example.lab10.config;
+
+import com.example.lab10.session.JdbcSessionRegistry;
+import com.example.lab10.session.JdbcSessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+import java.time.Duration;
+
+/*
+ * Opt-in: HTTP sessions in the SQLite "sessions" table instead of Tomcat's memory
+ * (lab10.session.store=jdbc). Sessions survive a restart, and several app nodes
+ * on the same database share them, including "max 1 session per user".
+ *
+ * Spring Session's filter replaces the container session; the cookie keeps the
+ * name JSESSIONID (server.servlet.session.cookie.name), so logout still deletes it.
+ * Without this property, SecurityConfig keeps the in-memory BoundedSessionRegistry.
+ */
+@Configuration
+@ConditionalOnProperty(name = "lab10.session.store", havingValue = "jdbc")
+@EnableSpringHttpSession
+public class JdbcSessionConfig {
+
+    @Bean
+    public JdbcSessionRepository sessionRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${server.servlet.session.timeout:30m}") Duration timeout,
+            @Value("${lab10.session.flush-ms:10000}") long flushMs
+    ) {
+        // Attributes are read back with the app's class loader (DevTools restarts use their own)
+        return new JdbcSessionRepository(jdbcTemplate, timeout, flushMs, JdbcSessionConfig.class.getClassLoader());
+    }
+
+    @Bean
+    public SessionRegistry sessionRegistry(JdbcSessionRepository sessionRepository) {
+        return new JdbcSessionRegistry(sessionRepository);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.lab10.config;
+
+import com.example.lab10.jfr.NoteOperationEvent;
+import com.example.lab10.jfr.PasswordEvent;
+import com.example.lab10.jfr.RateLimitEvent;
+import com.example.lab10.jfr.UploadWriteEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+
+/*
+ * Continuous JDK Flight Recorder recording (profile "jfr").
+ *
+ * The recording runs as long as the app, with the JDK's GC, lock and I/O events
+ * plus the app's own events (package com.example.lab10.jfr), so stalls can be
+ * matched with what the app was doing at that moment.
+ *
+ * It is bounded: JFR keeps data in its disk repository only up to
+ * lab10.jfr.max-size / lab10.jfr.max-age and drops the oldest chunks after that.
+ * The repository folder is a JVM option (-XX:FlightRecorderOptions:repository=...),
+ * the Maven profile "jfr" sets it to target/jfr/repository.
+ *
+ * Dump the last hours at any time with:
+ *   jcmd <pid> JFR.dump name=lab10 filename=lab10.jfr
+ * On shutdown it is dumped to lab10.jfr.dump-dir.
+ */
+@org.springframework.context.annotation.Configuration
+@Profile("jfr")
+public class JfrConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(JfrConfig.class);
+
+    @Bean(destroyMethod = "close")
+    public Recording continuousRecording(
+            @Value("${lab10.jfr.settings:default}") String settings,
+            @Value("${lab10.jfr.max-size:268435456}") long maxSize,
+            @Value("${lab10.jfr.max-age:6h}") Duration maxAge,
+            @Value("${lab10.jfr.dump-dir:jfr}") String dumpDir
+    ) throws IOException, ParseException {
+
+        // "default" (about 1% overhead) or "profile" (more detail, about 2%)
+        Recording recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName("lab10");
+        recording.setToDisk(true);
+        recording.setMaxSize(maxSize);
+        recording.setMaxAge(maxAge);
+
+        // App events (they are on by default, but a custom .jfc could turn them off)
+        recording.enable(RateLimitEvent.class);
+        recording.enable(PasswordEvent.class);
+        recording.enable(NoteOperationEvent.class);
+        recording.enable(UploadWriteEvent.class);
+
+        Path dir = Paths.get(dumpDir);
+        Files.createDirectories(dir);
+        recording.setDumpOnExit(true);
+        recording.setDestination(dir.resolve("lab10-exit.jfr"));
+
+        recording.start();
+        log.info("JFR recording 'lab10' started ({}, max {} MB / {}, dumped on exit to {})",
+                settings, maxSize / (1024 * 1024), maxAge, dir.resolve("lab10-exit.jfr"));
+        return recording;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.lab10.config;
+
+import com.example.lab10.session.CountingSessionRegistry;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.session.SessionRegistry;
+
+import javax.sql.DataSource;
+
+/*
+ * Metrics for capacity planning (Actuator + Micrometer, scraped from /actuator/prometheus).
+ *
+ * Spring Boot already records:
+ * - http.server.requests   (latency per route, method, status; the histogram
+ *                            buckets are set in application.properties, so
+ *                            p50/p99 per NoteController route can be computed)
+ * - hikaricp.connections.* (active, idle, pending, acquire time)
+ * - jvm.*, process.*, tomcat.sessions.*
+ *
+ * The app adds:
+ * - lab10.db.pool.saturation
+ * - lab10.db.statements       (RequestMetricsFilter: SQL statements per request)
+ * - lab10.sessions.active / lab10.sessions.users from the SessionRegistry
+ * - lab10.ratelimit.requests  (SimpleRateLimitFilter)
+ * - lab10.password.*          (TimedPasswordEncoder, see PasswordConfig)
+ */
+@Configuration
+public class MetricsConfig {
+
+    /*
+     * Pool saturation: active connections / max pool size (0..1).
+     * Near 1 with hikaricp.connections.pending > 0 means requests wait for the database.
+     */
+    @Bean
+    public MeterBinder poolSaturation(DataSource dataSource) {
+        return registry -> {
+            if (!(dataSource instanceof HikariDataSource hikari)) {
+                return;
+            }
+            Gauge.builder("lab10.db.pool.saturation", hikari, MetricsConfig::saturation)
+                    .description("Active JDBC connections / maximum pool size")
+                    .register(registry);
+        };
+    }
+
+    /*
+     * Logged-in sessions known to Spring Security (max 1 per user, see SecurityConfig).
+     */
+    @Bean
+    public MeterBinder sessionMetrics(SessionRegistry sessionRegistry) {
+        return registry -> {
+            Gauge.builder("lab10.sessions.active", sessionRegistry, MetricsConfig::activeSessions)
+                    .description("Non-expired sessions in the SessionRegistry")
+                    .register(registry);
+            Gauge.builder("lab10.sessions.users", sessionRegistry, MetricsConfig::users)
+                    .description("Users with at least one session in the SessionRegistry")
+                    .register(registry);
+        };
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private static double saturation(HikariDataSource hikari) {
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        if (pool == null || hikari.getMaximumPoolSize() <= 0) {
+            return 0;   // pool not started yet
+        }
+        return (double) pool.getActiveConnections() / hikari.getMaximumPoolSize();
+    }
+
+    private static double activeSessions(SessionRegistry sessionRegistry) {
+        if (sessionRegistry instanceof CountingSessionRegistry counting) {
+            return counting.sessionCount();   // no walk over every user
+        }
+        int sessions = 0;
+        for (Object principal : sessionRegistry.getAllPrincipals()) {
+            sessions += sessionRegistry.getAllSessions(principal, false).size();
+        }
+        return sessions;
+    }
+
+    private static double users(SessionRegistry sessionRegistry) {
+        if (sessionRegistry instanceof CountingSessionRegistry counting) {
+            return counting.principalCount();
+        }
+        return sessionRegistry.getAllPrincipals().size();
+    }
+}
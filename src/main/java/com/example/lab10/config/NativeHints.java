@@ -0,0 +1,84 @@
+package com.example.lab10.config;
+
+import com.example.lab10.dto.CreateNoteRequest;
+import com.example.lab10.dto.RegisterRequest;
+import com.example.lab10.dto.UploadSessionStatus;
+import com.example.lab10.dto.UploadedFileView;
+import com.example.lab10.dto.ValidTitleValidator;
+import com.example.lab10.metrics.StatementCounter;
+import com.example.lab10.model.Blob;
+import com.example.lab10.model.Note;
+import com.example.lab10.model.StorageUsage;
+import com.example.lab10.model.UploadJob;
+import com.example.lab10.model.UploadSession;
+import com.example.lab10.model.UploadedFile;
+import com.example.lab10.model.User;
+import com.example.lab10.validation.PasswordPolicyValidator;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/*
+ * Reachability metadata for the GraalVM native image (mvn -Pnative native:compile).
+ *
+ * A native image only contains what the build can see statically.
+ * Everything that is found by name at runtime must be listed here:
+ * - JPA entities (Hibernate reads fields and calls constructors by reflection)
+ * - DTOs (Thymeleaf/SpEL calls their getters, Spring binds form fields)
+ * - custom validators (Hibernate Validator creates them from the annotation)
+ * - Flyway migrations and Thymeleaf templates (loaded as classpath resources)
+ * - the SQLite driver, dialect and statement inspector (loaded by class name from application.properties)
+ *
+ * The SQLite JNI library itself is handled by the driver's own native-image
+ * Feature (META-INF/native-image in sqlite-jdbc).
+ * On the JVM these hints are not used.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHints.Registrar.class)
+public class NativeHints {
+
+    static class Registrar implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+
+            // JPA entities
+            for (Class<?> entity : new Class<?>[] {
+                    User.class, Note.class, UploadedFile.class, Blob.class,
+                    UploadJob.class, UploadSession.class, StorageUsage.class }) {
+                hints.reflection().registerType(entity,
+                        MemberCategory.DECLARED_FIELDS,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS);
+            }
+
+            // DTOs used by forms, templates and JSON
+            for (Class<?> dto : new Class<?>[] {
+                    CreateNoteRequest.class, RegisterRequest.class,
+                    UploadedFileView.class, UploadSessionStatus.class }) {
+                hints.reflection().registerType(dto,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS);
+            }
+
+            // Custom validators
+            hints.reflection().registerType(ValidTitleValidator.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.reflection().registerType(PasswordPolicyValidator.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+            // SQLite driver, Hibernate dialect and statement inspector (configured by class name)
+            hints.reflection().registerType(TypeReference.of("org.sqlite.JDBC"),
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.reflection().registerType(TypeReference.of("org.hibernate.community.dialect.SQLiteDialect"),
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.reflection().registerType(StatementCounter.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+            // Flyway migrations and Thymeleaf templates
+            hints.resources().registerPattern("db/migration/*.sql");
+            hints.resources().registerPattern("templates/*.html");
+            hints.resources().registerPattern("templates/*/*.html");
+        }
+    }
+}
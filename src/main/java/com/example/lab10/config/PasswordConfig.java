@@ -1,5 +1,7 @@
 package com.example.lab10.config;
 
+import com.example.lab10.metrics.TimedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -18,9 +20,10 @@ public class PasswordConfig {
      * Strength 12 gives a good balance between security and performance.
      *
      * Spring injects this bean wherever a PasswordEncoder is needed.
+     * It is wrapped in a TimedPasswordEncoder, so hash/check times show up in the metrics.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(12), meterRegistry);
     }
 }
\ No newline at end of file
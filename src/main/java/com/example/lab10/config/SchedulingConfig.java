@@ -0,0 +1,16 @@
+package com.example.lab10.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/*
+ * Turns on @Scheduled methods.
+ * I use them for background cleanup jobs (for example abandoned uploads).
+ *
+ * They use Spring Boot's default scheduler, so with the "virtual" profile
+ * (spring.threads.virtual.enabled=true on Java 21+) they run on virtual threads.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
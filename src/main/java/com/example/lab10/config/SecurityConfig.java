@@ -2,15 +2,24 @@ package com.example.lab10.config;
 
 import jakarta.servlet.http.HttpServletResponse;
 import com.example.lab10.security.SimpleRateLimitFilter;
+import com.example.lab10.session.BoundedSessionRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.session.SessionRegistry;
-import org.springframework.security.core.session.SessionRegistryImpl;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.access.AccessDeniedHandler;
@@ -18,6 +27,8 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
 import org.springframework.security.web.session.HttpSessionEventPublisher;
 
+import java.time.Duration;
+
 /*
  * Main security config.
  * Here I set: login, roles, CSRF/session rules, headers, and rate limiting.
@@ -48,9 +59,15 @@ public class SecurityConfig {
     }
 
     // Needed for "max 1 session per user" feature
+    // (in memory, bounded and swept; with lab10.session.store=jdbc, JdbcSessionConfig provides a shared one)
     @Bean
-    public SessionRegistry sessionRegistry() {
-        return new SessionRegistryImpl();
+    @ConditionalOnProperty(name = "lab10.session.store", havingValue = "memory", matchIfMissing = true)
+    public SessionRegistry sessionRegistry(
+            MeterRegistry meterRegistry,
+            @Value("${server.servlet.session.timeout:30m}") Duration sessionTimeout,
+            @Value("${lab10.session.registry.max-sessions:100000}") int maxSessions
+    ) {
+        return new BoundedSessionRegistry(sessionTimeout, maxSessions, meterRegistry);
     }
 
     // Publishes session create/destroy events (helps session limiting work correctly)
@@ -59,6 +76,51 @@ public class SecurityConfig {
         return new HttpSessionEventPublisher();
     }
 
+    /*
+     * Rules for /actuator/prometheus only (checked before the main rules).
+     *
+     * Prometheus logs in with HTTP Basic, using the account from
+     * lab10.metrics.username / lab10.metrics.password (role METRICS);
+     * logged-in admins can look too. Without a password, only admins can.
+     *
+     * I don't trust the client IP here: behind a reverse proxy on the same
+     * machine, every request would come from 127.0.0.1.
+     * The scraper's password has its own BCrypt encoder, so scrapes don't
+     * show up in the login password metrics.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain metricsFilterChain(
+            HttpSecurity http,
+            @Value("${lab10.metrics.username:prometheus}") String username,
+            @Value("${lab10.metrics.password:}") String password
+    ) throws Exception {
+
+        PasswordEncoder encoder = new BCryptPasswordEncoder();
+        InMemoryUserDetailsManager scrapers = new InMemoryUserDetailsManager();
+        if (!password.isBlank()) {
+            scrapers.createUser(User.withUsername(username)
+                    .password(encoder.encode(password))
+                    .roles("METRICS")
+                    .build());
+        }
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(scrapers);
+        provider.setPasswordEncoder(encoder);
+
+        http
+                .securityMatcher("/actuator/prometheus")
+                .authenticationManager(new ProviderManager(provider))
+                .authorizeHttpRequests(auth -> auth.anyRequest().hasAnyRole("METRICS", "ADMIN"))
+                .httpBasic(Customizer.withDefaults())
+
+                // An admin's session is used, but a scrape never creates one
+                .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.NEVER));
+
+        return http.build();
+    }
+
     /*
      * Main Spring Security rules.
      * This is basically "who can access what" + session/logout/headers.
@@ -95,6 +157,9 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/login", "/register", "/error", "/hello", "/headers",
                                 "/rate-limit", "/forbidden", "/favicon.ico").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        // /actuator/prometheus has its own rules (metricsFilterChain)
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/admin", "/admin/**").hasRole("ADMIN")
                         .requestMatchers("/user", "/user/**").hasAnyRole("USER", "ADMIN")
                         .anyRequest().authenticated()
@@ -0,0 +1,64 @@
+package com.example.lab10.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/*
+ * Extra setup for the virtual-thread mode (profile "virtual").
+ *
+ * spring.threads.virtual.enabled=true makes Tomcat and @Scheduled
+ * use virtual threads, but only on Java 21+ (on Java 17 it is ignored).
+ *
+ * Pinning guard:
+ * every SQLite call goes through native code (and synchronized blocks in the
+ * driver), so a virtual thread inside JDBC pins its carrier thread.
+ * If all carriers are pinned, no other virtual thread can run.
+ * Here I cap the Hikari pool below the number of carriers: the threads that
+ * wait for a connection are parked (not pinned), so at least one carrier
+ * always stays free for the rest of the requests.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /*
+     * static: BeanPostProcessors must be created before the other beans.
+     */
+    @Bean
+    public static BeanPostProcessor hikariPinningGuard(Environment env) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource dataSource)) {
+                    return bean;
+                }
+
+                if (Runtime.version().feature() < 21) {
+                    log.warn("Virtual threads need Java 21+ (running on {}), requests use platform threads",
+                            Runtime.version().feature());
+                    return bean;
+                }
+
+                // Same default as the JDK scheduler (-Djdk.virtualThreadScheduler.parallelism)
+                int carriers = Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+                        Runtime.getRuntime().availableProcessors());
+                int limit = env.getProperty("lab10.virtual.max-jdbc-connections", Integer.class,
+                        Math.max(1, carriers - 1));
+
+                if (dataSource.getMaximumPoolSize() > limit) {
+                    dataSource.setMaximumPoolSize(limit);
+                    dataSource.setMinimumIdle(Math.min(dataSource.getMinimumIdle(), limit));
+                }
+                return bean;
+            }
+        };
+    }
+}
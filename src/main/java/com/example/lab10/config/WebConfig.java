@@ -0,0 +1,25 @@
+package com.example.lab10.config;
+
+import com.example.lab10.metrics.SpanInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/*
+ * Spring MVC setup.
+ * I only add the interceptor that times the controller and view phases.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final SpanInterceptor spanInterceptor;
+
+    public WebConfig(SpanInterceptor spanInterceptor) {
+        this.spanInterceptor = spanInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(spanInterceptor);
+    }
+}
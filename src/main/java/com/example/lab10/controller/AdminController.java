@@ -1,10 +1,25 @@
 package com.example.lab10.controller;
 
+import com.example.lab10.dto.UserStatsView;
+import com.example.lab10.model.User;
+import com.example.lab10.repository.UserRepository;
+import com.example.lab10.security.ConcurrencyLimitFilter;
+import com.example.lab10.security.SimpleRateLimitFilter;
+import com.example.lab10.service.AdminStats;
+import com.example.lab10.session.CountingSessionRegistry;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /*
  * Controller for admin pages.
  * I only allow users with ADMIN role to access this.
@@ -13,9 +28,33 @@ import org.springframework.web.bind.annotation.GetMapping;
 @Controller
 public class AdminController {
 
+    private final AdminStats adminStats;
+    private final UserRepository userRepository;
+    private final SessionRegistry sessionRegistry;
+    private final SimpleRateLimitFilter rateLimitFilter;
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
+
+    public AdminController(
+            AdminStats adminStats,
+            UserRepository userRepository,
+            SessionRegistry sessionRegistry,
+            SimpleRateLimitFilter rateLimitFilter,
+            ConcurrencyLimitFilter concurrencyLimitFilter
+    ) {
+        this.adminStats = adminStats;
+        this.userRepository = userRepository;
+        this.sessionRegistry = sessionRegistry;
+        this.rateLimitFilter = rateLimitFilter;
+        this.concurrencyLimitFilter = concurrencyLimitFilter;
+    }
+
     /*
      * Shows the admin dashboard.
      * This method runs only if the user is already authorized.
+     *
+     * Every number comes from counters kept up to date on each write (AdminStats),
+     * so the page costs the same with 10 or 10 million notes. The only query
+     * loads the emails of the top users (at most 2 * top-k rows, by primary key).
      */
     @GetMapping("/admin")
     public String adminHome(Authentication authentication, Model model) {
@@ -23,7 +62,55 @@ public class AdminController {
         //  gets the logged-in admin's email/username
         model.addAttribute("email", authentication.getName());
 
+        // Totals
+        model.addAttribute("users", adminStats.users());
+        model.addAttribute("notes", adminStats.notes());
+        model.addAttribute("uploadBytes", adminStats.uploadBytes());
+        long reconciled = adminStats.lastReconcile();
+        model.addAttribute("lastReconcile", reconciled == 0 ? null : Instant.ofEpochMilli(reconciled));
+
+        // Heaviest users
+        List<Map.Entry<Integer, Long>> byNotes = adminStats.topByNotes();
+        List<Map.Entry<Integer, Long>> byBytes = adminStats.topByUploadBytes();
+        Map<Integer, String> emails = emailsOf(byNotes, byBytes);
+        model.addAttribute("topByNotes", rows(byNotes, emails));
+        model.addAttribute("topByBytes", rows(byBytes, emails));
+
+        // Live state of this node
+        if (sessionRegistry instanceof CountingSessionRegistry counting) {
+            model.addAttribute("sessions", counting.sessionCount());
+            model.addAttribute("sessionUsers", counting.principalCount());
+        }
+        model.addAttribute("rateLimitClients", rateLimitFilter.trackedClients());
+        model.addAttribute("concurrencyLimits", concurrencyLimitFilter.currentLimits());
 
         return "admin/panel";
     }
-}
\ No newline at end of file
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    @SafeVarargs
+    private Map<Integer, String> emailsOf(List<Map.Entry<Integer, Long>>... tops) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (List<Map.Entry<Integer, Long>> top : tops) {
+            top.forEach(e -> ids.add(e.getKey()));
+        }
+
+        Map<Integer, String> emails = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (User user : userRepository.findAllById(ids)) {
+                emails.put(user.getId(), user.getEmail());
+            }
+        }
+        return emails;
+    }
+
+    private List<UserStatsView> rows(List<Map.Entry<Integer, Long>> top, Map<Integer, String> emails) {
+        return top.stream()
+                .map(e -> new UserStatsView(e.getKey(), emails.getOrDefault(e.getKey(), "(deleted)"),
+                        adminStats.notesOf(e.getKey()), adminStats.uploadBytesOf(e.getKey())))
+                .toList();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.lab10.controller;
+
+import com.example.lab10.service.UserPurgeService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * User management for admins (/admin/** is ADMIN only, see SecurityConfig).
+ * JSON, like the diagnostics endpoints.
+ */
+@RestController
+@RequestMapping("/admin/users")
+public class AdminUserController {
+
+    private final UserPurgeService userPurgeService;
+
+    public AdminUserController(UserPurgeService userPurgeService) {
+        this.userPurgeService = userPurgeService;
+    }
+
+    /*
+     * Starts deleting a user and all their data, for example:
+     *   POST /admin/users/purge?email=someone@example.com
+     * Returns right away (202) with the purge status; the work runs in the background.
+     * Needs the CSRF token (X-CSRF-TOKEN header or _csrf field).
+     */
+    @PostMapping("/purge")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Map<String, Object> purge(@RequestParam("email") String email) {
+        return userPurgeService.start(email);
+    }
+
+    /*
+     * Progress of the purge of one user (step, rows deleted so far, error).
+     */
+    @GetMapping("/{id}/purge")
+    public Map<String, Object> purgeStatus(@PathVariable("id") Integer id) {
+        return userPurgeService.status(id);
+    }
+
+    /*
+     * The last purges, newest first.
+     */
+    @GetMapping("/purges")
+    public List<Map<String, Object>> purges() {
+        return userPurgeService.recent(20);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.lab10.controller;
+
+import com.example.lab10.dto.UploadSessionStatus;
+import com.example.lab10.model.UploadedFile;
+import com.example.lab10.service.ChunkedUploadService;
+import com.example.lab10.service.UploadPipeline;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+/*
+ * REST controller for resumable (chunked) uploads.
+ *
+ * Flow for a client:
+ * 1. POST   /notes/uploads?filename=..&size=..   -> session id + chunkSize
+ * 2. PUT    /notes/uploads/{id}?offset=..        -> one chunk (raw bytes)
+ * 3. GET    /notes/uploads/{id}                  -> nextOffset (resume point)
+ * 4. POST   /notes/uploads/{id}/complete         -> file is saved
+ *    DELETE /notes/uploads/{id}                  -> cancel
+ *
+ * POST/PUT/DELETE need the CSRF token in the X-CSRF-TOKEN header.
+ * Ownership is checked in ChunkedUploadService.
+ */
+@RestController
+@RequestMapping("/notes/uploads")
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final UploadPipeline uploadPipeline;
+
+    public ChunkedUploadController(ChunkedUploadService chunkedUploadService, UploadPipeline uploadPipeline) {
+        this.chunkedUploadService = chunkedUploadService;
+        this.uploadPipeline = uploadPipeline;
+    }
+
+    /*
+     * Starts a new upload session.
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public UploadSessionStatus start(
+            @RequestParam("filename") String filename,
+            @RequestParam("size") long size
+    ) throws IOException {
+        return new UploadSessionStatus(chunkedUploadService.start(filename, size));
+    }
+
+    /*
+     * Shows how much was already received.
+     */
+    @GetMapping("/{id}")
+    public UploadSessionStatus status(@PathVariable("id") String id) {
+        return new UploadSessionStatus(chunkedUploadService.getMineOr404(id));
+    }
+
+    /*
+     * Receives one chunk. The body is read as a raw stream (no buffering).
+     */
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public UploadSessionStatus putChunk(
+            @PathVariable("id") String id,
+            @RequestParam("offset") long offset,
+            HttpServletRequest request
+    ) throws IOException {
+        return new UploadSessionStatus(chunkedUploadService.writeChunk(
+                id, offset, request.getContentLengthLong(), request.getInputStream()));
+    }
+
+    /*
+     * Finishes the upload when all chunks were received.
+     */
+    @PostMapping("/{id}/complete")
+    public Map<String, String> complete(@PathVariable("id") String id) throws IOException {
+        UploadedFile stored = chunkedUploadService.complete(id);
+        uploadPipeline.submit(stored);
+        return Map.of("filename", stored.getFilename());
+    }
+
+    /*
+     * Cancels the upload.
+     */
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void abort(@PathVariable("id") String id) throws IOException {
+        chunkedUploadService.abort(id);
+    }
+}
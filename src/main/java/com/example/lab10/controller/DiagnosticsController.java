@@ -0,0 +1,61 @@
+package com.example.lab10.controller;
+
+import com.example.lab10.logging.DiagnosticLogging;
+import com.example.lab10.metrics.SpanRecorder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/*
+ * JSON diagnostics for admins (/admin/** is ADMIN only, see SecurityConfig).
+ */
+@RestController
+@RequestMapping("/admin/diagnostics")
+public class DiagnosticsController {
+
+    private final SpanRecorder spanRecorder;
+    private final DiagnosticLogging diagnosticLogging;
+
+    public DiagnosticsController(SpanRecorder spanRecorder, DiagnosticLogging diagnosticLogging) {
+        this.spanRecorder = spanRecorder;
+        this.diagnosticLogging = diagnosticLogging;
+    }
+
+    /*
+     * Where the time of the last requests went, per route and phase
+     * (filters, user, query, uploads, handler, render, total).
+     */
+    @GetMapping("/spans")
+    public Map<String, Object> spans() {
+        return spanRecorder.summary();
+    }
+
+    /*
+     * Level and sample rate of the SQL and security debug logging.
+     */
+    @GetMapping("/logging")
+    public Map<String, Object> logging() {
+        return diagnosticLogging.status();
+    }
+
+    /*
+     * Changes one category (sql | security), for example:
+     *   POST /admin/diagnostics/logging/sql?level=DEBUG&sampleRate=0.1&minutes=15
+     * With minutes, the old level and rate come back after that time.
+     * Needs the CSRF token (X-CSRF-TOKEN header or _csrf field).
+     */
+    @PostMapping("/logging/{category}")
+    public Map<String, Object> updateLogging(
+            @PathVariable("category") String category,
+            @RequestParam(value = "level", required = false) String level,
+            @RequestParam(value = "sampleRate", required = false) Double sampleRate,
+            @RequestParam(value = "minutes", defaultValue = "0") int minutes
+    ) {
+        return diagnosticLogging.update(category, level, sampleRate, minutes);
+    }
+}
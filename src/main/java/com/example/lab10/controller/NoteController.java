@@ -1,7 +1,15 @@
 package com.example.lab10.controller;
 
 import com.example.lab10.dto.CreateNoteRequest;
+import com.example.lab10.model.UploadedFile;
+import com.example.lab10.service.FileDownloadService;
+import com.example.lab10.service.NoteListCache;
 import com.example.lab10.service.NoteService;
+import com.example.lab10.service.UploadPipeline;
+import com.example.lab10.service.UploadService;
+import com.example.lab10.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -12,6 +20,9 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.util.Map;
+
 /*
  * MVC controller for notes.
  * Here I handle listing, creating, editing, deleting notes,
@@ -24,10 +35,27 @@ import org.springframework.web.server.ResponseStatusException;
 public class NoteController {
 
     private final NoteService noteService;
-
-    // I inject NoteService using constructor injection
-    public NoteController(NoteService noteService) {
+    private final UploadService uploadService;
+    private final FileDownloadService fileDownloadService;
+    private final UploadPipeline uploadPipeline;
+    private final UserService userService;
+    private final NoteListCache noteListCache;
+
+    // I inject the services using constructor injection
+    public NoteController(
+            NoteService noteService,
+            UploadService uploadService,
+            FileDownloadService fileDownloadService,
+            UploadPipeline uploadPipeline,
+            UserService userService,
+            NoteListCache noteListCache
+    ) {
         this.noteService = noteService;
+        this.uploadService = uploadService;
+        this.fileDownloadService = fileDownloadService;
+        this.uploadPipeline = uploadPipeline;
+        this.userService = userService;
+        this.noteListCache = noteListCache;
     }
 
     // -----------------------------
@@ -36,38 +64,32 @@ public class NoteController {
 
     /*
      * Shows the list of my notes.
-     * I also show uploaded files from the local upload folder.
+     * I also show the files I uploaded.
+     *
+     * Files and notes are rendered once and cached (NoteListCache) until
+     * one of them changes; a cached page costs only the user lookup.
      */
     @GetMapping
     public String list(
             @RequestParam(value = "uploaded", required = false) String uploaded,
+            @RequestParam(value = "filesPage", defaultValue = "0") int filesPage,
+            HttpServletRequest request,
+            HttpServletResponse response,
             Model model
-    ) throws Exception {
+    ) {
+        Integer me = userService.currentUserOrThrow().getId();
 
-        // I only load notes that belong to the logged-in user
-        model.addAttribute("notes", noteService.findMyNotes());
+        // Only loaded when the cached page is missing or stale
+        model.addAttribute("notesHtml", noteListCache.get(me, filesPage, request, response, () -> Map.of(
+                // I only load notes that belong to the logged-in user
+                "notes", noteService.findMyNotes(),
+                // One page of my uploaded files (from the in-memory upload index)
+                "uploadedFiles", uploadService.listMine(filesPage)
+        )));
 
         // This flag is used to show an "upload successful" message
         model.addAttribute("uploaded", uploaded != null);
 
-        // Upload directory is inside the OS user home folder
-        String userHome = System.getProperty("user.home");
-        java.nio.file.Path uploadDir = java.nio.file.Paths.get(userHome, "lab10_uploads");
-
-        // If the folder exists, I list the uploaded files
-        java.util.List<String> files = java.util.Collections.emptyList();
-        if (java.nio.file.Files.exists(uploadDir)) {
-            try (java.util.stream.Stream<java.nio.file.Path> stream = java.nio.file.Files.list(uploadDir)) {
-                files = stream
-                        .filter(java.nio.file.Files::isRegularFile)
-                        .map(p -> p.getFileName().toString())
-                        .toList();
-            }
-        }
-
-        // I send the file names to the view
-        model.addAttribute("uploadedFiles", files);
-
         return "note/list";
     }
 
@@ -188,42 +210,19 @@ public class NoteController {
 
     /*
      * Handles file uploads.
-     * Files are saved in {user.home}/lab10_uploads.
-     * This is fine for a lab demo.
+     * Files are saved in {user.home}/lab10_uploads/blobs (content-addressed).
      */
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public String upload(@RequestParam("file") MultipartFile file) {
 
-        // If no file is selected, I return 400
-        if (file == null || file.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is empty");
-        }
-
+        UploadedFile stored;
         try {
-            // I make sure the upload folder exists
-            String userHome = System.getProperty("user.home");
-            java.nio.file.Path uploadDir = java.nio.file.Paths.get(userHome, "lab10_uploads");
-            java.nio.file.Files.createDirectories(uploadDir);
-
-            // I get the original filename from the browser
-            String original = file.getOriginalFilename();
-
-            // I clean the filename to avoid dangerous characters
-            String filename = (original == null || original.isBlank())
-                    ? "upload.bin"
-                    : original.replaceAll("[\\\\/:*?\"<>|]", "_");
-
-            // Final path where the file will be stored
-            java.nio.file.Path target = uploadDir.resolve(filename);
-
-            // I save the file to disk
-            try (java.io.InputStream in = file.getInputStream()) {
-                java.nio.file.Files.copy(
-                        in,
-                        target,
-                        java.nio.file.StandardCopyOption.REPLACE_EXISTING
-                );
-            }
+            // The service checks the file and saves it to disk
+            stored = uploadService.store(file);
+
+        } catch (ResponseStatusException e) {
+            // 400 / 413 errors go to the user as they are
+            throw e;
 
         } catch (Exception e) {
             // I log the error on the server side only
@@ -236,6 +235,70 @@ public class NoteController {
             );
         }
 
+        // Thumbnail + metadata are made later, in the background
+        // (the file is saved: this never fails the upload)
+        uploadPipeline.submit(stored);
+
+        return "redirect:/notes?uploaded=1";
+    }
+
+    /*
+     * Streaming upload mode.
+     * The multipart body is parsed while it arrives and written straight
+     * to disk, so large files are not buffered by Tomcat first.
+     *
+     * The CSRF token must be sent in the X-CSRF-TOKEN header.
+     */
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public String uploadStream(HttpServletRequest request) {
+
+        UploadedFile stored;
+        try {
+            stored = uploadService.storeStreaming(request);
+
+        } catch (ResponseStatusException e) {
+            throw e;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Could not save file"
+            );
+        }
+
+        uploadPipeline.submit(stored);
+
         return "redirect:/notes?uploaded=1";
     }
-}
\ No newline at end of file
+
+    // -----------------------------
+    // FILE DOWNLOAD
+    // -----------------------------
+
+    /*
+     * Downloads one of my uploaded files.
+     * Supports Range (resume), ETag and If-None-Match.
+     * If the file is not mine, the service throws 404.
+     */
+    @GetMapping("/files/{id}")
+    public void download(
+            @PathVariable("id") Integer id,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        fileDownloadService.send(uploadService.getMineOr404(id), request, response);
+    }
+
+    /*
+     * Thumbnail of one of my uploaded images (made by the upload pipeline).
+     */
+    @GetMapping("/files/{id}/thumbnail")
+    public void thumbnail(
+            @PathVariable("id") Integer id,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        fileDownloadService.sendThumbnail(uploadService.getMineOr404(id), request, response);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.lab10.dto;
+
+import com.example.lab10.model.UploadSession;
+
+/*
+ * DTO returned by the chunked upload endpoints (as JSON).
+ *
+ * The client uses nextOffset to know where to resume
+ * after an interrupted upload.
+ */
+public class UploadSessionStatus {
+
+    private final String id;
+    private final String filename;
+    private final long size;
+    private final int chunkSize;
+    private final long receivedBytes;
+    private final long nextOffset;
+    private final boolean complete;
+
+    /*
+     * Builds the status from the session entity.
+     */
+    public UploadSessionStatus(UploadSession session) {
+        this.id = session.getId();
+        this.filename = session.getFilename();
+        this.size = session.getTotalSize();
+        this.chunkSize = session.getChunkSize();
+        this.receivedBytes = session.getReceivedBytes();
+        this.nextOffset = session.getNextOffset();
+        this.complete = session.isComplete();
+    }
+
+    /*
+     * Getters (used by Jackson).
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+}
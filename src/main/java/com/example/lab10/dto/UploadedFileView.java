@@ -0,0 +1,99 @@
+package com.example.lab10.dto;
+
+import com.example.lab10.model.Blob;
+import com.example.lab10.model.UploadedFile;
+
+/*
+ * Read-only copy of an uploaded file's metadata.
+ *
+ * The upload index keeps these in memory and shares them between
+ * request threads, so this class is immutable (no setters).
+ */
+public class UploadedFileView {
+
+    private final Integer id;
+    private final String filename;
+    private final String sha256;
+    private final long size;
+    private final long createdAt;
+
+    // Filled in by the background pipeline (null / false until it has run)
+    private final String mimeType;
+    private final Integer width;
+    private final Integer height;
+    private final boolean thumbnail;
+
+    /*
+     * Copies the values from the entities.
+     * blob can be null (metadata not known).
+     */
+    public UploadedFileView(UploadedFile upload, Blob blob) {
+        this.id = upload.getId();
+        this.filename = upload.getFilename();
+        this.sha256 = upload.getBlobSha256();
+        this.size = upload.getSize();
+        this.createdAt = upload.getCreatedAt();
+        this.mimeType = blob == null ? null : blob.getMimeType();
+        this.width = blob == null ? null : blob.getWidth();
+        this.height = blob == null ? null : blob.getHeight();
+        this.thumbnail = blob != null && blob.isThumbnail();
+    }
+
+    /*
+     * Same upload with new blob metadata (pipeline finished).
+     */
+    private UploadedFileView(UploadedFileView upload, Blob blob) {
+        this.id = upload.id;
+        this.filename = upload.filename;
+        this.sha256 = upload.sha256;
+        this.size = upload.size;
+        this.createdAt = upload.createdAt;
+        this.mimeType = blob == null ? null : blob.getMimeType();
+        this.width = blob == null ? null : blob.getWidth();
+        this.height = blob == null ? null : blob.getHeight();
+        this.thumbnail = blob != null && blob.isThumbnail();
+    }
+
+    public UploadedFileView withBlob(Blob blob) {
+        return new UploadedFileView(this, blob);
+    }
+
+    /*
+     * Getters (used by Thymeleaf).
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public boolean isThumbnail() {
+        return thumbnail;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.lab10.dto;
+
+/*
+ * One row of the "top users" tables on the admin dashboard.
+ * The numbers come from the in-memory counters (AdminStats), not from a COUNT.
+ */
+public class UserStatsView {
+
+    private final Integer id;
+    private final String email;
+    private final long notes;
+    private final long uploadBytes;
+
+    public UserStatsView(Integer id, String email, long notes, long uploadBytes) {
+        this.id = id;
+        this.email = email;
+        this.notes = notes;
+        this.uploadBytes = uploadBytes;
+    }
+
+    /*
+     * Getters (used by Thymeleaf).
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public long getNotes() {
+        return notes;
+    }
+
+    public long getUploadBytes() {
+        return uploadBytes;
+    }
+}
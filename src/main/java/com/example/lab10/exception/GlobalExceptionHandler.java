@@ -6,6 +6,7 @@ import org.springframework.validation.BindException;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.server.ResponseStatusException;
 
 /*
@@ -63,6 +64,19 @@ public class GlobalExceptionHandler {
         return "error";
     }
 
+    /*
+     * Handles a classic multipart upload over spring.servlet.multipart.max-file-size
+     * (the same 413 the upload service gives for the other upload modes).
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public String handleMaxUploadSize(MaxUploadSizeExceededException ex, Model model) {
+
+        model.addAttribute("message", "File is too large");
+
+        return "error";
+    }
+
     /*
      * Handles ResponseStatusException thrown manually in controllers.
      * Controllers will  use this exception to:
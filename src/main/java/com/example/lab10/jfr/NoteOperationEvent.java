@@ -0,0 +1,54 @@
+package com.example.lab10.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * One NoteService operation, from the user lookup to the end of the query.
+ *
+ * Usage:
+ *   NoteOperationEvent event = NoteOperationEvent.start("list");
+ *   ...
+ *   event.finish(ownerId, noteId, rows);
+ * An operation that throws is not recorded.
+ */
+@Name("com.example.lab10.NoteOperation")
+@Label("Note Operation")
+@Category({ "Lab10", "Persistence" })
+@Description("A NoteService read or write")
+public class NoteOperationEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    @Description("list | get | create | update | delete")
+    public String operation;
+
+    @Label("Owner Id")
+    public int ownerId;
+
+    @Label("Note Id")
+    @Description("0 for list")
+    public int noteId;
+
+    @Label("Rows")
+    @Description("Rows read or written")
+    public int rows;
+
+    public static NoteOperationEvent start(String operation) {
+        NoteOperationEvent event = new NoteOperationEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    public void finish(Integer ownerId, Integer noteId, int rows) {
+        end();
+        if (shouldCommit()) {
+            this.ownerId = ownerId == null ? 0 : ownerId;
+            this.noteId = noteId == null ? 0 : noteId;
+            this.rows = rows;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.lab10.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * One BCrypt hash or check (TimedPasswordEncoder). The event duration is the BCrypt time.
+ */
+@Name("com.example.lab10.Password")
+@Label("Password Hash")
+@Category({ "Lab10", "Security" })
+@Description("Password encode or match")
+@StackTrace(false)
+public class PasswordEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    @Description("encode | matches")
+    public String operation;
+
+    @Label("Matched")
+    @Description("Result of matches (false for encode)")
+    public boolean matched;
+}
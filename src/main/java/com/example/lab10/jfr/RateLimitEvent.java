@@ -0,0 +1,31 @@
+package com.example.lab10.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * One decision of SimpleRateLimitFilter (POST /login or /register).
+ */
+@Name("com.example.lab10.RateLimit")
+@Label("Rate Limit Decision")
+@Category({ "Lab10", "Security" })
+@Description("A login/register POST was accepted or rejected by the rate limiter")
+@StackTrace(false)
+public class RateLimitEvent extends jdk.jfr.Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Client Address")
+    public String clientAddress;
+
+    @Label("Accepted")
+    public boolean accepted;
+
+    @Label("Requests In Window")
+    @Description("Requests of this client inside the time window, before this one")
+    public int requestsInWindow;
+}
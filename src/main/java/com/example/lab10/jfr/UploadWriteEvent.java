@@ -0,0 +1,35 @@
+package com.example.lab10.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * Bytes of an upload written to disk (including the fsync).
+ * The event duration is the write time, so slow disks and fsync stalls show up here.
+ */
+@Name("com.example.lab10.UploadWrite")
+@Label("Upload Write")
+@Category({ "Lab10", "Uploads" })
+@Description("A whole upload or one chunk written to disk")
+@StackTrace(false)
+public class UploadWriteEvent extends jdk.jfr.Event {
+
+    @Label("User Id")
+    public int userId;
+
+    @Label("Kind")
+    @Description("file (multipart / streaming upload) | chunk (resumable upload)")
+    public String kind;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Fsync")
+    @Description("fsync policy: none | data | full")
+    public String fsync;
+}
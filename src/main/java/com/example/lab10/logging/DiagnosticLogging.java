@@ -0,0 +1,173 @@
+package com.example.lab10.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runtime control of the diagnostics logging (used by /admin/diagnostics/logging).
+ *
+ * For each LogCategory (sql, security) an admin can set the level and the
+ * sample rate, optionally only for some minutes: after that the level and
+ * rate go back to what they were, so a forgotten DEBUG does not stay on.
+ *
+ * Start values come from application.properties (lab10.logging.sample.*,
+ * logging.level.*) or the "diagnostics" profile.
+ */
+@Component
+public class DiagnosticLogging {
+
+    private static final Logger log = LoggerFactory.getLogger(DiagnosticLogging.class);
+
+    private final LoggingSystem loggingSystem;
+    private final TaskScheduler taskScheduler;
+    private final Environment env;
+    private final long slowQueryMs;
+
+    // Pending automatic reverts, per category
+    private final Map<LogCategory, ScheduledFuture<?>> reverts = new LinkedHashMap<>();
+
+    public DiagnosticLogging(
+            LoggingSystem loggingSystem,
+            TaskScheduler taskScheduler,
+            Environment env,
+            @Value("${lab10.logging.slow-query-ms:200}") long slowQueryMs
+    ) {
+        this.loggingSystem = loggingSystem;
+        this.taskScheduler = taskScheduler;
+        this.env = env;
+        this.slowQueryMs = slowQueryMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (LogCategory category : LogCategory.values()) {
+            category.setSampleRate(env.getProperty("lab10.logging.sample." + category.key(), Double.class, 1.0));
+        }
+    }
+
+    /*
+     * Level and sample rate of every category, plus the async appender queue.
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> categories = new LinkedHashMap<>();
+        for (LogCategory category : LogCategory.values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("loggers", category.loggers());
+            entry.put("level", levelOf(category.loggers().get(0)));
+            entry.put("sampleRate", category.sampleRate());
+            ScheduledFuture<?> revert = reverts.get(category);
+            if (revert != null && !revert.isDone()) {
+                entry.put("revertsInSeconds", revert.getDelay(TimeUnit.SECONDS));
+            }
+            categories.put(category.key(), entry);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("categories", categories);
+        result.put("slowQueryMs", slowQueryMs);
+
+        AsyncAppender async = asyncAppender();
+        if (async != null) {
+            result.put("asyncQueueSize", async.getQueueSize());
+            result.put("asyncQueued", async.getNumberOfElementsInQueue());
+        }
+        return result;
+    }
+
+    /*
+     * Changes one category. level and sampleRate may be null (= unchanged).
+     * minutes > 0: go back to the previous values after that time.
+     */
+    public synchronized Map<String, Object> update(String key, String level, Double sampleRate, int minutes) {
+        LogCategory category = LogCategory.byKey(key);
+        if (category == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown log category");
+        }
+
+        LogLevel newLevel = null;
+        if (level != null) {
+            try {
+                newLevel = LogLevel.valueOf(level.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown level");
+            }
+        }
+
+        // What to go back to (only the first change of a series counts)
+        ScheduledFuture<?> pending = reverts.remove(category);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        Map<String, LogLevel> oldLevels = new LinkedHashMap<>();
+        for (String logger : category.loggers()) {
+            oldLevels.put(logger, configuredLevel(logger));
+        }
+        double oldRate = category.sampleRate();
+
+        if (newLevel != null) {
+            for (String logger : category.loggers()) {
+                // The bind parameters are only logged at TRACE, so DEBUG for "sql" leaves them off
+                loggingSystem.setLogLevel(logger, logger.endsWith(".bind") && newLevel != LogLevel.TRACE
+                        ? LogLevel.INFO : newLevel);
+            }
+        }
+        if (sampleRate != null) {
+            category.setSampleRate(sampleRate);
+        }
+
+        if (minutes > 0) {
+            reverts.put(category, taskScheduler.schedule(() -> revert(category, oldLevels, oldRate),
+                    Instant.now().plus(Duration.ofMinutes(minutes))));
+        }
+        return status();
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private synchronized void revert(LogCategory category, Map<String, LogLevel> levels, double rate) {
+        levels.forEach(loggingSystem::setLogLevel);
+        category.setSampleRate(rate);
+        reverts.remove(category);
+        log.info("Diagnostics logging '{}' reverted", category.key());
+    }
+
+    private LogLevel configuredLevel(String logger) {
+        LoggerConfiguration config = loggingSystem.getLoggerConfiguration(logger);
+        return config == null ? null : config.getConfiguredLevel();
+    }
+
+    private String levelOf(String logger) {
+        LoggerConfiguration config = loggingSystem.getLoggerConfiguration(logger);
+        return config == null || config.getEffectiveLevel() == null ? null : config.getEffectiveLevel().name();
+    }
+
+    private AsyncAppender asyncAppender() {
+        if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext context)) {
+            return null;
+        }
+        return context.getLogger(Logger.ROOT_LOGGER_NAME).getAppender("ASYNC") instanceof AsyncAppender async
+                ? async : null;
+    }
+}
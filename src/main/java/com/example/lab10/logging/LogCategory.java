@@ -0,0 +1,69 @@
+package com.example.lab10.logging;
+
+import java.util.List;
+
+/*
+ * Groups of noisy debug loggers that can be sampled and switched at runtime
+ * (see SamplingTurboFilter and DiagnosticLogging).
+ */
+public enum LogCategory {
+
+    // Every SQL statement (DEBUG) and its bound parameters (TRACE)
+    SQL("sql", List.of("org.hibernate.SQL", "org.hibernate.orm.jdbc.bind")),
+
+    // Filter chain, authentication and authorization decisions
+    SECURITY("security", List.of("org.springframework.security"));
+
+    private final String key;
+    private final List<String> loggers;
+
+    /*
+     * Share of DEBUG/TRACE messages that are logged (0..1).
+     * volatile: changed by the admin endpoint, read on every log call.
+     */
+    private volatile double sampleRate = 1.0;
+
+    LogCategory(String key, List<String> loggers) {
+        this.key = key;
+        this.loggers = loggers;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public List<String> loggers() {
+        return loggers;
+    }
+
+    public double sampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = Math.max(0.0, Math.min(1.0, sampleRate));
+    }
+
+    /*
+     * Category of a logger name (null if it is not in any category).
+     */
+    public static LogCategory of(String loggerName) {
+        for (LogCategory category : values()) {
+            for (String prefix : category.loggers) {
+                if (loggerName.startsWith(prefix)) {
+                    return category;
+                }
+            }
+        }
+        return null;
+    }
+
+    public static LogCategory byKey(String key) {
+        for (LogCategory category : values()) {
+            if (category.key.equalsIgnoreCase(key)) {
+                return category;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.lab10.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Drops a share of the DEBUG/TRACE messages of the LogCategory loggers
+ * (declared in logback-spring.xml).
+ *
+ * A turbo filter runs before logback builds the log event, so a dropped
+ * message costs no formatting and never reaches the async appender.
+ * INFO and above are never sampled.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+
+        // Not a debug message, or the logger would drop it anyway
+        if (level.isGreaterOrEqual(Level.INFO) || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+
+        // isDebugEnabled() checks (no format) are not sampled, only the log call after them,
+        // otherwise a guarded message would be sampled twice
+        if (format == null) {
+            return FilterReply.NEUTRAL;
+        }
+
+        LogCategory category = LogCategory.of(logger.getName());
+        if (category == null) {
+            return FilterReply.NEUTRAL;
+        }
+
+        double rate = category.sampleRate();
+        if (rate >= 1.0) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextDouble() < rate ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+}
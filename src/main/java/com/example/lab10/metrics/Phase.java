@@ -0,0 +1,27 @@
+package com.example.lab10.metrics;
+
+/*
+ * The phases of a request that Spans can time.
+ * The name is the one used in the Server-Timing header.
+ *
+ * HANDLER is the whole controller call, so it includes USER, QUERY and UPLOADS.
+ */
+public enum Phase {
+    FILTERS("filters"),    // filter chain before the controller (security, rate limit, ...)
+    USER("user"),          // UserService.currentUserOrThrow (may run more than once)
+    QUERY("query"),        // note queries (findAllMineNative)
+    UPLOADS("uploads"),    // upload listing (UploadIndex)
+    HANDLER("handler"),    // controller method
+    RENDER("render"),      // Thymeleaf view, until the first byte is written
+    TOTAL("total");        // whole request, as seen by SpanFilter
+
+    private final String headerName;
+
+    Phase(String headerName) {
+        this.headerName = headerName;
+    }
+
+    public String headerName() {
+        return headerName;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.lab10.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/*
+ * Records how many SQL statements each request needed (metric lab10.db.statements).
+ *
+ * The uri tag is the route pattern (/notes/{id}/edit), not the real path,
+ * so the number of time series stays small. Requests that did not reach
+ * a controller (static files, security redirects) are tagged "NONE".
+ *
+ * It runs first, so the queries of the security filters (user lookup at login)
+ * are counted too.
+ *
+ * The count is also left on the request (STATEMENTS_ATTRIBUTE), so MockMvc tests
+ * can check the statement budget of every endpoint (StatementBudgetTest).
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_ATTRIBUTE = "lab10.db.statements";
+
+    private final MeterRegistry registry;
+
+    public RequestMetricsFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain chain
+    ) throws ServletException, IOException {
+
+        StatementCounter.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int statements = StatementCounter.stop();
+            request.setAttribute(STATEMENTS_ATTRIBUTE, statements);
+
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("lab10.db.statements")
+                    .description("SQL statements per HTTP request")
+                    .tag("method", request.getMethod())
+                    .tag("uri", pattern == null ? "NONE" : pattern.toString())
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(100.0)
+                    .register(registry)
+                    .record(statements);
+        }
+    }
+}
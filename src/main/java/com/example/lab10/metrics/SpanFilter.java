@@ -0,0 +1,131 @@
+package com.example.lab10.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/*
+ * Times the phases of a request (see Spans / Phase).
+ *
+ * - runs before Spring Security, so the "filters" phase includes the security chain
+ * - adds a Server-Timing header (browser dev tools show it in the Network tab),
+ *   only for admins unless lab10.spans.server-timing=true: the phase timings
+ *   tell an outsider which requests hit the database
+ * - stores the timings in the SpanRecorder ring buffer
+ *
+ * The header must be set before the first byte of the body is sent, so the
+ * response is wrapped: the first getWriter()/getOutputStream()/redirect/error
+ * ends the render phase and writes the header. Thymeleaf is set to render the
+ * whole page before writing it (produce-partial-output-while-processing=false),
+ * so the render time is complete at that point.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class SpanFilter extends OncePerRequestFilter {
+
+    private final SpanRecorder recorder;
+
+    public SpanFilter(SpanRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain chain
+    ) throws ServletException, IOException {
+
+        if (!recorder.sample()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Spans spans = Spans.begin();
+        TimingResponse timed = new TimingResponse(response, spans, recorder.isServerTiming());
+        try {
+            chain.doFilter(request, timed);
+        } finally {
+            // Responses without a body (304, sendfile downloads) get the header here
+            timed.beforeCommit();
+
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            recorder.record(pattern == null ? "NONE" : pattern.toString(), spans.finish());
+            spans.end();
+        }
+    }
+
+    /*
+     * Writes the Server-Timing header just before the response is committed.
+     */
+    private static class TimingResponse extends HttpServletResponseWrapper {
+
+        private final Spans spans;
+        private final boolean header;
+        private boolean done;
+
+        TimingResponse(HttpServletResponse response, Spans spans, boolean header) {
+            super(response);
+            this.spans = spans;
+            this.header = header;
+        }
+
+        void beforeCommit() {
+            if (done) {
+                return;
+            }
+            done = true;
+            spans.beforeCommit();
+            if ((header || spans.isServerTimingShown()) && !isCommitted()) {
+                setHeader("Server-Timing", spans.serverTiming());
+            }
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            beforeCommit();
+            return super.getWriter();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            beforeCommit();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            beforeCommit();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            beforeCommit();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            beforeCommit();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            beforeCommit();
+            super.sendError(sc, msg);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.lab10.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+/*
+ * Marks where the controller starts and ends (phases "filters", "handler", "render").
+ * It also tells SpanFilter whether the user is an admin (the security chain has
+ * run at this point), since only admins get the Server-Timing header by default.
+ * Registered in WebConfig.
+ */
+@Component
+public class SpanInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Spans spans = Spans.current();
+        if (spans != null) {
+            spans.handlerStarted();
+            if (isAdmin()) {
+                spans.showServerTiming();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        Spans spans = Spans.current();
+        if (spans != null) {
+            // No ModelAndView: @ResponseBody, the answer is already written
+            spans.handlerFinished(modelAndView != null);
+        }
+    }
+
+    private static boolean isAdmin() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+    }
+}
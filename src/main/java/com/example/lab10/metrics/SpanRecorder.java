@@ -0,0 +1,140 @@
+package com.example.lab10.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Keeps the phase timings of the last N timed requests in a ring buffer,
+ * and summarizes them per route for /admin/diagnostics/spans.
+ *
+ * The buffer is preallocated (one long[] row per slot), so recording a request
+ * is an atomic increment plus an array copy: no lock and no allocation.
+ * A reader can see a row that is being overwritten; for a diagnostics
+ * view that is fine (it only moves one sample).
+ *
+ * Settings (application.properties):
+ * - lab10.spans.enabled       on/off
+ * - lab10.spans.sample-every  time 1 of every N requests (1 = all)
+ * - lab10.spans.server-timing send the Server-Timing header to everyone (admins always get it)
+ * - lab10.spans.buffer-size   number of requests kept
+ */
+@Component
+public class SpanRecorder {
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final boolean enabled;
+    private final int sampleEvery;
+    private final boolean serverTiming;
+
+    private final long[][] rows;
+    private final String[] routes;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong seen = new AtomicLong();
+
+    public SpanRecorder(
+            @Value("${lab10.spans.enabled:true}") boolean enabled,
+            @Value("${lab10.spans.sample-every:100}") int sampleEvery,
+            @Value("${lab10.spans.server-timing:false}") boolean serverTiming,
+            @Value("${lab10.spans.buffer-size:1024}") int bufferSize
+    ) {
+        this.enabled = enabled;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.serverTiming = serverTiming;
+        this.rows = new long[Math.max(1, bufferSize)][PHASES.length];
+        this.routes = new String[rows.length];
+    }
+
+    /*
+     * Should this request be timed?
+     */
+    public boolean sample() {
+        if (!enabled) {
+            return false;
+        }
+        return sampleEvery == 1 || seen.getAndIncrement() % sampleEvery == 0;
+    }
+
+    public boolean isServerTiming() {
+        return serverTiming;
+    }
+
+    /*
+     * Stores one request (nanos indexed by Phase ordinal).
+     */
+    public void record(String route, long[] nanos) {
+        int slot = (int) (next.getAndIncrement() % rows.length);
+        System.arraycopy(nanos, 0, rows[slot], 0, PHASES.length);
+        routes[slot] = route;
+    }
+
+    // ============================================================
+    // DIAGNOSTICS
+    // ============================================================
+
+    /*
+     * Per route and phase: count, average, p50, p99 and max (ms)
+     * over the requests that are still in the buffer.
+     */
+    public Map<String, Object> summary() {
+        int filled = (int) Math.min(next.get(), rows.length);
+
+        Map<String, List<long[]>> byRoute = new TreeMap<>();
+        for (int i = 0; i < filled; i++) {
+            String route = routes[i];
+            if (route != null) {
+                byRoute.computeIfAbsent(route, r -> new ArrayList<>()).add(rows[i].clone());
+            }
+        }
+
+        Map<String, Object> perRoute = new LinkedHashMap<>();
+        byRoute.forEach((route, samples) -> {
+            Map<String, Object> phases = new LinkedHashMap<>();
+            for (Phase phase : PHASES) {
+                long[] values = samples.stream().mapToLong(row -> row[phase.ordinal()]).toArray();
+                if (Arrays.stream(values).anyMatch(v -> v > 0)) {
+                    phases.put(phase.headerName(), stats(values));
+                }
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("count", samples.size());
+            entry.put("phases", phases);
+            perRoute.put(route, entry);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("sampleEvery", sampleEvery);
+        result.put("bufferSize", rows.length);
+        result.put("recorded", next.get());
+        result.put("routes", perRoute);
+        return result;
+    }
+
+    private static Map<String, Object> stats(long[] nanos) {
+        Arrays.sort(nanos);
+        long sum = 0;
+        for (long n : nanos) {
+            sum += n;
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("avgMs", millis(sum / nanos.length));
+        stats.put("p50Ms", millis(nanos[(int) ((nanos.length - 1) * 0.50)]));
+        stats.put("p99Ms", millis(nanos[(int) ((nanos.length - 1) * 0.99)]));
+        stats.put("maxMs", millis(nanos[nanos.length - 1]));
+        return stats;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.lab10.metrics;
+
+import java.util.Arrays;
+
+/*
+ * Phase timings of the request running on the current thread.
+ *
+ * Code that wants to time a phase does:
+ *
+ *   long t = Spans.start();
+ *   try { ... } finally { Spans.stop(Phase.QUERY, t); }
+ *
+ * When the request is not sampled (or there is no request, e.g. a background job),
+ * start() returns 0 and stop() does nothing, so the cost is one ThreadLocal read.
+ *
+ * To keep allocations low, every thread reuses the same Spans object
+ * (a long[] with one slot per phase) for all its requests.
+ * SpanFilter starts and ends it, SpanInterceptor marks where the controller
+ * starts and ends, and SpanFilter's response wrapper marks the end of rendering.
+ */
+public final class Spans {
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final ThreadLocal<Spans> CURRENT = ThreadLocal.withInitial(Spans::new);
+
+    private final long[] nanos = new long[PHASES.length];
+    private int timed;            // bit per phase that was measured
+    private boolean active;
+    private boolean showServerTiming;   // the user may see the Server-Timing header
+    private long requestStart;
+    private long handlerStart;
+    private long renderStart;
+
+    private Spans() {
+    }
+
+    // ============================================================
+    // Used by the instrumented code
+    // ============================================================
+
+    /*
+     * Start of a phase (0 = this request is not timed).
+     */
+    public static long start() {
+        return CURRENT.get().active ? System.nanoTime() : 0;
+    }
+
+    /*
+     * End of a phase started with start(). Times add up if a phase runs more than once.
+     */
+    public static void stop(Phase phase, long start) {
+        if (start != 0) {
+            CURRENT.get().add(phase, System.nanoTime() - start);
+        }
+    }
+
+    // ============================================================
+    // Used by SpanFilter / SpanInterceptor
+    // ============================================================
+
+    static Spans begin() {
+        Spans spans = CURRENT.get();
+        Arrays.fill(spans.nanos, 0);
+        spans.timed = 0;
+        spans.handlerStart = 0;
+        spans.renderStart = 0;
+        spans.showServerTiming = false;
+        spans.requestStart = System.nanoTime();
+        spans.active = true;
+        return spans;
+    }
+
+    /*
+     * The Spans of the current request, or null if it is not timed.
+     */
+    static Spans current() {
+        Spans spans = CURRENT.get();
+        return spans.active ? spans : null;
+    }
+
+    void handlerStarted() {
+        long now = System.nanoTime();
+        add(Phase.FILTERS, now - requestStart);
+        handlerStart = now;
+    }
+
+    /*
+     * The current user may see the Server-Timing header (an admin).
+     * Known only inside the security chain, so SpanInterceptor sets it.
+     */
+    void showServerTiming() {
+        showServerTiming = true;
+    }
+
+    boolean isServerTimingShown() {
+        return showServerTiming;
+    }
+
+    /*
+     * viewPending: a view will be rendered now (not for @ResponseBody methods,
+     * which already wrote their answer).
+     */
+    void handlerFinished(boolean viewPending) {
+        long now = System.nanoTime();
+        if (handlerStart != 0) {
+            add(Phase.HANDLER, now - handlerStart);
+        }
+        renderStart = viewPending ? now : 0;
+    }
+
+    /*
+     * The response is about to be committed: rendering (if any) is done.
+     */
+    void beforeCommit() {
+        if (renderStart != 0) {
+            add(Phase.RENDER, System.nanoTime() - renderStart);
+            renderStart = 0;
+        }
+    }
+
+    /*
+     * Sets TOTAL (time since begin()) and returns all phases (ns, indexed by ordinal).
+     * The array is reused: copy it before the next request on this thread.
+     */
+    long[] finish() {
+        beforeCommit();
+        stamp();
+        return nanos;
+    }
+
+    void end() {
+        active = false;
+    }
+
+    /*
+     * Server-Timing header value, e.g. "filters;dur=1.204, query;dur=0.310, total;dur=4.870".
+     */
+    String serverTiming() {
+        stamp();
+        StringBuilder sb = new StringBuilder(160);
+        for (Phase phase : PHASES) {
+            if ((timed & (1 << phase.ordinal())) == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            long micros = nanos[phase.ordinal()] / 1_000;
+            sb.append(phase.headerName()).append(";dur=").append(micros / 1_000).append('.');
+            long fraction = micros % 1_000;
+            if (fraction < 100) sb.append('0');
+            if (fraction < 10) sb.append('0');
+            sb.append(fraction);
+        }
+        return sb.toString();
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private void add(Phase phase, long duration) {
+        nanos[phase.ordinal()] += duration;
+        timed |= 1 << phase.ordinal();
+    }
+
+    /*
+     * Total so far. A request that never reached a controller
+     * (security redirect, static file) spent all its time in the filters.
+     */
+    private void stamp() {
+        long total = System.nanoTime() - requestStart;
+        nanos[Phase.TOTAL.ordinal()] = total;
+        timed |= 1 << Phase.TOTAL.ordinal();
+
+        if (handlerStart == 0) {
+            nanos[Phase.FILTERS.ordinal()] = total;
+            timed |= 1 << Phase.FILTERS.ordinal();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.lab10.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/*
+ * Counts the SQL statements that Hibernate prepares on the current thread
+ * (JPQL, derived queries and the native @Query ones).
+ *
+ * Hibernate creates this class itself from the property
+ * spring.jpa.properties.hibernate.session_factory.statement_inspector,
+ * so it can't get Spring beans: the count lives in a ThreadLocal.
+ * RequestMetricsFilter starts it at the beginning of a request and reads it at the end.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;   // the SQL is not changed
+    }
+
+    /*
+     * Starts counting on this thread (from 0).
+     */
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    /*
+     * Statements since start() (0 if counting was not started).
+     */
+    public static int current() {
+        int[] count = COUNT.get();
+        return count == null ? 0 : count[0];
+    }
+
+    /*
+     * Stops counting and returns the number of statements.
+     */
+    public static int stop() {
+        int n = current();
+        COUNT.remove();
+        return n;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.lab10.metrics;
+
+import com.example.lab10.jfr.PasswordEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * PasswordEncoder that measures the real encoder.
+ *
+ * BCrypt is slow on purpose (strength 12 is about 0.2-0.3 s per hash),
+ * and every login and register pays it once. These timers show how much
+ * CPU that costs under load:
+ * - lab10.password.encode            (register, password change)
+ * - lab10.password.matches{result}   (login; result = match | mismatch)
+ * Each call is also a PasswordEvent for JFR.
+ */
+public class TimedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final Timer encodeTimer;
+    private final Timer matchTimer;
+    private final Timer mismatchTimer;
+
+    public TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.encodeTimer = Timer.builder("lab10.password.encode")
+                .description("Time to hash a password")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.matchTimer = matchesTimer(registry, "match");
+        this.mismatchTimer = matchesTimer(registry, "mismatch");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        PasswordEvent event = new PasswordEvent();
+        event.begin();
+        String hash = encodeTimer.record(() -> delegate.encode(rawPassword));
+        commit(event, "encode", false);
+        return hash;
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        PasswordEvent event = new PasswordEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean result = delegate.matches(rawPassword, encodedPassword);
+        (result ? matchTimer : mismatchTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        commit(event, "matches", result);
+        return result;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static void commit(PasswordEvent event, String operation, boolean matched) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.matched = matched;
+            event.commit();
+        }
+    }
+
+    private static Timer matchesTimer(MeterRegistry registry, String result) {
+        return Timer.builder("lab10.password.matches")
+                .description("Time to check a password against its hash")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
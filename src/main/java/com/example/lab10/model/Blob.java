@@ -0,0 +1,98 @@
+package com.example.lab10.model;
+
+import jakarta.persistence.*;
+
+/*
+ * JPA entity representing stored file content (a blob).
+ * Blobs are content-addressed: the primary key is the SHA-256 of the bytes,
+ * so identical files are stored only once.
+ * This entity is mapped to the "blobs" table.
+ */
+@Entity
+@Table(name = "blobs")
+public class Blob {
+
+    /*
+     * SHA-256 of the content (hex, lowercase).
+     */
+    @Id
+    private String sha256;
+
+    /*
+     * Size of the content in bytes.
+     */
+    @Column(nullable = false)
+    private long size;
+
+    /*
+     * How many uploads point to this blob.
+     * When it reaches 0, the file is deleted.
+     */
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    /*
+     * Creation time (epoch millis).
+     */
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    /*
+     * Metadata filled in later by the background pipeline (UploadPipeline).
+     * They stay null until the job for this blob has run.
+     */
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    private Integer width;
+
+    private Integer height;
+
+    /*
+     * True when a thumbnail image was generated.
+     */
+    @Column(nullable = false)
+    private boolean thumbnail;
+
+    /*
+     * Default constructor required by JPA.
+     * New blobs are inserted with a query in BlobRepository.
+     */
+    public Blob() {}
+
+    /*
+     * Getters.
+     * The ref count and the metadata are changed only with queries in BlobRepository.
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public boolean isThumbnail() {
+        return thumbnail;
+    }
+}
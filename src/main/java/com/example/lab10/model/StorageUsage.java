@@ -0,0 +1,64 @@
+package com.example.lab10.model;
+
+import jakarta.persistence.*;
+
+/*
+ * JPA entity with the storage counters of one user.
+ * The counters are kept up to date by the upload path, so a quota check
+ * is one row lookup (no directory walk, no SUM over the uploads).
+ * This entity is mapped to the "storage_usage" table.
+ */
+@Entity
+@Table(name = "storage_usage")
+public class StorageUsage {
+
+    /*
+     * Owner of the counters (users.id), also the primary key.
+     */
+    @Id
+    @Column(name = "user_id")
+    private Integer userId;
+
+    /*
+     * Total size of the user's uploads (bytes).
+     */
+    @Column(name = "used_bytes", nullable = false)
+    private long usedBytes;
+
+    /*
+     * Bytes held by uploads that are still in progress.
+     */
+    @Column(name = "reserved_bytes", nullable = false)
+    private long reservedBytes;
+
+    /*
+     * Per-user quota (bytes). Null means the default quota.
+     */
+    @Column(name = "quota_bytes")
+    private Long quotaBytes;
+
+    /*
+     * Default constructor required by JPA.
+     * Rows are created and changed with queries in StorageUsageRepository.
+     */
+    public StorageUsage() {}
+
+    /*
+     * Getters.
+     */
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    public Long getQuotaBytes() {
+        return quotaBytes;
+    }
+}
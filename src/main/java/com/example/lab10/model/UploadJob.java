@@ -0,0 +1,98 @@
+package com.example.lab10.model;
+
+import jakarta.persistence.*;
+
+/*
+ * JPA entity representing one background job of the upload pipeline
+ * (thumbnail + metadata extraction for one blob).
+ * Jobs are stored in the database, so nothing is lost on restart.
+ * This entity is mapped to the "upload_jobs" table.
+ */
+@Entity
+@Table(name = "upload_jobs")
+public class UploadJob {
+
+    // Possible values of "status"
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    /*
+     * Primary key of the job.
+     * Generated automatically by the database.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    /*
+     * Blob this job works on (blobs.sha256).
+     */
+    @Column(name = "blob_sha256", nullable = false)
+    private String blobSha256;
+
+    /*
+     * PENDING, RUNNING, DONE or FAILED.
+     */
+    @Column(nullable = false)
+    private String status;
+
+    /*
+     * How many times the job was started.
+     */
+    @Column(nullable = false)
+    private int attempts;
+
+    /*
+     * Error message of the last failed attempt.
+     */
+    @Column(name = "last_error")
+    private String lastError;
+
+    /*
+     * Creation and last change time (epoch millis).
+     */
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private long updatedAt;
+
+    /*
+     * Default constructor required by JPA.
+     * Jobs are created with an INSERT query in UploadJobRepository.
+     */
+    public UploadJob() {}
+
+    /*
+     * Getters.
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    public String getBlobSha256() {
+        return blobSha256;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+}
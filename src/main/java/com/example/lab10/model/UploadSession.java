@@ -0,0 +1,174 @@
+package com.example.lab10.model;
+
+import jakarta.persistence.*;
+
+import java.util.BitSet;
+
+/*
+ * JPA entity representing a resumable (chunked) upload.
+ * The file is uploaded in fixed-size chunks and each received chunk
+ * is marked in a bitmap, so an interrupted upload can continue later.
+ * This entity is mapped to the "upload_sessions" table.
+ */
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSession {
+
+    /*
+     * Primary key of the session (random UUID).
+     */
+    @Id
+    private String id;
+
+    /*
+     * Owner of the upload (users.id).
+     */
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    /*
+     * Sanitized filename used when the upload is finished.
+     */
+    @Column(nullable = false)
+    private String filename;
+
+    /*
+     * Total size of the file in bytes.
+     */
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    /*
+     * Size of every chunk in bytes (the last one can be smaller).
+     */
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize;
+
+    /*
+     * Bitmap of received chunks (bit i = chunk i is on disk).
+     */
+    @Column(nullable = false)
+    private byte[] received;
+
+    /*
+     * Creation and last activity time (epoch millis).
+     * updatedAt is used to clean up abandoned sessions.
+     */
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private long updatedAt;
+
+    /*
+     * Default constructor required by JPA.
+     */
+    public UploadSession() {}
+
+    /*
+     * Constructor used when starting a new upload.
+     */
+    public UploadSession(String id, Integer userId, String filename, long totalSize, int chunkSize, long now) {
+        this.id = id;
+        this.userId = userId;
+        this.filename = filename;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.received = new byte[0];
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+
+    /*
+     * Number of chunks needed for the whole file.
+     */
+    public int getTotalChunks() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+
+    /*
+     * Expected length of chunk number "index".
+     */
+    public long chunkLength(int index) {
+        long start = (long) index * chunkSize;
+        return Math.min(chunkSize, totalSize - start);
+    }
+
+    /*
+     * Marks one chunk as received.
+     */
+    public void markReceived(int index) {
+        BitSet bits = BitSet.valueOf(received);
+        bits.set(index);
+        this.received = bits.toByteArray();
+    }
+
+    /*
+     * Index of the first chunk that is still missing.
+     * Returns getTotalChunks() when everything was received.
+     */
+    public int firstMissingChunk() {
+        return Math.min(BitSet.valueOf(received).nextClearBit(0), getTotalChunks());
+    }
+
+    /*
+     * Number of bytes that are already on disk.
+     */
+    public long getReceivedBytes() {
+        BitSet bits = BitSet.valueOf(received);
+        long total = 0;
+        for (int i = bits.nextSetBit(0); i >= 0 && i < getTotalChunks(); i = bits.nextSetBit(i + 1)) {
+            total += chunkLength(i);
+        }
+        return total;
+    }
+
+    /*
+     * Offset where the client should resume uploading.
+     */
+    public long getNextOffset() {
+        return Math.min((long) firstMissingChunk() * chunkSize, totalSize);
+    }
+
+    /*
+     * True when every chunk was received.
+     */
+    public boolean isComplete() {
+        return firstMissingChunk() >= getTotalChunks();
+    }
+
+    /*
+     * Getters and setters.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.lab10.model;
+
+import jakarta.persistence.*;
+
+/*
+ * JPA entity representing a file uploaded by a user.
+ * It maps (user, filename) to the blob that holds the content.
+ * This entity is mapped to the "uploads" table.
+ */
+@Entity
+@Table(name = "uploads")
+public class UploadedFile {
+
+    /*
+     * Primary key of the upload.
+     * Generated automatically by the database.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    /*
+     * Owner of the upload (users.id).
+     */
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    /*
+     * Sanitized filename (unique per user).
+     */
+    @Column(nullable = false)
+    private String filename;
+
+    /*
+     * SHA-256 of the content (blobs.sha256).
+     */
+    @Column(name = "blob_sha256", nullable = false)
+    private String blobSha256;
+
+    /*
+     * Size of the file in bytes.
+     */
+    @Column(nullable = false)
+    private long size;
+
+    /*
+     * Upload time (epoch millis).
+     */
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    /*
+     * Default constructor required by JPA.
+     */
+    public UploadedFile() {}
+
+    /*
+     * Constructor used when a new file is uploaded.
+     */
+    public UploadedFile(Integer userId, String filename, String blobSha256, long size, long now) {
+        this.userId = userId;
+        this.filename = filename;
+        this.blobSha256 = blobSha256;
+        this.size = size;
+        this.createdAt = now;
+    }
+
+    /*
+     * Getters and setters.
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getBlobSha256() {
+        return blobSha256;
+    }
+
+    public void setBlobSha256(String blobSha256) {
+        this.blobSha256 = blobSha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
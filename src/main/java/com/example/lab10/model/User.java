@@ -12,6 +12,12 @@ import jakarta.persistence.*;
 @Table(name = "users")
 public class User {
 
+    /*
+     * Role of an account that is being purged (UserPurgeService):
+     * the login is refused while its data is deleted.
+     */
+    public static final String PURGED_ROLE = "ROLE_PURGED";
+
     /*
      * Primary key of the user.
      * Generated automatically by the database.
@@ -50,6 +56,7 @@ public class User {
      * Examples:
      * - ROLE_USER (default)
      * - ROLE_ADMIN
+     * - ROLE_PURGED (being deleted by an admin, can't log in)
      */
     @Column(nullable = false)
     private String role = "ROLE_USER";
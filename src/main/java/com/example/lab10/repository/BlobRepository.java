@@ -0,0 +1,88 @@
+package com.example.lab10.repository;
+
+import com.example.lab10.model.Blob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/*
+ * Repository for Blob entity.
+ * Ref counts are changed with single UPDATE statements,
+ * so I never have to load the row first.
+ */
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    /*
+     * Stores a new blob with one reference.
+     * A plain INSERT (save() would SELECT first), so the write lock is
+     * taken in one step and concurrent uploads don't conflict on SQLite.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO blobs (sha256, size, ref_count, created_at, thumbnail) "
+            + "VALUES (:sha, :size, 1, :now, 0)", nativeQuery = true)
+    int insert(@Param("sha") String sha256, @Param("size") long size, @Param("now") long now);
+
+    /*
+     * Adds one reference. Returns 0 if the blob does not exist.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE blobs SET ref_count = ref_count + 1 WHERE sha256 = :sha", nativeQuery = true)
+    int incrementRefCount(@Param("sha") String sha256);
+
+    /*
+     * Removes one reference.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE blobs SET ref_count = ref_count - 1 WHERE sha256 = :sha", nativeQuery = true)
+    int decrementRefCount(@Param("sha") String sha256);
+
+    /*
+     * Deletes the blob row only if nothing points to it anymore.
+     * Returns 1 if it was deleted (so the file can be removed too).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM blobs WHERE sha256 = :sha AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("sha") String sha256);
+
+    /*
+     * Sets every reference count to the number of uploads rows that use the blob
+     * (index on uploads.blob_sha256). Only right at startup: an upload in progress
+     * has its reference before its row. Returns how many counts were wrong.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE blobs SET ref_count = "
+            + "(SELECT COUNT(*) FROM uploads u WHERE u.blob_sha256 = blobs.sha256) "
+            + "WHERE ref_count <> (SELECT COUNT(*) FROM uploads u WHERE u.blob_sha256 = blobs.sha256)",
+            nativeQuery = true)
+    int reconcileRefCounts();
+
+    /*
+     * Blobs nobody uses anymore but still here (a delete that did not finish).
+     */
+    @Query(value = "SELECT sha256 FROM blobs WHERE ref_count <= 0 LIMIT :limit", nativeQuery = true)
+    List<String> findUnreferenced(@Param("limit") int limit);
+
+    /*
+     * Saves the metadata found by the background pipeline.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE blobs SET mime_type = :mime, width = :width, height = :height, thumbnail = :thumbnail "
+            + "WHERE sha256 = :sha", nativeQuery = true)
+    int updateMetadata(
+            @Param("sha") String sha256,
+            @Param("mime") String mimeType,
+            @Param("width") Integer width,
+            @Param("height") Integer height,
+            @Param("thumbnail") boolean thumbnail
+    );
+}
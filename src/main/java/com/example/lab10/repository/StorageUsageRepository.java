@@ -0,0 +1,94 @@
+package com.example.lab10.repository;
+
+import com.example.lab10.model.StorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/*
+ * Repository for StorageUsage entity.
+ * Every change is one conditional UPDATE, so concurrent uploads of the
+ * same user can't both pass the quota check.
+ */
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, Integer> {
+
+    /*
+     * Creates the counters row of a user (does nothing if it exists).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT OR IGNORE INTO storage_usage (user_id, used_bytes, reserved_bytes) "
+            + "VALUES (:userId, 0, 0)", nativeQuery = true)
+    int createIfMissing(@Param("userId") Integer userId);
+
+    /*
+     * Reserves bytes only if they still fit in the quota.
+     * Returns 0 when the quota would be exceeded (or the row is missing).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE storage_usage SET reserved_bytes = reserved_bytes + :bytes "
+            + "WHERE user_id = :userId "
+            + "AND used_bytes + reserved_bytes + :bytes <= COALESCE(quota_bytes, :defaultQuota)", nativeQuery = true)
+    int reserve(@Param("userId") Integer userId, @Param("bytes") long bytes, @Param("defaultQuota") long defaultQuota);
+
+    /*
+     * Turns a reservation into used bytes.
+     * delta can be smaller than the reservation (or negative when a file is replaced).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE storage_usage SET reserved_bytes = MAX(reserved_bytes - :reserved, 0), "
+            + "used_bytes = MAX(used_bytes + :delta, 0) WHERE user_id = :userId", nativeQuery = true)
+    int commit(@Param("userId") Integer userId, @Param("reserved") long reserved, @Param("delta") long delta);
+
+    /*
+     * Reserves bytes without the quota check: space that was already granted
+     * before a restart (an open chunked upload).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE storage_usage SET reserved_bytes = reserved_bytes + :bytes "
+            + "WHERE user_id = :userId", nativeQuery = true)
+    int addReserved(@Param("userId") Integer userId, @Param("bytes") long bytes);
+
+    /*
+     * Gives reserved bytes back (upload failed or was smaller).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE storage_usage SET reserved_bytes = MAX(reserved_bytes - :bytes, 0) "
+            + "WHERE user_id = :userId", nativeQuery = true)
+    int release(@Param("userId") Integer userId, @Param("bytes") long bytes);
+
+    /*
+     * At startup no upload is running, so every reservation is stale.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE storage_usage SET reserved_bytes = 0 WHERE reserved_bytes <> 0", nativeQuery = true)
+    int clearReservations();
+
+    /*
+     * Adds missing rows for users that have uploads.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT OR IGNORE INTO storage_usage (user_id, used_bytes, reserved_bytes) "
+            + "SELECT DISTINCT user_id, 0, 0 FROM uploads", nativeQuery = true)
+    int createMissingRows();
+
+    /*
+     * Recomputes used_bytes from the uploads table where it drifted.
+     * Returns how many users were corrected.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE storage_usage SET used_bytes = "
+            + "(SELECT COALESCE(SUM(u.size), 0) FROM uploads u WHERE u.user_id = storage_usage.user_id) "
+            + "WHERE used_bytes <> "
+            + "(SELECT COALESCE(SUM(u.size), 0) FROM uploads u WHERE u.user_id = storage_usage.user_id)", nativeQuery = true)
+    int reconcileUsedBytes();
+}
@@ -0,0 +1,90 @@
+package com.example.lab10.repository;
+
+import com.example.lab10.model.UploadJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * Repository for UploadJob entity (the pipeline's job queue).
+ * State changes are single UPDATE statements, so two workers
+ * can never start the same job.
+ */
+public interface UploadJobRepository extends JpaRepository<UploadJob, Integer> {
+
+    /*
+     * Adds a PENDING job for a blob (does nothing if it already has one).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT OR IGNORE INTO upload_jobs (blob_sha256, status, attempts, created_at, updated_at) "
+            + "VALUES (:sha, 'PENDING', 0, :now, :now)", nativeQuery = true)
+    int enqueue(@Param("sha") String blobSha256, @Param("now") long now);
+
+    /*
+     * Adds a PENDING job for every blob that has no metadata and no job yet
+     * (a submit() that failed after the upload was saved).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT OR IGNORE INTO upload_jobs (blob_sha256, status, attempts, created_at, updated_at) "
+            + "SELECT sha256, 'PENDING', 0, :now, :now FROM blobs WHERE mime_type IS NULL", nativeQuery = true)
+    int enqueueMissing(@Param("now") long now);
+
+    /*
+     * Gets the job of one blob.
+     */
+    Optional<UploadJob> findByBlobSha256(String blobSha256);
+
+    /*
+     * Gets the oldest PENDING jobs that may run now.
+     * A job that already failed waits backoffMs after its first attempt,
+     * twice that after the second, and so on (updated_at is the last finish).
+     */
+    @Query(value = "SELECT * FROM upload_jobs WHERE status = 'PENDING' "
+            + "AND (attempts = 0 OR updated_at + (:backoffMs << (attempts - 1)) <= :now) "
+            + "ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<UploadJob> findReady(@Param("now") long now, @Param("backoffMs") long backoffMs,
+                              @Param("limit") int limit);
+
+    /*
+     * Moves a job from PENDING to RUNNING.
+     * Returns 1 only for the worker that won.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE upload_jobs SET status = 'RUNNING', attempts = attempts + 1, updated_at = :now "
+            + "WHERE id = :id AND status = 'PENDING'", nativeQuery = true)
+    int claim(@Param("id") Integer id, @Param("now") long now);
+
+    /*
+     * Sets the final (or retry) status of a job.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE upload_jobs SET status = :status, last_error = :error, updated_at = :now "
+            + "WHERE id = :id", nativeQuery = true)
+    int finish(@Param("id") Integer id, @Param("status") String status,
+               @Param("error") String error, @Param("now") long now);
+
+    /*
+     * After a crash, jobs left RUNNING are put back in the queue.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE upload_jobs SET status = 'PENDING' WHERE status = 'RUNNING'", nativeQuery = true)
+    int resetRunning();
+
+    /*
+     * Removes the job of a deleted blob.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM upload_jobs WHERE blob_sha256 = :sha", nativeQuery = true)
+    int deleteByBlob(@Param("sha") String blobSha256);
+}
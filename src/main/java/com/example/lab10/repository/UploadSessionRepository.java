@@ -0,0 +1,30 @@
+package com.example.lab10.repository;
+
+import com.example.lab10.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * Repository for UploadSession entity.
+ * I use this to track chunked uploads.
+ */
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /*
+     * Gets a session only if it belongs to the user.
+     */
+    Optional<UploadSession> findByIdAndUserId(String id, Integer userId);
+
+    /*
+     * Gets sessions with no activity since the given time.
+     * Used by the cleanup job (uses the updated_at index).
+     */
+    List<UploadSession> findAllByUpdatedAtBefore(long cutoff);
+
+    /*
+     * Gets every session of one user (user purge).
+     */
+    List<UploadSession> findAllByUserId(Integer userId);
+}
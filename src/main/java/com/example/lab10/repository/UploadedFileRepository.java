@@ -0,0 +1,44 @@
+package com.example.lab10.repository;
+
+import com.example.lab10.model.UploadedFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * Repository for UploadedFile entity.
+ * Every query is scoped by user id (user isolation, same as notes).
+ */
+public interface UploadedFileRepository extends JpaRepository<UploadedFile, Integer> {
+
+    /*
+     * Gets one upload of the user by filename.
+     */
+    Optional<UploadedFile> findByUserIdAndFilename(Integer userId, String filename);
+
+    /*
+     * Gets every upload that points to one blob.
+     */
+    List<UploadedFile> findAllByBlobSha256(String blobSha256);
+
+    /*
+     * Gets an upload only if it belongs to the user.
+     */
+    Optional<UploadedFile> findByIdAndUserId(Integer id, Integer userId);
+
+    /*
+     * Points an existing upload to new content (same user + filename uploaded again).
+     * A plain UPDATE, so no SELECT runs first inside the transaction.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE uploads SET blob_sha256 = :sha, size = :size, created_at = :now WHERE id = :id",
+            nativeQuery = true)
+    int repoint(@Param("id") Integer id, @Param("sha") String blobSha256,
+                @Param("size") long size, @Param("now") long now);
+}
@@ -0,0 +1,186 @@
+package com.example.lab10.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Load shedding: limits how many requests of each kind run at the same time.
+ *
+ * Without it, when SQLite or BCrypt is saturated, requests wait in Tomcat's
+ * queue until they time out and every user gets slow. With it, the requests
+ * over the limit get an immediate 503 + Retry-After, and the ones that are
+ * accepted keep a normal latency.
+ *
+ * Every endpoint class has its own limit (GradientLimit), learned from its
+ * latency: a login is slow because of BCrypt, a note list is fast, and one
+ * must not push the other out.
+ *
+ * Health checks, Prometheus scrapes and static files are never limited (the load
+ * balancer must still see the app as alive, the overload must show up in the
+ * metrics, and a page must still get its favicon).
+ *
+ * It runs right after the metrics filters and before the Spring Security chain,
+ * so a rejected request costs no session lookup and no SQL.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    /*
+     * Endpoint classes, each with its own limit.
+     */
+    enum EndpointClass {
+        AUTH,     // POST /login, /register (BCrypt)
+        UPLOAD,   // uploads (fixed limit, latency depends on the file)
+        DOWNLOAD, // GET /notes/files/{id} (fixed limit, same reason)
+        WRITE,    // other POST/PUT/DELETE
+        READ      // everything else
+    }
+
+    private final boolean enabled;
+    private final long retryAfterSeconds;
+
+    private final Map<EndpointClass, GradientLimit> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> accepted = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejected = new EnumMap<>(EndpointClass.class);
+
+    public ConcurrencyLimitFilter(
+            MeterRegistry meterRegistry,
+            @Value("${lab10.limiter.enabled:true}") boolean enabled,
+            @Value("${lab10.limiter.initial-limit:20}") int initialLimit,
+            @Value("${lab10.limiter.min-limit:2}") int minLimit,
+            @Value("${lab10.limiter.max-limit:200}") int maxLimit,
+            @Value("${lab10.limiter.upload-limit:8}") int uploadLimit,
+            @Value("${lab10.limiter.download-limit:16}") int downloadLimit,
+            @Value("${lab10.limiter.retry-after-seconds:1}") long retryAfterSeconds
+    ) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        for (EndpointClass c : EndpointClass.values()) {
+            GradientLimit limit = switch (c) {
+                case UPLOAD -> new GradientLimit(uploadLimit, uploadLimit, uploadLimit, false);
+                case DOWNLOAD -> new GradientLimit(downloadLimit, downloadLimit, downloadLimit, false);
+                default -> new GradientLimit(initialLimit, minLimit, maxLimit, true);
+            };
+            limits.put(c, limit);
+
+            String tag = c.name().toLowerCase();
+            accepted.put(c, Counter.builder("lab10.limiter.requests")
+                    .description("Requests accepted or shed (503) by the concurrency limiter")
+                    .tag("class", tag).tag("outcome", "accepted")
+                    .register(meterRegistry));
+            rejected.put(c, Counter.builder("lab10.limiter.requests")
+                    .tag("class", tag).tag("outcome", "rejected")
+                    .register(meterRegistry));
+            Gauge.builder("lab10.limiter.limit", limit, GradientLimit::limit)
+                    .description("Current concurrency limit per endpoint class")
+                    .tag("class", tag)
+                    .register(meterRegistry);
+            Gauge.builder("lab10.limiter.in_flight", limit, GradientLimit::inFlight)
+                    .tag("class", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    /*
+     * Health checks, metrics and static files skip the limiter.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) return true;
+
+        String path = request.getRequestURI();
+        return path.equals("/actuator/health") || path.startsWith("/actuator/health/")
+                || path.equals("/actuator/prometheus")
+                || path.equals("/favicon.ico")
+                || path.startsWith("/css/") || path.startsWith("/js/") || path.startsWith("/images/")
+                || path.startsWith("/webjars/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain chain
+    ) throws ServletException, IOException {
+
+        EndpointClass endpointClass = classify(request);
+        GradientLimit limit = limits.get(endpointClass);
+
+        if (!limit.tryAcquire()) {
+            rejected.get(endpointClass).increment();
+            shed(response);
+            return;
+        }
+        accepted.get(endpointClass).increment();
+
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            chain.doFilter(request, response);
+            ok = true;
+        } finally {
+            // A failed request says nothing about the normal latency
+            limit.release(ok ? System.nanoTime() - start : 0);
+        }
+    }
+
+    /*
+     * Gives the current limits (admin dashboard, tests).
+     */
+    public Map<String, Integer> currentLimits() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        limits.forEach((c, limit) -> result.put(c.name().toLowerCase(), limit.limit()));
+        return result;
+    }
+
+    static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        boolean post = HttpMethod.POST.matches(request.getMethod());
+
+        if (post && (path.equals("/login") || path.equals("/register"))) {
+            return EndpointClass.AUTH;
+        }
+        if (path.startsWith("/notes/upload")) {
+            return EndpointClass.UPLOAD;
+        }
+        if (HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())) {
+            // A download streams the whole file: its time says nothing about the load,
+            // and in READ it would shrink the limit of the fast pages. Thumbnails stay READ.
+            return isDownload(path) ? EndpointClass.DOWNLOAD : EndpointClass.READ;
+        }
+        return EndpointClass.WRITE;
+    }
+
+    // /notes/files/{id}, not /notes/files/{id}/thumbnail
+    private static boolean isDownload(String path) {
+        return path.startsWith("/notes/files/") && path.indexOf('/', "/notes/files/".length()) < 0;
+    }
+
+    /*
+     * Fast 503: no error page, no template, no session.
+     */
+    private void shed(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Server busy, please retry in " + retryAfterSeconds + " s\n");
+    }
+}
@@ -45,9 +45,12 @@ public class CustomUserDetailsService implements UserDetailsService {
 //        System.out.println("LOAD USER -> role=" + user.getRole());
 
         //  converts my User entity into Spring Security's UserDetails
+        // (an account being purged is disabled: the login fails)
+        boolean enabled = !User.PURGED_ROLE.equals(user.getRole());
         return new org.springframework.security.core.userdetails.User(
                 user.getEmail(),
                 user.getPassword(),
+                enabled, true, true, true,
                 List.of(new SimpleGrantedAuthority(user.getRole()))
         );
     }
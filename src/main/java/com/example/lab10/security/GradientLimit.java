@@ -0,0 +1,115 @@
+package com.example.lab10.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Concurrency limit of one endpoint class, estimated from latency (gradient).
+ *
+ * The idea: while the server is not saturated, more requests at the same time
+ * don't make each one slower. When they do (SQLite busy, CPU full of BCrypt),
+ * the extra requests are only waiting, so the limit should go down.
+ *
+ * After every request:
+ *   longRtt  = slow moving average of the latency (the "normal" latency)
+ *   gradient = tolerance * longRtt / rtt, between 0.5 and 1.0
+ *              (1.0 = not slower than normal, 0.5 = much slower)
+ *   limit    = limit * gradient + sqrt(limit)      (smoothed)
+ * So the limit grows by ~sqrt(limit) while latency is normal and
+ * shrinks (at most by half) when it rises.
+ *
+ * The limit only grows when it is actually used (in flight >= limit / 2),
+ * otherwise an idle server would end up with a huge limit.
+ *
+ * A fixed limit (adaptive = false) is used for uploads, whose latency
+ * depends on the size of the file, not on the load.
+ */
+public class GradientLimit {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Written under the lock, read without it
+    private volatile double limit;
+
+    // Guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private double longRttNanos;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, boolean adaptive) {
+        this.adaptive = adaptive;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /*
+     * Takes one slot, or returns false when the limit is reached.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Gives the slot back, with the latency of the request that used it.
+     */
+    public void release(long rttNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        if (adaptive && rttNanos > 0) {
+            update(rttNanos, inFlightBefore);
+        }
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void update(long rttNanos, int inFlightBefore) {
+        lock.lock();
+        try {
+            if (longRttNanos == 0) {
+                longRttNanos = rttNanos;
+                return;
+            }
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+
+            // Latency dropped a lot (load went away): forget the old "normal" faster
+            if (longRttNanos / rttNanos > 2) {
+                longRttNanos *= 0.95;
+            }
+
+            double current = limit;
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / rttNanos));
+            double next = current * gradient + Math.sqrt(current);
+
+            // Not using the current limit: no reason to raise it
+            if (next > current && inFlightBefore < current / 2) {
+                return;
+            }
+
+            next = current * (1 - SMOOTHING) + next * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, next));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.lab10.security;
 
+import com.example.lab10.jfr.RateLimitEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -18,21 +22,41 @@ import java.util.concurrent.ConcurrentLinkedDeque;
 /*
  * This filter limits how many times a client can POST
  * to /login and /register in a short time.
+ *
+ * Every decision is counted in lab10.ratelimit.requests{path, outcome}
+ * (outcome = accepted | rejected) and recorded as a RateLimitEvent for JFR.
  */
 @Component
 public class SimpleRateLimitFilter extends OncePerRequestFilter {
 
     // Max number of allowed requests in the time window
-    private static final int LIMIT = 4;
+    private final int limit;
 
     // Time window in seconds
-    private static final long WINDOW_SECONDS = 60;
+    private final long windowSeconds;
 
     /*
      * Map that stores request timestamps per IP address.
      */
     private final Map<String, Deque<Long>> hits = new ConcurrentHashMap<>();
 
+    private final MeterRegistry meterRegistry;
+
+    /*
+     * Defaults: 4 POSTs per minute per IP.
+     * Load tests raise the limit (lab10.ratelimit.limit), because all
+     * their simulated users come from the same IP.
+     */
+    public SimpleRateLimitFilter(
+            MeterRegistry meterRegistry,
+            @Value("${lab10.ratelimit.limit:4}") int limit,
+            @Value("${lab10.ratelimit.window-seconds:60}") long windowSeconds
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.limit = limit;
+        this.windowSeconds = windowSeconds;
+    }
+
     /*
      * Decide when this filter should NOT run.
      * I only want to rate-limit:
@@ -76,21 +100,24 @@ public class SimpleRateLimitFilter extends OncePerRequestFilter {
         while (true) {
             Long head = q.peekFirst();
             if (head == null) break;
-            if (now - head > WINDOW_SECONDS) q.pollFirst();
+            if (now - head > windowSeconds) q.pollFirst();
             else break;
         }
 
         /*
          * If the limit is reached, block the request.
          */
-        if (q.size() >= LIMIT) {
+        int inWindow = q.size();
+        if (inWindow >= limit) {
+            record(request, false, inWindow);
+
             response.setStatus(429); // Too Many Requests
-            response.setHeader("Retry-After", String.valueOf(WINDOW_SECONDS));
+            response.setHeader("Retry-After", String.valueOf(windowSeconds));
 
             // Pass info to the rate-limit error page
             request.setAttribute("statusCode", 429);
             request.setAttribute("message", "Too Many Requests - rate limit triggered. Please wait and try again.");
-            request.setAttribute("retryAfterSeconds", WINDOW_SECONDS);
+            request.setAttribute("retryAfterSeconds", windowSeconds);
 
             // Forward to a friendly error page
             request.getRequestDispatcher("/rate-limit").forward(request, response);
@@ -99,8 +126,35 @@ public class SimpleRateLimitFilter extends OncePerRequestFilter {
 
         // Register this request timestamp
         q.addLast(now);
+        record(request, true, inWindow);
 
         // Continue with the normal filter chain
         chain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /*
+     * Number of clients (IPs) in the table (admin dashboard).
+     */
+    public int trackedClients() {
+        return hits.size();
+    }
+
+    // Only /login and /register get here, so the path tag has 2 values
+    private void record(HttpServletRequest request, boolean accepted, int inWindow) {
+        Counter.builder("lab10.ratelimit.requests")
+                .description("Rate-limited POSTs by decision")
+                .tag("path", request.getRequestURI())
+                .tag("outcome", accepted ? "accepted" : "rejected")
+                .register(meterRegistry)
+                .increment();
+
+        RateLimitEvent event = new RateLimitEvent();
+        if (event.shouldCommit()) {
+            event.path = request.getRequestURI();
+            event.clientAddress = request.getRemoteAddr();
+            event.accepted = accepted;
+            event.requestsInWindow = inWindow;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.lab10.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Counters behind the admin dashboard (/admin).
+ *
+ * The page must not run COUNT(*) over users and notes on every load (that grows
+ * with the data). Instead:
+ * - NoteService, UserService and the upload quota commit report every change here
+ *   (a few atomic updates per write)
+ * - totals and the top users are kept up to date (TopK), so reading them does
+ *   not depend on how many users or notes exist
+ * - reconcile() recomputes everything from the tables once the app is ready and every
+ *   lab10.admin.stats.reconcile-ms, and fixes what drifted (a write that failed
+ *   after its counter moved, a change made outside the app). How many values
+ *   it had to fix is counted in lab10.stats.corrections.
+ *
+ * Upload bytes are the sizes of the saved uploads (uploads in progress are not counted).
+ */
+@Service
+public class AdminStats {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminStats.class);
+
+    private final JdbcTemplate jdbc;
+
+    private final AtomicLong users = new AtomicLong();
+    private final AtomicLong notes = new AtomicLong();
+    private final AtomicLong uploadBytes = new AtomicLong();
+
+    // userId -> counter (only users with notes / uploads)
+    private final Map<Integer, AtomicLong> notesByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> bytesByUser = new ConcurrentHashMap<>();
+
+    private final TopK topByNotes;
+    private final TopK topByBytes;
+
+    private final Counter corrections;
+    private volatile long lastReconcile;
+
+    public AdminStats(
+            JdbcTemplate jdbc,
+            MeterRegistry meterRegistry,
+            @Value("${lab10.admin.stats.top-k:10}") int topK
+    ) {
+        this.jdbc = jdbc;
+        this.topByNotes = new TopK(topK);
+        this.topByBytes = new TopK(topK);
+
+        Gauge.builder("lab10.stats.users", users, AtomicLong::get)
+                .description("Registered users (incrementally maintained)")
+                .register(meterRegistry);
+        Gauge.builder("lab10.stats.notes", notes, AtomicLong::get)
+                .description("Notes of all users (incrementally maintained)")
+                .register(meterRegistry);
+        Gauge.builder("lab10.stats.upload_bytes", uploadBytes, AtomicLong::get)
+                .description("Size of all saved uploads (incrementally maintained)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.corrections = Counter.builder("lab10.stats.corrections")
+                .description("Dashboard counters fixed by the periodic reconciliation")
+                .register(meterRegistry);
+    }
+
+    // ============================================================
+    // Writes (called after the change is saved)
+    // ============================================================
+
+    public void userRegistered() {
+        users.incrementAndGet();
+    }
+
+    /*
+     * The user and all its data are gone (UserPurgeService).
+     */
+    public void userRemoved(Integer userId) {
+        users.decrementAndGet();
+        notesChanged(userId, -notesOf(userId));
+        uploadBytesChanged(userId, -uploadBytesOf(userId));
+        topByNotes.remove(userId);
+        topByBytes.remove(userId);
+    }
+
+    public void notesChanged(Integer userId, long delta) {
+        notes.addAndGet(delta);
+        topByNotes.offer(userId, add(notesByUser, userId, delta));
+    }
+
+    public void uploadBytesChanged(Integer userId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        uploadBytes.addAndGet(delta);
+        topByBytes.offer(userId, add(bytesByUser, userId, delta));
+    }
+
+    // ============================================================
+    // Reads (dashboard)
+    // ============================================================
+
+    public long users() {
+        return users.get();
+    }
+
+    public long notes() {
+        return notes.get();
+    }
+
+    public long uploadBytes() {
+        return uploadBytes.get();
+    }
+
+    public long notesOf(Integer userId) {
+        AtomicLong count = notesByUser.get(userId);
+        return count == null ? 0 : count.get();
+    }
+
+    public long uploadBytesOf(Integer userId) {
+        AtomicLong bytes = bytesByUser.get(userId);
+        return bytes == null ? 0 : bytes.get();
+    }
+
+    /*
+     * The users with the most notes / upload bytes (userId -> value), biggest first.
+     */
+    public List<Map.Entry<Integer, Long>> topByNotes() {
+        return topByNotes.top();
+    }
+
+    public List<Map.Entry<Integer, Long>> topByUploadBytes() {
+        return topByBytes.top();
+    }
+
+    /*
+     * When the counters were last checked against the tables (epoch ms, 0 = never).
+     */
+    public long lastReconcile() {
+        return lastReconcile;
+    }
+
+    // ============================================================
+    // RECONCILIATION
+    // ============================================================
+
+    /*
+     * First load once the app is up, not while the context starts: the grouped
+     * queries grow with the data and would delay startup. Until then the
+     * dashboard shows only what changed since boot.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reconcile();
+    }
+
+    /*
+     * Three grouped queries (index on notes.user_id and uploads.user_id).
+     * A write that runs during the queries can be counted twice or not at all
+     * for one interval; the next run fixes it.
+     */
+    @Scheduled(fixedDelayString = "${lab10.admin.stats.reconcile-ms:600000}",
+            initialDelayString = "${lab10.admin.stats.reconcile-ms:600000}")
+    public void reconcile() {
+        Long userCount = jdbc.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+
+        Map<Integer, Long> noteCounts = new HashMap<>();
+        jdbc.query("SELECT user_id, COUNT(*) FROM notes GROUP BY user_id",
+                rs -> { noteCounts.put(rs.getInt(1), rs.getLong(2)); });
+
+        Map<Integer, Long> byteCounts = new HashMap<>();
+        jdbc.query("SELECT user_id, SUM(size) FROM uploads GROUP BY user_id",
+                rs -> { byteCounts.put(rs.getInt(1), rs.getLong(2)); });
+
+        boolean first = lastReconcile == 0;
+        int fixed = 0;
+        if (userCount != null && users.getAndSet(userCount) != userCount) fixed++;
+        fixed += replace(notesByUser, notes, noteCounts);
+        fixed += replace(bytesByUser, uploadBytes, byteCounts);
+
+        topByNotes.reset(noteCounts);
+        topByBytes.reset(byteCounts);
+        lastReconcile = System.currentTimeMillis();
+
+        // The first run only loads the counters
+        if (fixed > 0 && !first) {
+            corrections.increment(fixed);
+            log.info("Admin stats: corrected {} counter(s)", fixed);
+        }
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /*
+     * A counter that drops to 0 stays in the map: removing it here could lose an
+     * update that another thread makes at the same time on the same AtomicLong.
+     * reconcile() removes the users that have nothing left.
+     */
+    private static long add(Map<Integer, AtomicLong> counters, Integer userId, long delta) {
+        return counters.computeIfAbsent(userId, id -> new AtomicLong()).addAndGet(delta);
+    }
+
+    /*
+     * Sets every per-user counter (and the total) to the values from the
+     * tables; returns how many differed.
+     */
+    private static int replace(Map<Integer, AtomicLong> counters, AtomicLong total, Map<Integer, Long> actual) {
+        int fixed = 0;
+        long sum = 0;
+
+        for (Map.Entry<Integer, Long> e : actual.entrySet()) {
+            sum += e.getValue();
+            AtomicLong counter = counters.computeIfAbsent(e.getKey(), id -> new AtomicLong());
+            if (counter.getAndSet(e.getValue()) != e.getValue()) fixed++;
+        }
+        // Users with nothing left in the tables: a counter that still shows
+        // something is a correction, one that already went to 0 is not.
+        // Only a counter that is (still) 0 is removed, and only that instance
+        for (Map.Entry<Integer, AtomicLong> e : List.copyOf(counters.entrySet())) {
+            if (actual.containsKey(e.getKey())) continue;
+
+            AtomicLong counter = e.getValue();
+            if (counter.getAndSet(0) != 0) fixed++;
+            if (counter.get() == 0) {
+                counters.remove(e.getKey(), counter);
+            }
+        }
+
+        if (total.getAndSet(sum) != sum) fixed++;
+        return fixed;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.lab10.service;
+
+import com.example.lab10.repository.BlobRepository;
+import com.example.lab10.repository.UploadJobRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Content-addressed storage for uploaded bytes.
+ *
+ * Every blob is stored once, under its SHA-256:
+ *   {upload dir}/blobs/ab/cd/abcd1234...
+ * The two prefix levels (256 x 256 folders) keep every folder small,
+ * even with millions of files.
+ *
+ * The blobs table counts how many uploads use each blob.
+ * When the count reaches 0, the row and the file are deleted
+ * (and also the thumbnail and the pipeline job of that blob).
+ * A blob left at 0 (the app stopped between the count update and the delete)
+ * is removed by sweepUnreferenced(), every lab10.upload.blob-sweep-ms.
+ * A count left too high (stopped between the new reference and the uploads
+ * row, or a failed release) is fixed at startup.
+ *
+ * Thumbnails made by UploadPipeline live next to the blobs:
+ *   {upload dir}/thumbs/ab/abcd1234....png
+ */
+@Service
+public class BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+
+    // Blobs deleted per sweep query
+    private static final int SWEEP_BATCH = 500;
+
+    private final Path blobDir;
+    private final Path thumbDir;
+    private final BlobRepository blobRepository;
+    private final UploadJobRepository jobRepository;
+
+    /*
+     * Lock stripes: changes to the same blob (same hash) are done one at a time.
+     * ReentrantLock (not synchronized), so virtual threads are not pinned while they wait.
+     */
+    private final ReentrantLock[] stripes = new ReentrantLock[64];
+
+    public BlobStore(
+            @Value("${lab10.upload.dir:${user.home}/lab10_uploads}") String uploadDir,
+            BlobRepository blobRepository,
+            UploadJobRepository jobRepository
+    ) {
+        this.blobDir = Paths.get(uploadDir, "blobs");
+        this.thumbDir = Paths.get(uploadDir, "thumbs");
+        this.blobRepository = blobRepository;
+        this.jobRepository = jobRepository;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /*
+     * Root folder of the blob store.
+     */
+    public Path root() {
+        return blobDir;
+    }
+
+    /*
+     * Path of the file that holds the blob with this hash.
+     */
+    public Path pathFor(String sha256) {
+        return blobDir.resolve(sha256.substring(0, 2))
+                .resolve(sha256.substring(2, 4))
+                .resolve(sha256);
+    }
+
+    /*
+     * Path of the PNG thumbnail of a blob (it exists only for images).
+     */
+    public Path thumbnailPathFor(String sha256) {
+        return thumbDir.resolve(sha256.substring(0, 2)).resolve(sha256 + ".png");
+    }
+
+    /*
+     * Adds one reference to the blob with this hash.
+     *
+     * - If the blob already exists, the temp file is a duplicate and is deleted.
+     * - If it is new, the temp file is moved into its sharded folder.
+     */
+    public void addReference(String sha256, long size, Path temp) throws IOException {
+        Lock lock = stripe(sha256);
+        lock.lock();
+        try {
+            Path target = pathFor(sha256);
+
+            if (blobRepository.incrementRefCount(sha256) == 1) {
+                // Same content is already stored (if the file went missing, I put it back)
+                if (Files.exists(target)) {
+                    Files.deleteIfExists(temp);
+                } else {
+                    moveIntoPlace(temp, target);
+                }
+                return;
+            }
+
+            moveIntoPlace(temp, target);
+            blobRepository.insert(sha256, size, System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Removes one reference, and deletes the blob when nobody uses it anymore.
+     */
+    public void releaseReference(String sha256) throws IOException {
+        Lock lock = stripe(sha256);
+        lock.lock();
+        try {
+            blobRepository.decrementRefCount(sha256);
+            deleteIfUnreferencedLocked(sha256);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Deletes the blob if its count is already 0 (UserPurgeService lowers the
+     * counts in the same transaction that deletes the uploads rows).
+     */
+    public void deleteIfUnreferenced(String sha256) throws IOException {
+        Lock lock = stripe(sha256);
+        lock.lock();
+        try {
+            deleteIfUnreferencedLocked(sha256);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * No upload runs before startup, so every count can be checked against the
+     * uploads rows; the blobs that drop to 0 are deleted right away.
+     */
+    @PostConstruct
+    public void start() {
+        int fixed = blobRepository.reconcileRefCounts();
+        if (fixed > 0) {
+            log.info("Blob store: corrected the reference count of {} blob(s)", fixed);
+        }
+        try {
+            sweepUnreferenced();
+        } catch (IOException e) {
+            // The scheduled sweep tries again
+            log.warn("Could not delete unreferenced blobs at startup", e);
+        }
+    }
+
+    /*
+     * Maintenance: deletes the blobs whose count is 0 but that are still there.
+     * Each one goes through deleteIfUnreferenced (same lock as an upload of
+     * that content, so a blob that just got a new reference is kept).
+     */
+    @Scheduled(fixedDelayString = "${lab10.upload.blob-sweep-ms:3600000}",
+            initialDelayString = "${lab10.upload.blob-sweep-ms:3600000}")
+    public void sweepUnreferenced() throws IOException {
+        int deleted = 0;
+        List<String> batch;
+        do {
+            batch = blobRepository.findUnreferenced(SWEEP_BATCH);
+            for (String sha256 : batch) {
+                deleteIfUnreferenced(sha256);
+            }
+            deleted += batch.size();
+        } while (batch.size() == SWEEP_BATCH);
+
+        if (deleted > 0) {
+            log.info("Blob store: deleted {} unreferenced blob(s)", deleted);
+        }
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private void deleteIfUnreferencedLocked(String sha256) throws IOException {
+        if (blobRepository.deleteIfUnreferenced(sha256) == 1) {
+            Files.deleteIfExists(pathFor(sha256));
+            Files.deleteIfExists(thumbnailPathFor(sha256));
+            jobRepository.deleteByBlob(sha256);
+        }
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Lock stripe(String key) {
+        return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+    }
+}
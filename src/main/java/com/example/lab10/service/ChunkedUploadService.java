@@ -0,0 +1,370 @@
+package com.example.lab10.service;
+
+import com.example.lab10.jfr.UploadWriteEvent;
+import com.example.lab10.model.UploadSession;
+import com.example.lab10.model.UploadedFile;
+import com.example.lab10.model.User;
+import com.example.lab10.repository.UploadSessionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Service for resumable (chunked) uploads.
+ *
+ * Protocol:
+ * 1. start()     -> creates a session and a preallocated file
+ * 2. writeChunk  -> each chunk is written at its own offset (positional FileChannel write)
+ * 3. complete()  -> when all chunks are there, the file is handed to the blob store
+ *
+ * Received chunks are stored in the database, so after a broken connection
+ * the client asks for the status and continues from nextOffset.
+ * Sessions with no activity for too long are deleted by a scheduled job.
+ *
+ * The full size is reserved from the user's quota when the session starts,
+ * so parallel sessions can't promise the same space twice. The reservation
+ * is held until the upload completes or the session is deleted.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadService uploadService;
+    private final UserService userService;
+    private final StorageQuotaService quotaService;
+
+    private final int chunkBytes;
+    private final long sessionTtlMillis;
+
+    /*
+     * Lock stripes (fixed array, like BlobStore): a session id always maps to the
+     * same lock, and nothing is ever added or removed, so a caller can't make
+     * the locks grow and a finished session can't hand out a second lock.
+     * - chunk data is written under the read lock (chunks run in parallel)
+     * - the "received" bitmap update, complete, abort and cleanup take the
+     *   write lock, so the file is never deleted while a chunk is written to it
+     *
+     * ReentrantReadWriteLock instead of synchronized: JDBC runs while the lock is held,
+     * and on virtual threads a synchronized block would pin the carrier thread.
+     */
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[64];
+
+    // Quota reservation of every open session (by session id)
+    private final Map<String, StorageQuotaService.Reservation> reservations = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(
+            UploadSessionRepository sessionRepository,
+            UploadService uploadService,
+            UserService userService,
+            StorageQuotaService quotaService,
+            @Value("${lab10.upload.chunk-bytes:8388608}") int chunkBytes,
+            @Value("${lab10.upload.session-ttl-ms:86400000}") long sessionTtlMillis
+    ) {
+        this.sessionRepository = sessionRepository;
+        this.uploadService = uploadService;
+        this.userService = userService;
+        this.quotaService = quotaService;
+        this.chunkBytes = chunkBytes;
+        this.sessionTtlMillis = sessionTtlMillis;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    // ============================================================
+    // START
+    // ============================================================
+
+    /*
+     * Creates a new upload session for the current user.
+     * The target file is preallocated to the full size, so chunks
+     * can be written at any offset and in any order.
+     */
+    public UploadSession start(String originalFilename, long size) throws IOException {
+        User me = userService.currentUserOrThrow();
+
+        if (size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is empty");
+        }
+        if (size > uploadService.getMaxBytes()) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "File is too large");
+        }
+
+        // Over quota: rejected (507) before the file is even preallocated
+        StorageQuotaService.Reservation reservation = quotaService.reserve(me.getId(), size);
+
+        String id = UUID.randomUUID().toString();
+        Path part = partFile(id);
+        try {
+            Files.createDirectories(part.getParent());
+
+            try (RandomAccessFile raf = new RandomAccessFile(part.toFile(), "rw")) {
+                raf.setLength(size);
+            }
+
+            UploadSession session = new UploadSession(
+                    id, me.getId(), uploadService.sanitize(originalFilename), size, chunkBytes, System.currentTimeMillis());
+            reservations.put(id, reservation);
+            return sessionRepository.save(session);
+        } catch (IOException | RuntimeException e) {
+            reservations.remove(id);
+            reservation.close();
+            Files.deleteIfExists(part);
+            throw e;
+        }
+    }
+
+    /*
+     * Reservations live in memory and StorageQuotaService drops them at startup,
+     * so the sessions that are still open take theirs back.
+     */
+    @PostConstruct
+    public void restoreReservations() {
+        for (UploadSession session : sessionRepository.findAll()) {
+            reservations.put(session.getId(), quotaService.restore(session.getUserId(), session.getTotalSize()));
+        }
+    }
+
+    // ============================================================
+    // STATUS
+    // ============================================================
+
+    /*
+     * Returns the session only if it belongs to the current user.
+     */
+    public UploadSession getMineOr404(String id) {
+        User me = userService.currentUserOrThrow();
+        return sessionRepository.findByIdAndUserId(id, me.getId())
+                .orElseThrow(() ->
+                        new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found")
+                );
+    }
+
+    // ============================================================
+    // WRITE ONE CHUNK
+    // ============================================================
+
+    /*
+     * Writes one chunk at the given offset.
+     * The chunk is acknowledged (marked in the bitmap) only after it is
+     * fully written and fsynced, so a resumed upload never skips lost data.
+     */
+    public UploadSession writeChunk(String id, long offset, long contentLength, InputStream in) throws IOException {
+        // Ownership first: no lock is taken for a session of someone else
+        UploadSession session = getMineOr404(id);
+
+        // Chunks must start on a chunk boundary
+        if (offset < 0 || offset % session.getChunkSize() != 0 || offset >= session.getTotalSize()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid chunk offset");
+        }
+
+        int index = (int) (offset / session.getChunkSize());
+        long expected = session.chunkLength(index);
+
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk must be " + expected + " bytes");
+        }
+
+        UploadWriteEvent event = new UploadWriteEvent();
+        event.begin();
+
+        Lock shared = lockFor(id).readLock();
+        shared.lock();
+        try (FileChannel out = FileChannel.open(partFile(id), StandardOpenOption.WRITE)) {
+            ReadableByteChannel src = Channels.newChannel(in);
+
+            // Positional writes: the channel position is not used, so
+            // several chunks of the same file can be written at the same time
+            long written = 0;
+            while (written < expected) {
+                long n = out.transferFrom(src, offset + written, expected - written);
+                if (n <= 0) break;
+                written += n;
+            }
+
+            if (written != expected || in.read() != -1) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk must be " + expected + " bytes");
+            }
+
+            uploadService.force(out);
+            uploadService.recordWrite(event, session.getUserId(), "chunk", written);
+
+        } catch (NoSuchFileException e) {
+            // The file was removed (for example by the cleanup job)
+            sessionRepository.deleteById(id);
+            releaseReservation(id);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found");
+        } finally {
+            shared.unlock();
+        }
+
+        Lock lock = lockFor(id).writeLock();
+        lock.lock();
+        try {
+            // Aborted or completed while the chunk was written: 404
+            UploadSession fresh = getMineOr404(id);
+            fresh.markReceived(index);
+            fresh.setUpdatedAt(System.currentTimeMillis());
+            return sessionRepository.save(fresh);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ============================================================
+    // COMPLETE / ABORT
+    // ============================================================
+
+    /*
+     * Finishes the upload: checks that every chunk is there and
+     * stores the file like a normal upload.
+     */
+    public UploadedFile complete(String id) throws IOException {
+        getMineOr404(id);
+
+        Lock lock = lockFor(id).writeLock();
+        lock.lock();
+        try {
+            UploadSession session = getMineOr404(id);
+
+            if (!session.isComplete()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload is not complete");
+            }
+
+            // The upload commits the reservation; if it fails, the session keeps it
+            UploadedFile stored = uploadService.storeAssembled(partFile(id), session.getFilename(), reservationOf(session));
+            sessionRepository.delete(session);
+            releaseReservation(id);
+
+            return stored;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Cancels the upload and deletes the partial file.
+     */
+    public void abort(String id) throws IOException {
+        getMineOr404(id);
+
+        Lock lock = lockFor(id).writeLock();
+        lock.lock();
+        try {
+            UploadSession session = getMineOr404(id);
+            Files.deleteIfExists(partFile(id));
+            sessionRepository.delete(session);
+            releaseReservation(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ============================================================
+    // CLEANUP JOB
+    // ============================================================
+
+    /*
+     * Deletes sessions (and their files) that had no activity
+     * for longer than lab10.upload.session-ttl-ms.
+     */
+    @Scheduled(fixedDelayString = "${lab10.upload.session-sweep-ms:600000}")
+    public void deleteAbandonedSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTtlMillis;
+        for (UploadSession session : sessionRepository.findAllByUpdatedAtBefore(cutoff)) {
+            delete(session.getId(), cutoff);
+        }
+    }
+
+    /*
+     * Deletes every session of one user with its partial file (user purge).
+     * Returns how many could not be deleted (retried by the next call).
+     */
+    public int deleteSessionsOf(Integer userId) {
+        int failed = 0;
+        for (UploadSession session : sessionRepository.findAllByUserId(userId)) {
+            if (!delete(session.getId(), Long.MAX_VALUE)) failed++;
+        }
+        return failed;
+    }
+
+    /*
+     * Deletes one session if it had no activity since idleBefore (epoch ms).
+     * The session is read again under the write lock: the list was read
+     * without it, and a chunk may have resumed the upload since.
+     * Returns false only if the file could not be deleted.
+     */
+    private boolean delete(String id, long idleBefore) {
+        Lock lock = lockFor(id).writeLock();
+        lock.lock();
+        try {
+            UploadSession session = sessionRepository.findById(id).orElse(null);
+            if (session == null || session.getUpdatedAt() >= idleBefore) {
+                return true;
+            }
+
+            try {
+                Files.deleteIfExists(partFile(id));
+            } catch (IOException e) {
+                // I log the error and try again on the next run
+                log.warn("Could not delete the partial file of upload session {}", id, e);
+                return false;
+            }
+            sessionRepository.delete(session);
+            releaseReservation(id);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /*
+     * The reservation of an open session (taken back if it is missing).
+     */
+    private StorageQuotaService.Reservation reservationOf(UploadSession session) {
+        return reservations.computeIfAbsent(session.getId(),
+                id -> quotaService.restore(session.getUserId(), session.getTotalSize()));
+    }
+
+    private void releaseReservation(String id) {
+        StorageQuotaService.Reservation reservation = reservations.remove(id);
+        if (reservation != null) {
+            reservation.close();
+        }
+    }
+
+    private Path partFile(String id) {
+        return uploadService.chunkDir().resolve(id + ".part");
+    }
+
+    private ReentrantReadWriteLock lockFor(String id) {
+        return stripes[Math.floorMod(id.hashCode(), stripes.length)];
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.lab10.service;
+
+import com.example.lab10.model.UploadedFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Sends uploaded files back to their owner.
+ *
+ * Supports:
+ * - ETag / If-None-Match (the ETag is the SHA-256, so it never changes for the same content)
+ * - Range / If-Range with 206 Partial Content, so broken downloads can resume
+ * - zero-copy: Tomcat's sendfile when the connector supports it,
+ *   otherwise FileChannel.transferTo() into the response
+ */
+@Service
+public class FileDownloadService {
+
+    // Request attributes of Tomcat's sendfile support (NIO connector)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final BlobStore blobStore;
+    private final UploadIndex uploadIndex;
+
+    public FileDownloadService(BlobStore blobStore, UploadIndex uploadIndex) {
+        this.blobStore = blobStore;
+        this.uploadIndex = uploadIndex;
+    }
+
+    /*
+     * Writes the file (or the requested byte range) to the response.
+     */
+    public void send(UploadedFile upload, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path path = blobStore.pathFor(upload.getBlobSha256());
+        if (!Files.isRegularFile(path)) {
+            // Deleted outside the app: the listing stops showing it now,
+            // not only when the background check gets to this blob
+            uploadIndex.blobMissing(upload.getBlobSha256());
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found");
+        }
+
+        long size = Files.size(path);
+        String etag = "\"" + upload.getBlobSha256() + "\"";
+
+        // Headers that every answer has (also the 304)
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // Private file: browsers may keep it, but must check the ETag first
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        // The client already has this content
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;   // inclusive
+
+        // If-Range: only honor the Range when the client has the same version
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            long[] parsed = parseRange(range, size);
+
+            if (parsed == null) {
+                // Range can't be satisfied
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(length);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(upload.getFilename(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        // Zero-copy path: Tomcat sends the file with sendfile() after the handler returns
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);   // exclusive
+            return;
+        }
+
+        // Fallback: transferTo() lets the JDK move the bytes without a heap copy of the file
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long n = in.transferTo(position, remaining, out);
+                if (n <= 0) break;
+                position += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    /*
+     * Sends the PNG thumbnail made by UploadPipeline (404 if there is none yet).
+     * Thumbnails are small, so a plain copy is enough here.
+     */
+    public void sendThumbnail(UploadedFile upload, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path path = blobStore.thumbnailPathFor(upload.getBlobSha256());
+        if (!Files.isRegularFile(path)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Thumbnail not found");
+        }
+
+        // Same content = same thumbnail, so the blob hash is a good ETag too
+        String etag = "\"thumb-" + upload.getBlobSha256() + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaType.IMAGE_PNG_VALUE);
+        response.setContentLengthLong(Files.size(path));
+        if (!"HEAD".equals(request.getMethod())) {
+            Files.copy(path, response.getOutputStream());
+        }
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /*
+     * Checks an If-None-Match header against the ETag.
+     * Weak validators (W/"...") are compared by their value.
+     */
+    private boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Parses a "bytes=start-end" Range header.
+     *
+     * Returns:
+     * - {start, end} (inclusive) for one valid range
+     * - an empty array when the header should be ignored (other unit, several ranges, bad syntax)
+     * - null when the range can't be satisfied (416)
+     */
+    private long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.contains(",")) {
+            return new long[0];
+        }
+
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            // "bytes=-500" means the last 500 bytes
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) return null;
+                return new long[] { Math.max(size - suffix, 0), size - 1 };
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+
+            if (start >= size) return null;
+            if (end < start) return new long[0];
+            return new long[] { start, end };
+
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.lab10.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/*
+ * Cache of the rendered middle part of GET /notes (template note/list-content:
+ * uploaded files, notes and their edit/delete links), per user and files page.
+ *
+ * Invalidation: every user has a version counter. NoteService (create, update,
+ * delete) and UploadIndex (any change to the listing of a user's files) call
+ * invalidate(userId), which bumps it; a cached entry is only used while its
+ * version is the current one. invalidateAll() bumps a global epoch (full index
+ * reload). The version is read BEFORE the data is loaded, so an entry rendered
+ * from data that changed meanwhile is already stale when it is stored.
+ *
+ * CSRF: the delete forms need the token of the current session, so the fragment
+ * is rendered with a marker instead of the token, and stored split around it.
+ * A hit only joins the parts with the token of this request. The links in it
+ * don't depend on the session (Spring Security disables ;jsessionid URL rewriting).
+ *
+ * Memory: an LRU map bounded by lab10.notes.list-cache.max-bytes (2 bytes per char);
+ * fragments bigger than 1/8 of it are not cached (a user with thousands of notes).
+ */
+@Service
+public class NoteListCache {
+
+    private static final String TEMPLATE = "note/list-content";
+
+    // Letters, digits and '-' only: HTML escaping leaves it as it is
+    private static final String TOKEN_MARKER = "csrf-" + UUID.randomUUID();
+
+    private final ITemplateEngine templateEngine;
+    private final boolean enabled;
+    private final long maxBytes;
+
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    /*
+     * Access-ordered map = LRU. Guarded by the lock (a get() reorders it).
+     * ReentrantLock, not synchronized, so virtual threads don't pin their carrier.
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long bytes;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public NoteListCache(
+            ITemplateEngine templateEngine,
+            MeterRegistry meterRegistry,
+            @Value("${lab10.notes.list-cache.enabled:true}") boolean enabled,
+            @Value("${lab10.notes.list-cache.max-bytes:16777216}") long maxBytes
+    ) {
+        this.templateEngine = templateEngine;
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+
+        this.hits = Counter.builder("lab10.notes.list_cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("lab10.notes.list_cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("lab10.notes.list_cache.bytes", this, NoteListCache::sizeBytes)
+                .description("Estimated size of the cached note list fragments")
+                .register(meterRegistry);
+    }
+
+    // ============================================================
+    // READ
+    // ============================================================
+
+    /*
+     * Returns the HTML of the note list for this user, with the CSRF token of this request.
+     * On a miss, model() loads the template variables (notes, uploadedFiles).
+     */
+    public String get(
+            Integer userId,
+            int filesPage,
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Supplier<Map<String, Object>> model
+    ) {
+        String token = csrfToken(request);
+        Key key = new Key(userId, filesPage);
+        long epochNow = epoch.get();
+        long version = versions.getOrDefault(userId, 0L);
+
+        if (enabled) {
+            Entry cached = lookup(key);
+            if (cached != null && cached.epoch == epochNow && cached.version == version) {
+                hits.increment();
+                return cached.html(token);
+            }
+        }
+        misses.increment();
+
+        Entry fresh = new Entry(epochNow, version, render(model.get(), request, response));
+        if (enabled) {
+            store(key, fresh);
+        }
+        return fresh.html(token);
+    }
+
+    // ============================================================
+    // INVALIDATION
+    // ============================================================
+
+    /*
+     * The notes or files of this user changed.
+     */
+    public void invalidate(Integer userId) {
+        versions.merge(userId, 1L, Long::sum);
+    }
+
+    /*
+     * Everything may have changed (for example a full reload of the upload index).
+     */
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /*
+     * Renders the fragment with the marker in place of the CSRF token.
+     * Thymeleaf's web context keeps variables as request attributes,
+     * so they are removed again (the page itself is rendered after this).
+     */
+    private String[] render(Map<String, Object> model, HttpServletRequest request, HttpServletResponse response) {
+        WebContext context = new WebContext(
+                JakartaServletWebApplication.buildApplication(request.getServletContext()).buildExchange(request, response),
+                request.getLocale());
+        context.setVariables(model);
+        context.setVariable("csrfToken", TOKEN_MARKER);
+
+        try {
+            return templateEngine.process(TEMPLATE, context).split(Pattern.quote(TOKEN_MARKER), -1);
+        } finally {
+            model.keySet().forEach(request::removeAttribute);
+            request.removeAttribute("csrfToken");
+        }
+    }
+
+    private static String csrfToken(HttpServletRequest request) {
+        Object token = request.getAttribute(CsrfToken.class.getName());
+        return token instanceof CsrfToken csrf ? csrf.getToken() : "";
+    }
+
+    private Entry lookup(Key key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void store(Key key, Entry entry) {
+        if (entry.bytes > maxBytes / 8) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            Entry old = entries.put(key, entry);
+            bytes += entry.bytes - (old == null ? 0 : old.bytes);
+
+            // Evict the least recently used entries until it fits again
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double sizeBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Key(Integer userId, int filesPage) {
+    }
+
+    /*
+     * One rendered fragment, split around the CSRF token positions.
+     */
+    private static final class Entry {
+        final long epoch;
+        final long version;
+        final String[] parts;
+        final long bytes;
+
+        Entry(long epoch, long version, String[] parts) {
+            this.epoch = epoch;
+            this.version = version;
+            this.parts = parts;
+
+            long chars = 0;
+            for (String part : parts) {
+                chars += part.length();
+            }
+            this.bytes = chars * 2;
+        }
+
+        String html(String token) {
+            return String.join(token, parts);
+        }
+    }
+}
@@ -1,15 +1,18 @@
 package com.example.lab10.service;
 
+import com.example.lab10.jfr.NoteOperationEvent;
+import com.example.lab10.metrics.Phase;
+import com.example.lab10.metrics.Spans;
 import com.example.lab10.model.Note;
 import com.example.lab10.model.User;
 import com.example.lab10.repository.NoteRepository;
-import com.example.lab10.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.util.List;
 
 /*
@@ -18,19 +21,46 @@ import java.util.List;
  * IMPORTANT:
  * This is where user isolation is enforced.
  * If this class is correct, User A can NEVER access User B’s notes.
+ *
+ * Every operation is recorded as a NoteOperationEvent (JFR), with the owner and row count.
+ * Every write invalidates the owner's cached note list page (NoteListCache).
+ * Creates and deletes move the note counters of the admin dashboard (AdminStats).
+ *
+ * Concurrent list queries of the same owner (many open tabs refreshing at once,
+ * the sync agent) are coalesced: one query runs, the others share its result
+ * (SingleFlight). Writes make later reads start a new query.
  */
 @Service
 public class NoteService {
 
     private final NoteRepository noteRepository;
-    private final UserRepository userRepository;
+    private final UserService userService;
+    private final NoteListCache noteListCache;
+    private final AdminStats adminStats;
+
+    // ownerId -> the list query running for that owner (null = coalescing off)
+    private final SingleFlight<Integer, List<Note>> listFlights;
 
     /*
-     * Injects repositories needed for note and user access.
+     * Injects the note repository, the user service (for the current user),
+     * the note list cache (invalidated on every write) and the dashboard counters.
      */
-    public NoteService(NoteRepository noteRepository, UserRepository userRepository) {
+    public NoteService(
+            NoteRepository noteRepository,
+            UserService userService,
+            NoteListCache noteListCache,
+            AdminStats adminStats,
+            MeterRegistry meterRegistry,
+            @Value("${lab10.notes.coalesce.enabled:true}") boolean coalesce,
+            @Value("${lab10.notes.coalesce.timeout-ms:5000}") long coalesceTimeoutMs
+    ) {
         this.noteRepository = noteRepository;
-        this.userRepository = userRepository;
+        this.userService = userService;
+        this.noteListCache = noteListCache;
+        this.adminStats = adminStats;
+        this.listFlights = coalesce
+                ? new SingleFlight<>("notes.list", Duration.ofMillis(coalesceTimeoutMs), meterRegistry)
+                : null;
     }
 
     // ============================================================
@@ -38,27 +68,22 @@ public class NoteService {
     // ============================================================
 
     /*
-     * Gets the currently authenticated user from Spring Security.s
+     * Gets the currently authenticated user.
+     * The lookup itself lives in UserService (uploads need it too).
      */
     private User currentUserOrThrow() {
+        return userService.currentUserOrThrow();
+    }
 
-        // Get authentication info from Spring Security
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-
-        // If no authentication exists, the user is not logged in
-        if (auth == null || auth.getName() == null || auth.getName().isBlank()) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not authenticated");
+    /*
+     * After a write: reads that start from now on must see it.
+     * Public for the writes made outside this class (UserPurgeService).
+     */
+    public void notesChanged(Integer ownerId) {
+        if (listFlights != null) {
+            listFlights.forget(ownerId);
         }
-
-        // Normalizes email (same logic as login)
-        String email = auth.getName().trim().toLowerCase();
-
-        // Load the user from the database
-        // If user does not exist, treat as unauthorized
-        return userRepository.findByEmail(email)
-                .orElseThrow(() ->
-                        new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found")
-                );
+        noteListCache.invalidate(ownerId);
     }
 
     // ============================================================
@@ -69,27 +94,45 @@ public class NoteService {
      * Returns all notes that belong ONLY to the current user.
      */
     public List<Note> findMyNotes() {
+        NoteOperationEvent event = NoteOperationEvent.start("list");
 
         // Get current user
         User me = currentUserOrThrow();
 
         // Fetch only notes owned by this user
-        return noteRepository.findAllMineNative(me.getId());
+        // (the list may be shared with concurrent callers, so it is read-only)
+        List<Note> notes;
+        long t = Spans.start();
+        try {
+            notes = listFlights == null
+                    ? noteRepository.findAllMineNative(me.getId())
+                    : listFlights.run(me.getId(), () -> List.copyOf(noteRepository.findAllMineNative(me.getId())));
+        } finally {
+            Spans.stop(Phase.QUERY, t);
+        }
+
+        event.finish(me.getId(), null, notes.size());
+        return notes;
     }
 
     /*
      * Returns one note only if it belongs to the current user.
      */
     public Note getMineOr404(Integer noteId) {
+        NoteOperationEvent event = NoteOperationEvent.start("get");
 
         // Get current user
         User me = currentUserOrThrow();
 
         // Look up note by ID + owner ID
-        return noteRepository.findByIdAndOwner_Id(noteId, me.getId())
-                .orElseThrow(() ->
-                        new ResponseStatusException(HttpStatus.NOT_FOUND, "Note not found")
-                );
+        Note note = noteRepository.findByIdAndOwner_Id(noteId, me.getId()).orElse(null);
+
+        // A miss is recorded too (rows = 0), then it is a 404
+        event.finish(me.getId(), noteId, note == null ? 0 : 1);
+        if (note == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Note not found");
+        }
+        return note;
     }
 
     // ============================================================
@@ -100,6 +143,7 @@ public class NoteService {
      * Creates a new note and assigns ownership
      */
     public Note create(String title, String content) {
+        NoteOperationEvent event = NoteOperationEvent.start("create");
 
         // Get current user
         User me = currentUserOrThrow();
@@ -108,7 +152,12 @@ public class NoteService {
         Note note = new Note(title, content, me);
 
         // Save to database
-        return noteRepository.save(note);
+        Note saved = noteRepository.save(note);
+        notesChanged(me.getId());
+        adminStats.notesChanged(me.getId(), 1);
+
+        event.finish(me.getId(), saved.getId(), 1);
+        return saved;
     }
 
     // ============================================================
@@ -119,6 +168,7 @@ public class NoteService {
      * Updates a note ONLY if it belongs to the current user.
      */
     public Note updateMine(Integer noteId, String title, String content) {
+        NoteOperationEvent event = NoteOperationEvent.start("update");
 
         // Verify ownership first
         Note note = getMineOr404(noteId);
@@ -128,7 +178,11 @@ public class NoteService {
         note.setContent(content);
 
         // Save changes
-        return noteRepository.save(note);
+        Note saved = noteRepository.save(note);
+        notesChanged(note.getOwner().getId());
+
+        event.finish(note.getOwner().getId(), noteId, 1);
+        return saved;
     }
 
     // ============================================================
@@ -139,11 +193,16 @@ public class NoteService {
      * Deletes a note ONLY if it belongs to the current user.
      */
     public void deleteMine(Integer noteId) {
+        NoteOperationEvent event = NoteOperationEvent.start("delete");
 
         // Verify ownership first
         Note note = getMineOr404(noteId);
 
         // Delete from database
         noteRepository.delete(note);
+        notesChanged(note.getOwner().getId());
+        adminStats.notesChanged(note.getOwner().getId(), -1);
+
+        event.finish(note.getOwner().getId(), noteId, 1);
     }
 }
\ No newline at end of file
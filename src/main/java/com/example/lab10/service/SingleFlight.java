@@ -0,0 +1,105 @@
+package com.example.lab10.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/*
+ * Request coalescing ("single flight") for reads.
+ *
+ * While a call for a key is running, other callers with the same key don't
+ * start their own: they wait for the running one and get the same result
+ * (or the same exception). The first caller (the leader) runs the call on its
+ * own thread, so there is no extra pool; the others only wait on a future.
+ *
+ * Consistency: a caller never joins a call that started before a write it
+ * has already seen finish, because the writer calls forget(key) when it is done
+ * (later callers then start a new call). A caller that arrives while the write
+ * is still running may get the result from before it, like any concurrent read.
+ *
+ * Timeout: a follower waits at most `timeout` for the leader, then gets a 503
+ * (instead of piling up more queries behind a stuck one). The leader has no
+ * timeout of its own: it is just the query.
+ *
+ * The result object is shared by all callers of one flight: it must be read-only.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutNanos;
+    private final Counter leaders;
+    private final Counter joined;
+
+    SingleFlight(String name, Duration timeout, MeterRegistry meterRegistry) {
+        this.timeoutNanos = timeout.toNanos();
+        this.leaders = Counter.builder("lab10.singleflight.calls").tag("name", name).tag("role", "leader")
+                .description("Calls that ran the query (leader) or waited for one already running (joined)")
+                .register(meterRegistry);
+        this.joined = Counter.builder("lab10.singleflight.calls").tag("name", name).tag("role", "joined")
+                .register(meterRegistry);
+    }
+
+    /*
+     * Runs call, or waits for the call with the same key that is already running.
+     */
+    V run(K key, Supplier<V> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+
+        if (running != null) {
+            joined.increment();
+            return await(running);
+        }
+
+        leaders.increment();
+        try {
+            V result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // The followers get the same exception
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Only my own flight (forget() may already have replaced it)
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /*
+     * Data of this key changed: callers from now on start a new call.
+     * Callers already waiting keep the running one.
+     */
+    void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Timed out waiting for the same query");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.lab10.service;
+
+import com.example.lab10.model.StorageUsage;
+import com.example.lab10.repository.StorageUsageRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+/*
+ * Per-user storage quotas.
+ *
+ * Usage is kept as counters in the storage_usage table:
+ * 1. before bytes are written, the upload reserves space (one conditional UPDATE)
+ * 2. while a stream of unknown size comes in, the reservation grows in steps
+ * 3. when the upload is saved, the reservation becomes used bytes
+ * 4. if the upload fails, the reservation is given back
+ *
+ * Every check is a single row update, so it does not depend on how many
+ * files the user has. A scheduled job recomputes the counters from the
+ * uploads table to fix any drift (for example after a crash).
+ *
+ * Committed bytes are also reported to the admin dashboard (AdminStats).
+ */
+@Service
+public class StorageQuotaService {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageQuotaService.class);
+
+    // When a stream has no known size, the reservation grows by at least this much
+    private static final long GROW_STEP = 8L * 1024 * 1024;
+
+    private final StorageUsageRepository usageRepository;
+    private final AdminStats adminStats;
+    private final long defaultQuota;
+
+    public StorageQuotaService(
+            StorageUsageRepository usageRepository,
+            AdminStats adminStats,
+            @Value("${lab10.upload.quota-bytes:1073741824}") long defaultQuota
+    ) {
+        this.usageRepository = usageRepository;
+        this.adminStats = adminStats;
+        this.defaultQuota = defaultQuota;
+    }
+
+    // ============================================================
+    // RESERVE
+    // ============================================================
+
+    /*
+     * Reserves space for an upload whose size is known (or bounded).
+     * Throws 507 if it does not fit, before any byte is written.
+     */
+    public Reservation reserve(Integer userId, long bytes) {
+        Reservation reservation = new Reservation(userId, true);
+        if (!reservation.tryGrow(bytes)) {
+            throw quotaExceeded();
+        }
+        return reservation;
+    }
+
+    /*
+     * Starts an empty reservation for a stream of unknown size.
+     * It grows while the data comes in (see Reservation.allow()).
+     */
+    public Reservation reserveGrowing(Integer userId) {
+        return new Reservation(userId, false);
+    }
+
+    /*
+     * Quick check without reserving (used before a streamed upload starts).
+     */
+    public void checkFits(Integer userId, long bytes) {
+        StorageUsage usage = usageOf(userId);
+        if (usage.getUsedBytes() + usage.getReservedBytes() + bytes > quotaOf(usage)) {
+            throw quotaExceeded();
+        }
+    }
+
+    /*
+     * Takes back a reservation that was granted before a restart
+     * (start() clears them all). No quota check: the space was already promised.
+     */
+    public Reservation restore(Integer userId, long bytes) {
+        usageOf(userId);
+        usageRepository.addReserved(userId, bytes);
+
+        Reservation reservation = new Reservation(userId, true);
+        reservation.reserved = bytes;
+        return reservation;
+    }
+
+    /*
+     * Counters of one user (created on first use).
+     */
+    public StorageUsage usageOf(Integer userId) {
+        return usageRepository.findById(userId).orElseGet(() -> {
+            usageRepository.createIfMissing(userId);
+            return usageRepository.findById(userId).orElseThrow();
+        });
+    }
+
+    /*
+     * Quota of one user (bytes).
+     */
+    public long quotaOf(StorageUsage usage) {
+        return usage.getQuotaBytes() != null ? usage.getQuotaBytes() : defaultQuota;
+    }
+
+    /*
+     * Space held for one upload in progress.
+     * Use it with try-with-resources: whatever was not committed is given back.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final Integer userId;
+
+        // true when the full size was reserved up front
+        private final boolean bounded;
+
+        private long reserved;
+
+        private Reservation(Integer userId, boolean bounded) {
+            this.userId = userId;
+            this.bounded = bounded;
+        }
+
+        public Integer getUserId() {
+            return userId;
+        }
+
+        /*
+         * Called before each write: returns how many bytes may be written now
+         * (at most "want"), growing the reservation when needed.
+         * Throws 507 when not even one more byte fits.
+         */
+        public long allow(long written, long want) {
+            if (bounded || written + want <= reserved) {
+                return want;
+            }
+
+            long need = written + want - reserved;
+            if (tryGrow(Math.max(need, GROW_STEP)) || tryGrow(need)) {
+                return want;
+            }
+
+            // Less than one transfer is left: take all the room that is left
+            StorageUsage usage = usageOf(userId);
+            long room = quotaOf(usage) - usage.getUsedBytes() - usage.getReservedBytes();
+            if (room > 0) {
+                tryGrow(room);
+            }
+
+            if (reserved <= written) {
+                throw quotaExceeded();
+            }
+            return Math.min(want, reserved - written);
+        }
+
+        /*
+         * One conditional UPDATE. The first upload of a user also creates the row.
+         */
+        private boolean tryGrow(long bytes) {
+            if (bytes <= 0) {
+                return true;
+            }
+
+            boolean ok = usageRepository.reserve(userId, bytes, defaultQuota) == 1
+                    || (usageRepository.createIfMissing(userId) == 1
+                        && usageRepository.reserve(userId, bytes, defaultQuota) == 1);
+            if (ok) {
+                reserved += bytes;
+            }
+            return ok;
+        }
+
+        /*
+         * The upload was saved: the user now uses "delta" more bytes
+         * (negative if a bigger file was replaced by a smaller one).
+         *
+         * Inside a transaction, the reservation only counts as used after
+         * the commit, so a rollback still gives it back in close().
+         */
+        public void commit(long delta) {
+            usageRepository.commit(userId, reserved, delta);
+
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        reserved = 0;
+                        adminStats.uploadBytesChanged(userId, delta);
+                    }
+                });
+            } else {
+                reserved = 0;
+                adminStats.uploadBytesChanged(userId, delta);
+            }
+        }
+
+        /*
+         * Gives back what was not committed.
+         */
+        @Override
+        public void close() {
+            if (reserved > 0) {
+                usageRepository.release(userId, reserved);
+                reserved = 0;
+            }
+        }
+    }
+
+    // ============================================================
+    // RECONCILIATION
+    // ============================================================
+
+    /*
+     * No upload runs before startup, so old reservations are dropped,
+     * then the counters are checked once. Open chunked uploads take their
+     * reservation back afterwards (ChunkedUploadService.start()).
+     */
+    @PostConstruct
+    public void start() {
+        usageRepository.clearReservations();
+        reconcile();
+    }
+
+    /*
+     * Recomputes used bytes from the uploads table (the source of truth).
+     * Only rows that drifted are written.
+     */
+    @Scheduled(fixedDelayString = "${lab10.upload.quota-reconcile-ms:3600000}",
+            initialDelayString = "${lab10.upload.quota-reconcile-ms:3600000}")
+    public void reconcile() {
+        usageRepository.createMissingRows();
+        int fixed = usageRepository.reconcileUsedBytes();
+
+        if (fixed > 0) {
+            log.info("Storage quota: corrected usage of {} user(s)", fixed);
+        }
+    }
+
+    private ResponseStatusException quotaExceeded() {
+        return new ResponseStatusException(HttpStatus.INSUFFICIENT_STORAGE, "Storage quota exceeded");
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.lab10.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * The users with the biggest value of one counter (notes, upload bytes),
+ * kept up to date on every change instead of sorting all users on each read.
+ *
+ * It keeps 2 * k candidates, so a top user whose value goes down is usually
+ * replaced by the right one. A user outside the candidates only gets in when
+ * its value goes up; reset() (reconciliation) rebuilds the list from scratch.
+ */
+class TopK {
+
+    private static final Comparator<Map.Entry<Integer, Long>> BY_VALUE_DESC =
+            Map.Entry.<Integer, Long>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+
+    private final int k;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // userId -> value, at most "capacity" entries
+    private final Map<Integer, Long> candidates = new HashMap<>();
+
+    TopK(int k) {
+        this.k = k;
+        this.capacity = Math.max(1, 2 * k);
+    }
+
+    /*
+     * New value of one user (O(capacity), capacity is small).
+     */
+    void offer(Integer userId, long value) {
+        lock.lock();
+        try {
+            if (candidates.containsKey(userId)) {
+                if (value <= 0) {
+                    candidates.remove(userId);
+                } else {
+                    candidates.put(userId, value);
+                }
+                return;
+            }
+            if (value <= 0) {
+                return;
+            }
+            if (candidates.size() < capacity) {
+                candidates.put(userId, value);
+                return;
+            }
+
+            Map.Entry<Integer, Long> min = null;
+            for (Map.Entry<Integer, Long> e : candidates.entrySet()) {
+                if (min == null || e.getValue() < min.getValue()) {
+                    min = e;
+                }
+            }
+            if (value > min.getValue()) {
+                candidates.remove(min.getKey());
+                candidates.put(userId, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(Integer userId) {
+        lock.lock();
+        try {
+            candidates.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Rebuilds the candidates from all values (one pass, a heap of "capacity").
+     */
+    void reset(Map<Integer, Long> values) {
+        PriorityQueue<Map.Entry<Integer, Long>> heap = new PriorityQueue<>(BY_VALUE_DESC.reversed());
+        for (Map.Entry<Integer, Long> e : values.entrySet()) {
+            if (e.getValue() <= 0) {
+                continue;
+            }
+            heap.add(Map.entry(e.getKey(), e.getValue()));
+            if (heap.size() > capacity) {
+                heap.poll();
+            }
+        }
+
+        lock.lock();
+        try {
+            candidates.clear();
+            heap.forEach(e -> candidates.put(e.getKey(), e.getValue()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * The k biggest, biggest first.
+     */
+    List<Map.Entry<Integer, Long>> top() {
+        List<Map.Entry<Integer, Long>> result;
+        lock.lock();
+        try {
+            result = new ArrayList<>(candidates.size());
+            candidates.forEach((id, value) -> result.add(Map.entry(id, value)));
+        } finally {
+            lock.unlock();
+        }
+        result.sort(BY_VALUE_DESC);
+        return result.size() > k ? result.subList(0, k) : result;
+    }
+}
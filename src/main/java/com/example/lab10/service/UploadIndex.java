@@ -0,0 +1,352 @@
+package com.example.lab10.service;
+
+import com.example.lab10.dto.UploadedFileView;
+import com.example.lab10.model.Blob;
+import com.example.lab10.model.UploadedFile;
+import com.example.lab10.repository.BlobRepository;
+import com.example.lab10.repository.UploadedFileRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/*
+ * In-memory index of uploaded files, per user.
+ *
+ * It is built once at startup from the uploads table and then kept up to date:
+ * - by the upload path (UploadService calls put() after saving)
+ * - by UploadPipeline, when the metadata/thumbnail of a blob is ready
+ * - when a blob file was deleted outside the app, its entries disappear from
+ *   the listing; if it comes back, the entries are reloaded from the database
+ *
+ * A deleted blob file is found two ways:
+ * - lazily: a download that finds no file reports it (blobMissing())
+ * - by a background check on its own thread, every lab10.upload.watch-ms:
+ *   it stats the next lab10.upload.watch-batch indexed blobs (a cursor that goes
+ *   round all of them), so one run costs the same with a thousand or millions
+ *   of blobs; the blobs already missing are checked every run (are they back?)
+ *
+ * No WatchService: it needs a watch on every shard folder (up to 65,536, more
+ * than the default inotify limit) and reports every blob the app writes itself.
+ *
+ * Reads never lock: every user has an immutable, sorted list, and writers
+ * replace the whole list (copy-on-write). So GET /notes only does a map
+ * lookup and a subList, with no database query and no directory scan.
+ * A reverse map (blob -> users) lets a change of one blob touch only the
+ * lists of its owners.
+ *
+ * Every change of a user's list also invalidates that user's cached
+ * note list page (NoteListCache), which shows these files.
+ */
+@Service
+public class UploadIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadIndex.class);
+
+    // Sort order of the listing
+    private static final Comparator<UploadedFileView> BY_FILENAME = Comparator.comparing(UploadedFileView::getFilename);
+
+    private final UploadedFileRepository uploadedFileRepository;
+    private final BlobRepository blobRepository;
+    private final BlobStore blobStore;
+    private final NoteListCache noteListCache;
+    private final boolean watchEnabled;
+    private final long watchMs;
+    private final int watchBatch;
+
+    /*
+     * userId -> immutable list of that user's files (sorted by filename).
+     */
+    private final Map<Integer, List<UploadedFileView>> byUser = new ConcurrentHashMap<>();
+
+    /*
+     * sha256 -> users with at least one file of that blob.
+     * Only changed inside byUser.compute() (see update()), so it follows the lists.
+     */
+    private final Map<String, Set<Integer>> ownersBySha = new ConcurrentHashMap<>();
+
+    /*
+     * Blobs whose file was missing at the last check (their entries are hidden).
+     */
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    /*
+     * Where the background check continues (weakly consistent: blobs added or
+     * removed meanwhile may or may not be seen, the next round sees them).
+     * Only used by the check thread.
+     */
+    private Iterator<String> cursor;
+
+    // Own thread: a slow disk must not hold up the shared @Scheduled jobs
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "upload-index-check");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public UploadIndex(
+            UploadedFileRepository uploadedFileRepository,
+            BlobRepository blobRepository,
+            BlobStore blobStore,
+            NoteListCache noteListCache,
+            @Value("${lab10.upload.watch:true}") boolean watchEnabled,
+            @Value("${lab10.upload.watch-ms:60000}") long watchMs,
+            @Value("${lab10.upload.watch-batch:1000}") int watchBatch
+    ) {
+        this.uploadedFileRepository = uploadedFileRepository;
+        this.blobRepository = blobRepository;
+        this.blobStore = blobStore;
+        this.noteListCache = noteListCache;
+        this.watchEnabled = watchEnabled;
+        this.watchMs = watchMs;
+        this.watchBatch = watchBatch;
+    }
+
+    // ============================================================
+    // READ (lock-free)
+    // ============================================================
+
+    /*
+     * Returns one page of the user's files.
+     */
+    public Page<UploadedFileView> page(Integer userId, int page, int size) {
+        List<UploadedFileView> all = byUser.getOrDefault(userId, List.of());
+
+        int safePage = Math.max(page, 0);
+        int from = (int) Math.min((long) safePage * size, all.size());
+        int to = Math.min(from + size, all.size());
+
+        return new PageImpl<>(all.subList(from, to), PageRequest.of(safePage, size), all.size());
+    }
+
+    // ============================================================
+    // WRITE (copy-on-write)
+    // ============================================================
+
+    /*
+     * Adds or replaces (same filename) one upload of a user.
+     */
+    public void put(UploadedFile upload) {
+        Blob blob = blobRepository.findById(upload.getBlobSha256()).orElse(null);
+        put(upload.getUserId(), new UploadedFileView(upload, blob));
+    }
+
+    private void put(Integer userId, UploadedFileView view) {
+        update(userId, old -> {
+            List<UploadedFileView> copy = new ArrayList<>(old);
+            copy.removeIf(f -> f.getFilename().equals(view.getFilename()));
+
+            int pos = Collections.binarySearch(copy, view, BY_FILENAME);
+            copy.add(pos < 0 ? -pos - 1 : pos, view);
+            return List.copyOf(copy);
+        });
+    }
+
+    /*
+     * Removes one upload of a user.
+     */
+    public void remove(Integer userId, String filename) {
+        update(userId, old -> old.stream().filter(f -> !f.getFilename().equals(filename)).toList());
+    }
+
+    /*
+     * Removes every upload of a user (user purged).
+     */
+    public void removeUser(Integer userId) {
+        update(userId, old -> List.of());
+    }
+
+    /*
+     * The metadata of a blob changed (pipeline finished):
+     * the entries of its owners get the new values (one query, for the blob).
+     */
+    public void refreshBlob(String sha256) {
+        Set<Integer> owners = ownersBySha.get(sha256);
+        if (owners == null) {
+            return;
+        }
+
+        Blob blob = blobRepository.findById(sha256).orElse(null);
+        for (Integer userId : List.copyOf(owners)) {
+            update(userId, old -> old.stream()
+                    .map(f -> f.getSha256().equals(sha256) ? f.withBlob(blob) : f)
+                    .toList());
+        }
+    }
+
+    /*
+     * Reloads the whole index from the database.
+     */
+    public void rebuild() {
+        Map<String, Blob> blobs = new HashMap<>();
+        for (Blob blob : blobRepository.findAll()) {
+            blobs.put(blob.getSha256(), blob);
+        }
+
+        Map<Integer, List<UploadedFileView>> fresh = new HashMap<>();
+        for (UploadedFile upload : uploadedFileRepository.findAll(Sort.by("userId", "filename"))) {
+            fresh.computeIfAbsent(upload.getUserId(), id -> new ArrayList<>())
+                    .add(new UploadedFileView(upload, blobs.get(upload.getBlobSha256())));
+        }
+
+        // Users that no longer have files are removed, the others replaced
+        for (Integer userId : List.copyOf(byUser.keySet())) {
+            if (!fresh.containsKey(userId)) {
+                update(userId, old -> List.of());
+            }
+        }
+        fresh.forEach((id, list) -> update(id, old -> List.copyOf(list)));
+
+        // Every entry is listed again; the next check hides what is still missing
+        missing.clear();
+        noteListCache.invalidateAll();
+    }
+
+    /*
+     * Replaces the list of one user and keeps ownersBySha in step with it.
+     */
+    private void update(Integer userId, UnaryOperator<List<UploadedFileView>> change) {
+        byUser.compute(userId, (id, old) -> {
+            List<UploadedFileView> before = old == null ? List.of() : old;
+            List<UploadedFileView> after = change.apply(before);
+
+            Set<String> shas = new HashSet<>();
+            after.forEach(f -> shas.add(f.getSha256()));
+            for (UploadedFileView f : before) {
+                if (!shas.contains(f.getSha256())) {
+                    ownersBySha.computeIfPresent(f.getSha256(), (sha, owners) -> {
+                        owners.remove(id);
+                        return owners.isEmpty() ? null : owners;
+                    });
+                }
+            }
+            for (String sha : shas) {
+                ownersBySha.compute(sha, (key, owners) -> {
+                    Set<Integer> set = owners == null ? ConcurrentHashMap.newKeySet() : owners;
+                    set.add(id);
+                    return set;
+                });
+            }
+
+            return after.isEmpty() ? null : after;
+        });
+        noteListCache.invalidate(userId);
+    }
+
+    // ============================================================
+    // STARTUP
+    // ============================================================
+
+    /*
+     * Builds the index once and starts the background check.
+     */
+    @PostConstruct
+    public void start() {
+        rebuild();
+        if (watchEnabled) {
+            checker.scheduleWithFixedDelay(this::checkBlobsSafely, watchMs, watchMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        checker.shutdownNow();
+    }
+
+    // ============================================================
+    // BLOB CHECK (files changed outside the app)
+    // ============================================================
+
+    /*
+     * One run of the background check: reloads the entries of missing blobs
+     * whose file came back, then stats the next watchBatch indexed blobs.
+     * Runs on the check thread (tests call it directly).
+     */
+    public void checkBlobs() {
+        for (String sha256 : List.copyOf(missing)) {
+            if (Files.exists(blobStore.pathFor(sha256))) {
+                missing.remove(sha256);
+                blobRestored(sha256);
+            }
+        }
+
+        for (int checked = 0; checked < watchBatch; checked++) {
+            if (cursor == null || !cursor.hasNext()) {
+                // A new round (or an empty index: nothing to do this run)
+                cursor = ownersBySha.keySet().iterator();
+                if (!cursor.hasNext() || checked > 0) {
+                    break;
+                }
+            }
+            String sha256 = cursor.next();
+            if (!Files.exists(blobStore.pathFor(sha256))) {
+                blobMissing(sha256);
+            }
+        }
+    }
+
+    private void checkBlobsSafely() {
+        try {
+            checkBlobs();
+        } catch (RuntimeException e) {
+            // The next run tries again
+            log.warn("Upload index blob check failed", e);
+        }
+    }
+
+    /*
+     * A blob file is gone (found by the check or by a download): its files
+     * can't be downloaded, so I hide them.
+     * When the app deletes a blob itself, its row is gone too: that is
+     * not an outside change, and the index no longer lists it anyway.
+     */
+    public void blobMissing(String sha256) {
+        if (!blobRepository.existsById(sha256)) {
+            return;
+        }
+
+        Set<Integer> owners = ownersBySha.get(sha256);
+        if (owners == null) {
+            return;
+        }
+        log.warn("Blob {} is missing on disk, hiding its files from {} user(s)", sha256, owners.size());
+
+        missing.add(sha256);
+        for (Integer userId : List.copyOf(owners)) {
+            update(userId, old -> old.stream().filter(f -> !f.getSha256().equals(sha256)).toList());
+        }
+    }
+
+    /*
+     * A missing blob file is back: entries that point to it are reloaded
+     * from the database, which stays the source of truth.
+     */
+    private void blobRestored(String sha256) {
+        Blob blob = blobRepository.findById(sha256).orElse(null);
+        for (UploadedFile upload : uploadedFileRepository.findAllByBlobSha256(sha256)) {
+            put(upload.getUserId(), new UploadedFileView(upload, blob));
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.lab10.service;
+
+import com.example.lab10.model.UploadJob;
+import com.example.lab10.model.UploadedFile;
+import com.example.lab10.repository.BlobRepository;
+import com.example.lab10.repository.UploadJobRepository;
+import com.example.lab10.repository.UploadedFileRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Background pipeline that runs after an upload is saved.
+ *
+ * For every new blob it finds:
+ * - the MIME type (from the first bytes, then from the filename)
+ * - width/height for images
+ * - a small PNG thumbnail for images
+ *
+ * Jobs are rows in the upload_jobs table, so they survive a restart.
+ * The workers are a fixed-size pool with a bounded queue:
+ * - submit() tries to hand the job to a worker right away
+ * - if the queue is full, the job just stays PENDING in the database
+ *   and the poller picks it up later (backpressure: uploads never wait
+ *   for the pipeline and memory use stays bounded)
+ * - a job that is already in the worker queue is not offered again
+ * - a failed job waits before its next attempt (retry-backoff-ms, doubled
+ *   after every attempt), so a broken file doesn't take a worker every poll
+ *
+ * submit() never fails the upload: the file is already saved, and a job that
+ * could not be written is added by the next poll (enqueueMissing()).
+ *
+ * The request thread never decodes an image.
+ */
+@Service
+public class UploadPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadPipeline.class);
+
+    private static final String OCTET_STREAM = "application/octet-stream";
+
+    private final UploadJobRepository jobRepository;
+    private final BlobRepository blobRepository;
+    private final UploadedFileRepository uploadedFileRepository;
+    private final BlobStore blobStore;
+    private final UploadIndex uploadIndex;
+
+    private final int thumbnailSize;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final long maxImagePixels;
+
+    private final ArrayBlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor workers;
+
+    // Ids of the jobs in the worker queue (not started yet)
+    private final Set<Integer> queued = ConcurrentHashMap.newKeySet();
+
+    // A submit() failed: the next poll looks for blobs without a job
+    private final AtomicBoolean missedSubmit = new AtomicBoolean();
+
+    public UploadPipeline(
+            UploadJobRepository jobRepository,
+            BlobRepository blobRepository,
+            UploadedFileRepository uploadedFileRepository,
+            BlobStore blobStore,
+            UploadIndex uploadIndex,
+            @Value("${lab10.pipeline.workers:2}") int workerCount,
+            @Value("${lab10.pipeline.queue-capacity:100}") int queueCapacity,
+            @Value("${lab10.pipeline.thumbnail-size:128}") int thumbnailSize,
+            @Value("${lab10.pipeline.max-attempts:3}") int maxAttempts,
+            @Value("${lab10.pipeline.retry-backoff-ms:30000}") long retryBackoffMs,
+            @Value("${lab10.pipeline.max-image-pixels:40000000}") long maxImagePixels
+    ) {
+        this.jobRepository = jobRepository;
+        this.blobRepository = blobRepository;
+        this.uploadedFileRepository = uploadedFileRepository;
+        this.blobStore = blobStore;
+        this.uploadIndex = uploadIndex;
+        this.thumbnailSize = thumbnailSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxImagePixels = maxImagePixels;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = new ThreadPoolExecutor(
+                workerCount, workerCount, 0, TimeUnit.MILLISECONDS, queue,
+                r -> {
+                    Thread t = new Thread(r, "upload-pipeline-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    // ============================================================
+    // SUBMIT
+    // ============================================================
+
+    /*
+     * Queues the metadata job for an upload's blob.
+     * A blob that was already processed (same content) is not done twice,
+     * and a job waiting for its retry is left to the poller.
+     */
+    public void submit(UploadedFile upload) {
+        String sha256 = upload.getBlobSha256();
+        try {
+            jobRepository.enqueue(sha256, System.currentTimeMillis());
+
+            jobRepository.findByBlobSha256(sha256)
+                    .filter(job -> UploadJob.PENDING.equals(job.getStatus()) && job.getAttempts() == 0)
+                    .ifPresent(this::offer);
+        } catch (RuntimeException e) {
+            missedSubmit.set(true);
+            log.warn("Could not queue the pipeline job of blob {}, the poller adds it later", sha256, e);
+        }
+    }
+
+    /*
+     * Hands a job to the workers if there is room.
+     * Returns false when the queue is full (the job stays PENDING).
+     * A job that is already queued counts as handed over.
+     */
+    private boolean offer(UploadJob job) {
+        if (!queued.add(job.getId())) {
+            return true;
+        }
+        try {
+            workers.execute(() -> run(job.getId(), job.getBlobSha256()));
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.remove(job.getId());
+            return false;
+        }
+    }
+
+    // ============================================================
+    // POLLER
+    // ============================================================
+
+    /*
+     * Picks up PENDING jobs that could not be queued (queue full, retries,
+     * or jobs left over from before a restart). Only as many as fit in the queue;
+     * PENDING jobs that are already queued, or still in their retry backoff, are skipped.
+     */
+    @Scheduled(fixedDelayString = "${lab10.pipeline.poll-ms:5000}")
+    public void pollPending() {
+        if (missedSubmit.getAndSet(false)) {
+            jobRepository.enqueueMissing(System.currentTimeMillis());
+        }
+
+        int room = queue.remainingCapacity();
+        if (room == 0) {
+            return;
+        }
+
+        List<UploadJob> pending = jobRepository.findReady(
+                System.currentTimeMillis(), retryBackoffMs, room + queued.size());
+        for (UploadJob job : pending) {
+            if (queued.contains(job.getId())) {
+                continue;
+            }
+            if (!offer(job)) break;
+        }
+    }
+
+    // ============================================================
+    // WORKER
+    // ============================================================
+
+    /*
+     * Runs one job on a worker thread.
+     * claim() makes sure a job queued twice (submit + poller) runs only once.
+     */
+    private void run(Integer jobId, String sha256) {
+        // Out of the queue: from now on the poller may offer it again (retry)
+        queued.remove(jobId);
+
+        if (jobRepository.claim(jobId, System.currentTimeMillis()) != 1) {
+            return;
+        }
+
+        try {
+            extract(sha256);
+            jobRepository.finish(jobId, UploadJob.DONE, null, System.currentTimeMillis());
+
+            // The listing can now show the preview
+            uploadIndex.refreshBlob(sha256);
+
+        } catch (Exception e) {
+            // I log the error and retry the job later (up to max-attempts)
+            int attempts = jobRepository.findById(jobId).map(UploadJob::getAttempts).orElse(maxAttempts);
+            String status = attempts < maxAttempts ? UploadJob.PENDING : UploadJob.FAILED;
+            log.warn("Pipeline job {} for blob {} failed (attempt {} of {})", jobId, sha256, attempts, maxAttempts, e);
+
+            jobRepository.finish(jobId, status, String.valueOf(e.getMessage()), System.currentTimeMillis());
+        }
+    }
+
+    /*
+     * Finds the metadata of one blob and writes the thumbnail.
+     */
+    private void extract(String sha256) throws IOException {
+        Path path = blobStore.pathFor(sha256);
+        if (!Files.isRegularFile(path)) {
+            // The blob was deleted before the job ran: nothing to do
+            return;
+        }
+
+        String mimeType = detectMimeType(path, sha256);
+        Integer width = null;
+        Integer height = null;
+        boolean thumbnail = false;
+
+        if (mimeType.startsWith("image/")) {
+            try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+                Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+
+                if (readers != null && readers.hasNext()) {
+                    ImageReader reader = readers.next();
+                    try {
+                        reader.setInput(in, true, true);
+
+                        // Dimensions come from the header, without decoding the pixels
+                        width = reader.getWidth(0);
+                        height = reader.getHeight(0);
+
+                        // Very large images are not decoded (memory bomb protection)
+                        if ((long) width * height <= maxImagePixels) {
+                            /*
+                             * Only every n-th pixel is decoded, so the image in memory is
+                             * about the thumbnail size (still at least thumbnailSize wide
+                             * for the final smooth scale) instead of the full photo.
+                             */
+                            int step = Math.max(1, Math.max(width, height) / thumbnailSize);
+                            ImageReadParam param = reader.getDefaultReadParam();
+                            param.setSourceSubsampling(step, step, 0, 0);
+
+                            writeThumbnail(reader.read(0, param), blobStore.thumbnailPathFor(sha256));
+                            thumbnail = true;
+                        }
+                    } finally {
+                        reader.dispose();
+                    }
+                }
+            }
+        }
+
+        blobRepository.updateMetadata(sha256, mimeType, width, height, thumbnail);
+    }
+
+    /*
+     * MIME type from the magic bytes, or from the filename if the bytes say nothing.
+     */
+    private String detectMimeType(Path path, String sha256) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            String fromBytes = URLConnection.guessContentTypeFromStream(in);
+            if (fromBytes != null) {
+                return fromBytes;
+            }
+        }
+
+        for (UploadedFile upload : uploadedFileRepository.findAllByBlobSha256(sha256)) {
+            String fromName = URLConnection.guessContentTypeFromName(upload.getFilename());
+            if (fromName != null) {
+                return fromName;
+            }
+        }
+        return OCTET_STREAM;
+    }
+
+    /*
+     * Scales the image to fit in thumbnailSize x thumbnailSize and saves it as PNG.
+     * The file is written to a temp name first, so readers never see half a PNG.
+     */
+    private void writeThumbnail(BufferedImage source, Path target) throws IOException {
+        double scale = Math.min(1.0, (double) thumbnailSize / Math.max(source.getWidth(), source.getHeight()));
+        int w = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage thumb = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumb.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + ".tmp");
+        ImageIO.write(thumb, "png", temp.toFile());
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // ============================================================
+    // STARTUP / SHUTDOWN
+    // ============================================================
+
+    /*
+     * Jobs that were RUNNING when the app stopped are started again,
+     * and blobs whose job was never written get one.
+     */
+    @PostConstruct
+    public void start() {
+        jobRepository.resetRunning();
+        jobRepository.enqueueMissing(System.currentTimeMillis());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        workers.shutdownNow();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
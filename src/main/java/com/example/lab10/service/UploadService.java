@@ -0,0 +1,613 @@
+package com.example.lab10.service;
+
+import com.example.lab10.dto.UploadedFileView;
+import com.example.lab10.jfr.UploadWriteEvent;
+import com.example.lab10.metrics.Phase;
+import com.example.lab10.metrics.Spans;
+import com.example.lab10.model.UploadedFile;
+import com.example.lab10.model.User;
+import com.example.lab10.repository.UploadedFileRepository;
+import com.example.lab10.repository.UserRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/*
+ * Service for uploaded files.
+ * I keep all the disk work here so NoteController stays small.
+ *
+ * There are two ways to upload:
+ * - the classic MultipartFile form (Tomcat buffers the part to a temp file first)
+ * - the streaming mode: I parse the multipart body myself while it arrives
+ *   and write it straight into a temp file with a FileChannel
+ *
+ * While the bytes are written, I also compute their SHA-256.
+ * The finished file is then handed to BlobStore (content-addressed, deduplicated)
+ * and the "uploads" table maps (user, filename) to that blob.
+ *
+ * Every upload first reserves space in the user's quota (StorageQuotaService),
+ * so a user over quota is rejected before the bytes are written.
+ *
+ * Files that older versions wrote flat into the upload folder are imported
+ * into the blob store once, at startup (importLegacyUploads()).
+ */
+@Service
+public class UploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadService.class);
+
+    /*
+     * When I call fsync on a finished upload.
+     * - NONE: leave it to the OS (fastest, may lose data on power loss)
+     * - DATA: force file content only (FileChannel.force(false))
+     * - FULL: force content + metadata (FileChannel.force(true))
+     */
+    public enum FsyncPolicy { NONE, DATA, FULL }
+
+    // Max bytes moved per transferFrom() call
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+
+    // Extra room for multipart boundaries/headers when I check Content-Length early
+    private static final long MULTIPART_OVERHEAD = 16 * 1024;
+
+    private final UploadedFileRepository uploadedFileRepository;
+    private final BlobStore blobStore;
+    private final UploadIndex uploadIndex;
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final StorageQuotaService quotaService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Path uploadDir;
+    private final long maxBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final int pageSize;
+    private final String legacyOwner;
+
+    /*
+     * Lock stripes: two uploads of the same (user, filename) are saved one at a time.
+     * ReentrantLock (not synchronized), so virtual threads are not pinned while they wait.
+     */
+    private final ReentrantLock[] stripes = new ReentrantLock[64];
+
+    /*
+     * Upload folder, size limit and fsync policy come from application.properties.
+     */
+    public UploadService(
+            UploadedFileRepository uploadedFileRepository,
+            BlobStore blobStore,
+            UploadIndex uploadIndex,
+            UserService userService,
+            UserRepository userRepository,
+            StorageQuotaService quotaService,
+            TransactionTemplate transactionTemplate,
+            @Value("${lab10.upload.dir:${user.home}/lab10_uploads}") String uploadDir,
+            @Value("${lab10.upload.max-bytes:104857600}") long maxBytes,
+            @Value("${lab10.upload.fsync:data}") String fsyncPolicy,
+            @Value("${lab10.upload.page-size:20}") int pageSize,
+            @Value("${lab10.upload.legacy-owner:admin@local.test}") String legacyOwner
+    ) {
+        this.uploadedFileRepository = uploadedFileRepository;
+        this.blobStore = blobStore;
+        this.uploadIndex = uploadIndex;
+        this.userService = userService;
+        this.userRepository = userRepository;
+        this.quotaService = quotaService;
+        this.transactionTemplate = transactionTemplate;
+        this.uploadDir = Paths.get(uploadDir);
+        this.maxBytes = maxBytes;
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.trim().toUpperCase(Locale.ROOT));
+        this.pageSize = pageSize;
+        this.legacyOwner = legacyOwner;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // ============================================================
+    // LIST
+    // ============================================================
+
+    /*
+     * Returns one page of the files uploaded by the current user.
+     * This reads the in-memory UploadIndex, not the disk or the uploads table.
+     */
+    public Page<UploadedFileView> listMine(int page) {
+        User me = userService.currentUserOrThrow();
+
+        long t = Spans.start();
+        try {
+            return uploadIndex.page(me.getId(), page, pageSize);
+        } finally {
+            Spans.stop(Phase.UPLOADS, t);
+        }
+    }
+
+    /*
+     * Returns one upload only if it belongs to the current user.
+     * Other users' files are reported as 404 (same as notes).
+     */
+    public UploadedFile getMineOr404(Integer id) {
+        User me = userService.currentUserOrThrow();
+        return uploadedFileRepository.findByIdAndUserId(id, me.getId())
+                .orElseThrow(() ->
+                        new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found")
+                );
+    }
+
+    // ============================================================
+    // CLASSIC UPLOAD (MultipartFile)
+    // ============================================================
+
+    /*
+     * Saves a file that Spring already parsed as a MultipartFile.
+     */
+    public UploadedFile store(MultipartFile file) throws IOException {
+
+        // If no file is selected, I return 400
+        if (file == null || file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is empty");
+        }
+
+        User me = userService.currentUserOrThrow();
+        String filename = sanitize(file.getOriginalFilename());
+
+        // The size is known, so the whole file is reserved up front
+        try (StorageQuotaService.Reservation reservation = quotaService.reserve(me.getId(), file.getSize());
+             InputStream in = file.getInputStream()) {
+            return commit(me, filename, writeToTemp(Channels.newChannel(in), reservation), reservation);
+        }
+    }
+
+    // ============================================================
+    // STREAMING UPLOAD (no MultipartFile)
+    // ============================================================
+
+    /*
+     * Reads the multipart body directly from the request.
+     * The "file" part is written to disk while it streams in,
+     * so the bytes only hit the disk once and are never held in the heap.
+     *
+     * The CSRF token must come in the X-CSRF-TOKEN header: if it is sent as a
+     * form field, the container has to parse (and buffer) the body to find it.
+     */
+    public UploadedFile storeStreaming(HttpServletRequest request) throws IOException {
+
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected multipart/form-data");
+        }
+
+        // I reject too large requests before reading a single byte
+        long declared = request.getContentLengthLong();
+        if (declared > maxBytes + MULTIPART_OVERHEAD) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "File is too large");
+        }
+
+        User me = userService.currentUserOrThrow();
+
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        FileItemInputIterator items = upload.getItemIterator(request);
+
+        while (items.hasNext()) {
+            FileItemInput item = items.next();
+
+            // Only the "file" part is stored, other fields are skipped
+            if (item.isFormField() || !"file".equals(item.getFieldName())) {
+                continue;
+            }
+
+            String filename = sanitize(item.getName());
+
+            // Content-Length also counts the boundaries and the other parts, so
+            // it is only used to reject early a file that can't fit even without
+            // them; the reservation grows with the bytes that really come in
+            if (declared > MULTIPART_OVERHEAD) {
+                quotaService.checkFits(me.getId(), declared - MULTIPART_OVERHEAD);
+            }
+
+            try (StorageQuotaService.Reservation reservation = quotaService.reserveGrowing(me.getId());
+                 InputStream in = item.getInputStream()) {
+                StoredTemp temp = writeToTemp(Channels.newChannel(in), reservation);
+
+                // An empty part means no file was selected
+                if (temp.size() == 0) {
+                    Files.deleteIfExists(temp.path());
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is empty");
+                }
+
+                return commit(me, filename, temp, reservation);
+            }
+        }
+
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is empty");
+    }
+
+    // ============================================================
+    // ASSEMBLED UPLOAD (chunked uploads)
+    // ============================================================
+
+    /*
+     * Saves a file that was already fully written (by ChunkedUploadService).
+     * Chunks can arrive in any order, so here I hash the file in one
+     * sequential read before handing it to the blob store.
+     * The space was reserved when the session started; the caller still
+     * closes the reservation.
+     */
+    UploadedFile storeAssembled(Path file, String filename,
+                                StorageQuotaService.Reservation reservation) throws IOException {
+        User me = userService.currentUserOrThrow();
+
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) TRANSFER_CHUNK);
+        long size = 0;
+
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (in.read(buffer) > 0) {
+                buffer.flip();
+                size += buffer.remaining();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return commit(me, filename, new StoredTemp(file, HexFormat.of().formatHex(digest.digest()), size), reservation);
+    }
+
+    // ============================================================
+    // LEGACY IMPORT (flat upload folder)
+    // ============================================================
+
+    /*
+     * Before the blob store, uploads were written flat into the upload folder
+     * ({upload dir}/name) and listed to every user.
+     *
+     * At startup, each such file is copied into the blob store, mapped to
+     * lab10.upload.legacy-owner and then deleted from the folder, so the next
+     * start finds nothing to import. A file that cannot be imported (too large,
+     * over quota, name already used by the owner) stays where it is.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void importLegacyUploads() {
+        List<Path> legacy = listLegacyFiles();
+        if (legacy.isEmpty()) {
+            return;
+        }
+
+        Optional<User> owner = userRepository.findByEmail(legacyOwner);
+        if (owner.isEmpty()) {
+            log.warn("{} legacy upload(s) not imported: owner {} does not exist", legacy.size(), legacyOwner);
+            return;
+        }
+
+        int imported = 0;
+        for (Path file : legacy) {
+            if (importLegacy(owner.get(), file)) {
+                imported++;
+            }
+        }
+        log.info("Imported {} of {} legacy upload(s) for {}", imported, legacy.size(), legacyOwner);
+    }
+
+    /*
+     * Regular files directly in the upload folder (names starting with "."
+     * are temp files, and folders belong to the blob store, chunks, thumbnails).
+     */
+    private List<Path> listLegacyFiles() {
+        if (!Files.isDirectory(uploadDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(uploadDir)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().startsWith("."))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Could not list legacy uploads in {}", uploadDir, e);
+            return List.of();
+        }
+    }
+
+    /*
+     * The file is copied (not moved), so a failure never loses the original.
+     */
+    private boolean importLegacy(User owner, Path file) {
+        String filename = sanitize(file.getFileName().toString());
+        if (uploadedFileRepository.findByUserIdAndFilename(owner.getId(), filename).isPresent()) {
+            log.warn("Legacy upload {} not imported: {} already has a file named {}", file, legacyOwner, filename);
+            return false;
+        }
+
+        try {
+            try (StorageQuotaService.Reservation reservation = quotaService.reserve(owner.getId(), Files.size(file));
+                 FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                commit(owner, filename, writeToTemp(in, reservation), reservation);
+            }
+            Files.delete(file);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Legacy upload {} not imported", file, e);
+            return false;
+        }
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /*
+     * A finished temp file, with its SHA-256 and size.
+     */
+    private record StoredTemp(Path path, String sha256, long size) {}
+
+    /*
+     * Copies the source channel into a hidden temp file in the upload folder.
+     * The SHA-256 is computed on the same pass, and the size limit is checked
+     * while copying, so an oversized upload is stopped as soon as it goes over.
+     * The quota reservation is checked before each write.
+     * The write (with the fsync) is recorded as an UploadWriteEvent for JFR.
+     */
+    private StoredTemp writeToTemp(ReadableByteChannel src, StorageQuotaService.Reservation reservation) throws IOException {
+        Files.createDirectories(uploadDir);
+        Path temp = uploadDir.resolve("." + UUID.randomUUID() + ".part");
+        HashingChannel hashing = new HashingChannel(src, sha256());
+        UploadWriteEvent event = new UploadWriteEvent();
+        event.begin();
+
+        boolean ok = false;
+        long written = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (true) {
+                // Ask for one byte more than allowed, so I can detect oversized files
+                long want;
+                try {
+                    want = reservation.allow(written, Math.min(TRANSFER_CHUNK, maxBytes - written + 1));
+                } catch (ResponseStatusException full) {
+                    // The quota is used up: that is fine if the file ends exactly here
+                    if (full.getStatusCode() != HttpStatus.INSUFFICIENT_STORAGE || !atEnd(hashing)) {
+                        throw full;
+                    }
+                    break;
+                }
+
+                long n = out.transferFrom(hashing, written, want);
+                if (n <= 0) break;
+
+                written += n;
+                if (written > maxBytes) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "File is too large");
+                }
+            }
+
+            force(out);
+            ok = true;
+        } finally {
+            if (!ok) Files.deleteIfExists(temp);
+        }
+
+        recordWrite(event, reservation.getUserId(), "file", written);
+        return new StoredTemp(temp, hashing.hex(), written);
+    }
+
+    /*
+     * True when the channel has no more bytes (reads at most one byte).
+     */
+    private static boolean atEnd(ReadableByteChannel src) throws IOException {
+        return src.read(ByteBuffer.allocate(1)) < 0;
+    }
+
+    /*
+     * Stores the temp file as a blob and points (user, filename) to it.
+     * If the user already has a file with this name, it is replaced
+     * and the old blob loses one reference.
+     *
+     * The uploads row and the quota counters change in one transaction.
+     */
+    private UploadedFile commit(User me, String filename, StoredTemp temp,
+                                StorageQuotaService.Reservation reservation) throws IOException {
+        try {
+            blobStore.addReference(temp.sha256(), temp.size(), temp.path());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp.path());
+            throw e;
+        }
+
+        Lock lock = stripe(me.getId() + "/" + filename);
+        lock.lock();
+        try {
+            String oldSha;
+            UploadedFile saved;
+
+            // The blob reference is already counted: until the uploads row is
+            // committed, any failure must give it back, or the blob is never deleted
+            try {
+                Optional<UploadedFile> existing = uploadedFileRepository.findByUserIdAndFilename(me.getId(), filename);
+                oldSha = existing.map(UploadedFile::getBlobSha256).orElse(null);
+                long now = System.currentTimeMillis();
+
+                saved = transactionTemplate.execute(status -> {
+                    if (existing.isEmpty()) {
+                        UploadedFile created = uploadedFileRepository.save(new UploadedFile(
+                                me.getId(), filename, temp.sha256(), temp.size(), now));
+                        reservation.commit(temp.size());
+                        return created;
+                    }
+
+                    UploadedFile upload = existing.get();
+                    long oldSize = upload.getSize();
+
+                    uploadedFileRepository.repoint(upload.getId(), temp.sha256(), temp.size(), now);
+                    reservation.commit(temp.size() - oldSize);
+
+                    upload.setBlobSha256(temp.sha256());
+                    upload.setSize(temp.size());
+                    upload.setCreatedAt(now);
+                    return upload;
+                });
+            } catch (RuntimeException | Error e) {
+                try {
+                    blobStore.releaseReference(temp.sha256());
+                } catch (IOException | RuntimeException releaseFailed) {
+                    e.addSuppressed(releaseFailed);
+                }
+                throw e;
+            }
+
+            uploadIndex.put(saved);
+
+            // The row now points to the new blob, so the old one loses its reference.
+            // The upload is saved: a failure here only leaves the old blob counted
+            // once too often (BlobStore fixes the counts at the next start)
+            if (oldSha != null) {
+                try {
+                    blobStore.releaseReference(oldSha);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not release blob {} replaced by {} for user {}", oldSha, filename, me.getId(), e);
+                }
+            }
+            return saved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Commits a JFR event for bytes written to disk (begin() was called before the write).
+     */
+    void recordWrite(UploadWriteEvent event, Integer userId, String kind, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.userId = userId;
+            event.kind = kind;
+            event.bytes = bytes;
+            event.fsync = fsyncPolicy.name().toLowerCase(Locale.ROOT);
+            event.commit();
+        }
+    }
+
+    /*
+     * fsync according to the configured policy.
+     */
+    void force(FileChannel channel) throws IOException {
+        switch (fsyncPolicy) {
+            case DATA -> channel.force(false);
+            case FULL -> channel.force(true);
+            case NONE -> { }
+        }
+    }
+
+    /*
+     * Folder for chunked upload files (hidden, not part of the blob store).
+     */
+    Path chunkDir() {
+        return uploadDir.resolve(".chunks");
+    }
+
+    /*
+     * Max allowed size of one uploaded file.
+     */
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /*
+     * Cleans the filename from the browser to avoid dangerous characters.
+     */
+    String sanitize(String original) {
+        if (original == null || original.isBlank()) {
+            return "upload.bin";
+        }
+        String cleaned = original.replaceAll("[\\\\/:*?\"<>|]", "_");
+
+        // Names starting with "." are reserved for temp files
+        return cleaned.startsWith(".") ? "_" + cleaned.substring(1) : cleaned;
+    }
+
+    private Lock stripe(String key) {
+        return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * Channel wrapper that feeds every byte it reads into a MessageDigest.
+     * This lets me hash the upload while FileChannel.transferFrom() copies it.
+     */
+    private static final class HashingChannel implements ReadableByteChannel {
+
+        private final ReadableByteChannel src;
+        private final MessageDigest digest;
+
+        HashingChannel(ReadableByteChannel src, MessageDigest digest) {
+            this.src = src;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int start = dst.position();
+            int n = src.read(dst);
+            if (n > 0) {
+                ByteBuffer view = dst.duplicate();
+                view.position(start).limit(start + n);
+                digest.update(view);
+            }
+            return n;
+        }
+
+        String hex() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        @Override
+        public boolean isOpen() {
+            return src.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            src.close();
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.lab10.service;
+
+import com.example.lab10.model.User;
+import com.example.lab10.session.JdbcSession;
+import com.example.lab10.session.JdbcSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Admin purge: deletes a user and everything that belongs to them.
+ *
+ * SQLite has one writer at a time. Deleting 100k notes in one transaction
+ * (or loading them with JPA and deleting them one by one) would hold the
+ * write lock for seconds, and every other user's write would wait or fail.
+ * So the purge runs on its own background thread, in small steps:
+ *
+ * 1. the account is disabled (role ROLE_PURGED, the login is refused) and
+ *    its sessions are removed, so no new data comes in
+ * 2. notes:   DELETE of lab10.admin.purge.batch-size rows per transaction
+ * 3. uploads: the same, and in the same transaction the blob counts are
+ *    lowered; the blobs it released that nobody uses anymore are then deleted
+ *    (file, thumbnail, job), and so are the chunked uploads in progress
+ * 4. account: storage counters and the users row (only if nothing is left)
+ *
+ * Between two transactions the thread sleeps lab10.admin.purge.pause-ms,
+ * so the writes of other users get the lock in between.
+ *
+ * Progress is written to user_purges with every batch (same transaction).
+ * Every step is "delete what is still there", so a purge stopped by a
+ * restart simply runs again from the start (ApplicationReadyEvent) and
+ * continues where it was. A failed purge (status FAILED) is started again by the admin.
+ */
+@Service
+public class UserPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserPurgeService.class);
+
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final BlobStore blobStore;
+    private final UploadIndex uploadIndex;
+    private final ChunkedUploadService chunkedUploadService;
+    private final NoteService noteService;
+    private final AdminStats adminStats;
+    private final SessionRegistry sessionRegistry;
+    private final ObjectProvider<JdbcSessionRepository> jdbcSessions;
+
+    private final int batchSize;
+    private final long pauseMs;
+
+    private final Counter notesDeleted;
+    private final Counter uploadsDeleted;
+
+    // One purge at a time: they all compete for the same write lock
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "user-purge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public UserPurgeService(
+            JdbcTemplate jdbc,
+            TransactionTemplate transactionTemplate,
+            BlobStore blobStore,
+            UploadIndex uploadIndex,
+            ChunkedUploadService chunkedUploadService,
+            NoteService noteService,
+            AdminStats adminStats,
+            SessionRegistry sessionRegistry,
+            ObjectProvider<JdbcSessionRepository> jdbcSessions,
+            MeterRegistry meterRegistry,
+            @Value("${lab10.admin.purge.batch-size:500}") int batchSize,
+            @Value("${lab10.admin.purge.pause-ms:50}") long pauseMs
+    ) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = transactionTemplate;
+        this.blobStore = blobStore;
+        this.uploadIndex = uploadIndex;
+        this.chunkedUploadService = chunkedUploadService;
+        this.noteService = noteService;
+        this.adminStats = adminStats;
+        this.sessionRegistry = sessionRegistry;
+        this.jdbcSessions = jdbcSessions;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+
+        this.notesDeleted = Counter.builder("lab10.purge.rows")
+                .description("Rows deleted by admin user purges")
+                .tag("table", "notes")
+                .register(meterRegistry);
+        this.uploadsDeleted = Counter.builder("lab10.purge.rows")
+                .tag("table", "uploads")
+                .register(meterRegistry);
+    }
+
+    // ============================================================
+    // START / STATUS
+    // ============================================================
+
+    /*
+     * Starts (or restarts) the purge of one user; returns its status right away.
+     * Admins can't be purged (400), an unknown email is a 404.
+     */
+    public Map<String, Object> start(String email) {
+        String normalized = email == null ? "" : email.trim().toLowerCase();
+
+        List<Map<String, Object>> found = jdbc.queryForList(
+                "SELECT id, role FROM users WHERE email = ?", normalized);
+        if (found.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        }
+        Integer userId = ((Number) found.get(0).get("id")).intValue();
+        if ("ROLE_ADMIN".equals(found.get(0).get("role"))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Admins can't be purged");
+        }
+
+        // Already queued or running: nothing to start
+        List<String> current = jdbc.queryForList(
+                "SELECT status FROM user_purges WHERE user_id = ?", String.class, userId);
+        if (current.contains(RUNNING)) {
+            return status(userId);
+        }
+
+        // Disable the account and record the purge together
+        long now = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbc.update("UPDATE users SET role = ? WHERE id = ?", User.PURGED_ROLE, userId);
+            jdbc.update("INSERT INTO user_purges (user_id, email, status, step, started_at, updated_at) "
+                            + "VALUES (?, ?, ?, 'sessions', ?, ?) "
+                            + "ON CONFLICT (user_id) DO UPDATE SET status = excluded.status, "
+                            + "step = excluded.step, last_error = NULL, updated_at = excluded.updated_at",
+                    userId, normalized, RUNNING, now, now);
+        });
+
+        submit(userId);
+        return status(userId);
+    }
+
+    /*
+     * Progress of one purge (user_id, email, status, step, counts, last_error, times).
+     */
+    public Map<String, Object> status(Integer userId) {
+        List<Map<String, Object>> rows = jdbc.queryForList("SELECT * FROM user_purges WHERE user_id = ?", userId);
+        if (rows.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No purge for this user");
+        }
+        return rows.get(0);
+    }
+
+    /*
+     * The last purges, newest first (admin dashboard).
+     */
+    public List<Map<String, Object>> recent(int limit) {
+        return jdbc.queryForList("SELECT * FROM user_purges ORDER BY started_at DESC LIMIT ?", limit);
+    }
+
+    // ============================================================
+    // RESUME / SHUTDOWN
+    // ============================================================
+
+    /*
+     * Purges that were running when the app stopped continue.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        for (Integer userId : jdbc.queryForList(
+                "SELECT user_id FROM user_purges WHERE status = ?", Integer.class, RUNNING)) {
+            submit(userId);
+        }
+    }
+
+    /*
+     * Stops between two batches; the purge continues at the next start.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        worker.shutdownNow();
+        worker.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // ============================================================
+    // PURGE (background thread)
+    // ============================================================
+
+    private void submit(Integer userId) {
+        try {
+            worker.execute(() -> run(userId));
+        } catch (RejectedExecutionException e) {
+            // Shutting down: it stays RUNNING and is resumed at the next start
+        }
+    }
+
+    private void run(Integer userId) {
+        String step = "start";
+        try {
+            Map<String, Object> purge = status(userId);
+            if (!RUNNING.equals(purge.get("status"))) {
+                return;
+            }
+            String email = (String) purge.get("email");
+
+            step = step(userId, "sessions");
+            removeSessions(userId, email);
+
+            step = step(userId, "notes");
+            deleteNotes(userId);
+
+            step = step(userId, "uploads");
+            deleteUploads(userId);
+
+            step = step(userId, "account");
+            deleteAccount(userId);
+
+        } catch (InterruptedException e) {
+            // App is shutting down: resumed at the next start
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // I log the error and keep it on the purge (the admin can start it again)
+            log.error("Purge of user {} failed at step '{}'", userId, step, e);
+            jdbc.update("UPDATE user_purges SET status = ?, last_error = ?, updated_at = ? WHERE user_id = ?",
+                    FAILED, String.valueOf(e.getMessage()), System.currentTimeMillis(), userId);
+        }
+    }
+
+    /*
+     * Logged-in sessions of the user end now (on every node in jdbc mode).
+     */
+    private void removeSessions(Integer userId, String email) {
+        int removed = 0;
+
+        JdbcSessionRepository shared = jdbcSessions.getIfAvailable();
+        if (shared != null) {
+            for (JdbcSession session : shared.findByPrincipalName(email).values()) {
+                shared.deleteById(session.getId());
+                removed++;
+            }
+        } else {
+            // In-memory sessions: the next request of the session is logged out
+            for (SessionInformation info : sessionRegistry.getAllSessions(email, false)) {
+                info.expireNow();
+                removed++;
+            }
+        }
+
+        jdbc.update("UPDATE user_purges SET sessions_deleted = sessions_deleted + ?, updated_at = ? WHERE user_id = ?",
+                removed, System.currentTimeMillis(), userId);
+    }
+
+    /*
+     * One short transaction per batch (index on notes.user_id), then a pause.
+     */
+    private void deleteNotes(Integer userId) throws InterruptedException {
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                int n = jdbc.update("DELETE FROM notes WHERE id IN "
+                        + "(SELECT id FROM notes WHERE user_id = ? LIMIT ?)", userId, batchSize);
+                progress(userId, "notes_deleted", n);
+                return n;
+            });
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+
+            notesDeleted.increment(deleted);
+            adminStats.notesChanged(userId, -deleted);
+            noteService.notesChanged(userId);
+            pause();
+        }
+    }
+
+    /*
+     * Uploads rows and blob counts change in one transaction per batch,
+     * so a restart can't release a blob twice. The blobs of the batch that nobody
+     * uses anymore are deleted after the commit; if the app stops in between,
+     * BlobStore.sweepUnreferenced() deletes them later.
+     */
+    private void deleteUploads(Integer userId) throws InterruptedException, IOException {
+        while (true) {
+            List<Map<String, Object>> batch = jdbc.queryForList(
+                    "SELECT id, blob_sha256, size FROM uploads WHERE user_id = ? LIMIT ?", userId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            Map<String, Integer> released = new HashMap<>();
+            long bytes = 0;
+            for (Map<String, Object> row : batch) {
+                released.merge((String) row.get("blob_sha256"), 1, Integer::sum);
+                bytes += ((Number) row.get("size")).longValue();
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbc.batchUpdate("DELETE FROM uploads WHERE id = ?", batch, batch.size(),
+                        (ps, row) -> ps.setObject(1, row.get("id")));
+                released.forEach((sha, count) ->
+                        jdbc.update("UPDATE blobs SET ref_count = ref_count - ? WHERE sha256 = ?", count, sha));
+                progress(userId, "uploads_deleted", batch.size());
+            });
+
+            for (String sha : released.keySet()) {
+                blobStore.deleteIfUnreferenced(sha);
+            }
+            uploadsDeleted.increment(batch.size());
+            adminStats.uploadBytesChanged(userId, -bytes);
+            pause();
+        }
+
+        if (chunkedUploadService.deleteSessionsOf(userId) > 0) {
+            throw new IOException("Some chunked uploads could not be deleted");
+        }
+        uploadIndex.removeUser(userId);
+    }
+
+    /*
+     * Last transaction: the counters row and the user, only if no note or upload
+     * came in after its batches (a request that was already running).
+     */
+    private void deleteAccount(Integer userId) throws InterruptedException, IOException {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                jdbc.update("DELETE FROM storage_usage WHERE user_id = ?", userId);
+                int n = jdbc.update("DELETE FROM users WHERE id = ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM notes WHERE user_id = ?) "
+                        + "AND NOT EXISTS (SELECT 1 FROM uploads WHERE user_id = ?)", userId, userId, userId);
+
+                // Stopped right after this transaction last time: the user is already gone
+                if (n == 0 && jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, userId) == 0) {
+                    n = -1;
+                }
+                if (n != 0) {
+                    jdbc.update("UPDATE user_purges SET status = ?, step = 'done', updated_at = ? WHERE user_id = ?",
+                            DONE, System.currentTimeMillis(), userId);
+                }
+                return n;
+            });
+
+            if (deleted != null && deleted == 1) {
+                adminStats.userRemoved(userId);
+                noteService.notesChanged(userId);
+                return;
+            }
+            if (deleted != null && deleted == -1) {
+                return;
+            }
+
+            // Late rows: one more pass over them
+            deleteNotes(userId);
+            deleteUploads(userId);
+        }
+        throw new IllegalStateException("New data keeps arriving for this user");
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /*
+     * Records the step that starts; returns it (named in the log if it fails).
+     */
+    private String step(Integer userId, String step) {
+        jdbc.update("UPDATE user_purges SET step = ?, updated_at = ? WHERE user_id = ?",
+                step, System.currentTimeMillis(), userId);
+        return step;
+    }
+
+    private void progress(Integer userId, String column, int rows) {
+        jdbc.update("UPDATE user_purges SET " + column + " = " + column + " + ?, updated_at = ? WHERE user_id = ?",
+                rows, System.currentTimeMillis(), userId);
+    }
+
+    /*
+     * Gives the write lock to other requests between two batches.
+     */
+    private void pause() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (pauseMs > 0) {
+            Thread.sleep(pauseMs);
+        }
+    }
+}
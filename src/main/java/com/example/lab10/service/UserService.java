@@ -1,9 +1,17 @@
 package com.example.lab10.service;
 
+import com.example.lab10.metrics.Phase;
+import com.example.lab10.metrics.Spans;
 import com.example.lab10.model.User;
 import com.example.lab10.repository.UserRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.server.ResponseStatusException;
 
 /*
  * Service for user-related logic.
@@ -12,13 +20,18 @@ import org.springframework.stereotype.Service;
 @Service
 public class UserService {
 
+    // Request attribute that holds the current user (loaded once per request)
+    private static final String CURRENT_USER = UserService.class.getName() + ".currentUser";
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final AdminStats adminStats;
 
-    // I inject the repository and the password encoder
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    // I inject the repository, the password encoder and the dashboard counters
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AdminStats adminStats) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.adminStats = adminStats;
     }
 
     /*
@@ -46,6 +59,59 @@ public class UserService {
          */
         User user = new User(normalizedEmail, normalizedEmail, hashed, "ROLE_USER");
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        adminStats.userRegistered();
+        return saved;
+    }
+
+    /*
+     * Gets the currently authenticated user from Spring Security.
+     * Other services (notes, uploads) use this to enforce ownership.
+     *
+     * The user is loaded once per HTTP request and kept as a request attribute:
+     * the notes list asks for it in the controller, NoteService and UploadService,
+     * and each call used to be one more SELECT.
+     */
+    public User currentUserOrThrow() {
+        long t = Spans.start();
+        try {
+            return loadCurrentUser();
+        } finally {
+            Spans.stop(Phase.USER, t);
+        }
+    }
+
+    private User loadCurrentUser() {
+
+        // Get authentication info from Spring Security
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+
+        // If no authentication exists, the user is not logged in
+        if (auth == null || auth.getName() == null || auth.getName().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not authenticated");
+        }
+
+        // Normalizes email (same logic as login)
+        String email = auth.getName().trim().toLowerCase();
+
+        // Already loaded in this request (and for the same login)
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null
+                && request.getAttribute(CURRENT_USER, RequestAttributes.SCOPE_REQUEST) instanceof User cached
+                && email.equals(cached.getEmail())) {
+            return cached;
+        }
+
+        // Load the user from the database
+        // If user does not exist, treat as unauthorized
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() ->
+                        new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found")
+                );
+
+        if (request != null) {
+            request.setAttribute(CURRENT_USER, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
     }
-}
\ No newline at end of file
+}
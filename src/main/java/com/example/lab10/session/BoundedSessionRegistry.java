@@ -0,0 +1,248 @@
+package com.example.lab10.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.session.AbstractSessionEvent;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.security.core.session.SessionIdChangedEvent;
+import org.springframework.security.core.session.SessionInformation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * In-memory SessionRegistry (default store) that can't grow without limit.
+ *
+ * Spring's SessionRegistryImpl only forgets a session when it gets the
+ * "session destroyed" event; a missed event is a leak for the life of the node.
+ * Here:
+ * - lookups are map gets: session id -> information, user name -> session ids
+ *   (the "max 1 session" check only reads the few sessions of one user)
+ * - sweep() removes sessions idle for longer than the session timeout
+ *   (the container has expired them, event or not)
+ * - at most lab10.session.registry.max-sessions entries: when full, a sweep
+ *   runs, and if that is not enough the least recently used 1% is dropped
+ *   (by one login at a time; concurrent logins may pass the limit by up to 1%).
+ *   A dropped session stays logged in, it just no longer counts for
+ *   "max sessions per user".
+ *
+ * Removals are counted in lab10.sessions.removed{reason = destroyed | idle | capacity}.
+ */
+public class BoundedSessionRegistry implements CountingSessionRegistry, ApplicationListener<AbstractSessionEvent> {
+
+    private final long idleMs;
+    private final int maxSessions;
+
+    private final Map<String, SessionInformation> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByPrincipal = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Only one login at a time makes room, the others go on without waiting
+    private final ReentrantLock evicting = new ReentrantLock();
+
+    private final Counter destroyed;
+    private final Counter idle;
+    private final Counter capacity;
+
+    public BoundedSessionRegistry(Duration sessionTimeout, int maxSessions, MeterRegistry meterRegistry) {
+        // A minute of margin over the container's own timeout
+        this.idleMs = sessionTimeout.toMillis() + 60_000;
+        this.maxSessions = maxSessions;
+
+        this.destroyed = removedCounter(meterRegistry, "destroyed");
+        this.idle = removedCounter(meterRegistry, "idle");
+        this.capacity = removedCounter(meterRegistry, "capacity");
+    }
+
+    // ============================================================
+    // SessionRegistry
+    // ============================================================
+
+    @Override
+    public List<Object> getAllPrincipals() {
+        List<Object> principals = new ArrayList<>();
+        for (Set<String> ids : sessionsByPrincipal.values()) {
+            ids.stream().map(sessions::get).filter(Objects::nonNull).findFirst()
+                    .ifPresent(i -> principals.add(i.getPrincipal()));
+        }
+        return principals;
+    }
+
+    @Override
+    public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+        Set<String> ids = sessionsByPrincipal.get(CountingSessionRegistry.principalName(principal));
+        if (ids == null) {
+            return List.of();
+        }
+
+        List<SessionInformation> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            SessionInformation info = sessions.get(id);
+            if (info != null && (includeExpiredSessions || !info.isExpired())) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public SessionInformation getSessionInformation(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    @Override
+    public void refreshLastRequest(String sessionId) {
+        SessionInformation info = sessions.get(sessionId);
+        if (info != null) {
+            info.refreshLastRequest();
+        }
+    }
+
+    @Override
+    public void registerNewSession(String sessionId, Object principal) {
+        if (size.get() >= maxSessions) {
+            makeRoom();
+        }
+
+        // Same session id again (login twice in one session): replace it
+        removeSessionInformation(sessionId);
+
+        String name = CountingSessionRegistry.principalName(principal);
+        if (sessions.put(sessionId, new SessionInformation(principal, sessionId, new Date())) == null) {
+            size.incrementAndGet();
+        }
+        sessionsByPrincipal.compute(name, (n, ids) -> {
+            Set<String> set = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            set.add(sessionId);
+            return set;
+        });
+    }
+
+    @Override
+    public void removeSessionInformation(String sessionId) {
+        remove(sessionId);
+    }
+
+    // ============================================================
+    // Session events (HttpSessionEventPublisher)
+    // ============================================================
+
+    @Override
+    public void onApplicationEvent(AbstractSessionEvent event) {
+        if (event instanceof SessionDestroyedEvent destroyedEvent) {
+            if (remove(destroyedEvent.getId())) {
+                destroyed.increment();
+            }
+        } else if (event instanceof SessionIdChangedEvent changed) {
+            SessionInformation old = sessions.get(changed.getOldSessionId());
+            if (old != null) {
+                remove(changed.getOldSessionId());
+                registerNewSession(changed.getNewSessionId(), old.getPrincipal());
+            }
+        }
+    }
+
+    // ============================================================
+    // Cleanup
+    // ============================================================
+
+    /*
+     * Removes sessions the container has already expired (idle too long).
+     */
+    @Scheduled(fixedDelayString = "${lab10.session.registry.sweep-ms:60000}")
+    public void sweep() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        for (SessionInformation info : sessions.values()) {
+            if (info.getLastRequest().getTime() < cutoff && remove(info.getSessionId())) {
+                idle.increment();
+            }
+        }
+    }
+
+    @Override
+    public long sessionCount() {
+        return size.get();
+    }
+
+    @Override
+    public long principalCount() {
+        return sessionsByPrincipal.size();
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /*
+     * Full: sweep first; if still full, drop the least recently used 1%
+     * (one sort per 1% of capacity, not one per login).
+     *
+     * When many users log in at capacity, only one of them copies and sorts the
+     * map; the others register without waiting, as long as they stay within 1%
+     * over the limit. Past that they wait for the eviction in progress.
+     */
+    private void makeRoom() {
+        int drop = Math.max(1, maxSessions / 100);
+        if (!evicting.tryLock()) {
+            if (size.get() < maxSessions + drop) {
+                return;
+            }
+            evicting.lock();
+        }
+        try {
+            // Room was made while this login waited
+            if (size.get() < maxSessions) {
+                return;
+            }
+            sweep();
+            if (size.get() < maxSessions) {
+                return;
+            }
+
+            // The 1%, plus what the logins that did not wait added over the limit
+            int excess = Math.max(drop, size.get() - maxSessions + 1);
+            List<SessionInformation> oldest = new ArrayList<>(sessions.values());
+            oldest.sort(Comparator.comparing(SessionInformation::getLastRequest));
+            for (SessionInformation info : oldest.subList(0, Math.min(excess, oldest.size()))) {
+                if (remove(info.getSessionId())) {
+                    capacity.increment();
+                }
+            }
+        } finally {
+            evicting.unlock();
+        }
+    }
+
+    private boolean remove(String sessionId) {
+        SessionInformation info = sessions.remove(sessionId);
+        if (info == null) {
+            return false;
+        }
+        size.decrementAndGet();
+
+        // Drop the user's entry with its last session
+        sessionsByPrincipal.computeIfPresent(CountingSessionRegistry.principalName(info.getPrincipal()), (n, ids) -> {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
+        return true;
+    }
+
+    private static Counter removedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("lab10.sessions.removed")
+                .description("Sessions removed from the in-memory SessionRegistry, by reason")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
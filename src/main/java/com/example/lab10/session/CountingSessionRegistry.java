@@ -0,0 +1,28 @@
+package com.example.lab10.session;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.security.Principal;
+
+/*
+ * A SessionRegistry that can count its sessions and users directly
+ * (the lab10.sessions.* gauges), instead of one getAllSessions() per user.
+ */
+public interface CountingSessionRegistry extends SessionRegistry {
+
+    long sessionCount();
+
+    long principalCount();
+
+    /*
+     * The user name of a principal (Authentication.getName() for the same user).
+     */
+    static String principalName(Object principal) {
+        if (principal instanceof UserDetails user) return user.getUsername();
+        if (principal instanceof AuthenticatedPrincipal p) return p.getName();
+        if (principal instanceof Principal p) return p.getName();
+        return principal.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.lab10.session;
+
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+/*
+ * One session of JdbcSessionRepository.
+ *
+ * The values live in a MapSession; this class only remembers what changed
+ * since it was loaded, so save() can write as little as possible:
+ * - nothing changed but the last access time -> write-behind (no SQL now)
+ * - attributes / timeout changed             -> one UPDATE
+ * - new session                              -> one INSERT
+ * - id changed (new id on login)             -> UPDATE of the id too
+ */
+public final class JdbcSession implements Session {
+
+    private final MapSession delegate;
+
+    private boolean isNew;
+    private boolean changed;
+    private boolean accessed;
+    private String originalId;
+
+    JdbcSession(MapSession delegate, boolean isNew) {
+        this.delegate = delegate;
+        this.isNew = isNew;
+        this.originalId = delegate.getId();
+    }
+
+    // ============================================================
+    // Session
+    // ============================================================
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public String changeSessionId() {
+        return delegate.changeSessionId();
+    }
+
+    @Override
+    public <T> T getAttribute(String name) {
+        return delegate.getAttribute(name);
+    }
+
+    @Override
+    public Set<String> getAttributeNames() {
+        return delegate.getAttributeNames();
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        delegate.setAttribute(name, value);
+        changed = true;
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        delegate.removeAttribute(name);
+        changed = true;
+    }
+
+    @Override
+    public Instant getCreationTime() {
+        return delegate.getCreationTime();
+    }
+
+    @Override
+    public void setLastAccessedTime(Instant lastAccessedTime) {
+        delegate.setLastAccessedTime(lastAccessedTime);
+        accessed = true;
+    }
+
+    @Override
+    public Instant getLastAccessedTime() {
+        return delegate.getLastAccessedTime();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(Duration interval) {
+        delegate.setMaxInactiveInterval(interval);
+        changed = true;
+    }
+
+    @Override
+    public Duration getMaxInactiveInterval() {
+        return delegate.getMaxInactiveInterval();
+    }
+
+    @Override
+    public boolean isExpired() {
+        return delegate.isExpired();
+    }
+
+    // ============================================================
+    // Change tracking (JdbcSessionRepository)
+    // ============================================================
+
+    MapSession values() {
+        return delegate;
+    }
+
+    boolean isNew() {
+        return isNew;
+    }
+
+    boolean isChanged() {
+        return changed;
+    }
+
+    boolean isAccessed() {
+        return accessed;
+    }
+
+    String originalId() {
+        return originalId;
+    }
+
+    /*
+     * Saved: the next save() only writes what changes after this.
+     */
+    void markSaved() {
+        isNew = false;
+        changed = false;
+        accessed = false;
+        originalId = delegate.getId();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.lab10.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/*
+ * SessionRegistry on top of JdbcSessionRepository, so "max 1 session per user"
+ * (SecurityConfig) works across all nodes that share the database.
+ *
+ * Cost per request: ConcurrentSessionFilter asks for the information of the
+ * current session on every request. That session was already loaded by
+ * Spring Session for this request, so it is read from there (no SQL).
+ * refreshLastRequest() does nothing: the repository already keeps the last
+ * access time (write-behind).
+ *
+ * Writes only happen at login: the older session of the user gets
+ * expired = 1 (expireNow), and its next request, on any node, is logged out.
+ */
+public class JdbcSessionRegistry implements CountingSessionRegistry {
+
+    private final JdbcSessionRepository repository;
+
+    public JdbcSessionRegistry(JdbcSessionRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public List<Object> getAllPrincipals() {
+        return new ArrayList<>(repository.principalNames());
+    }
+
+    @Override
+    public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+        List<SessionInformation> result = new ArrayList<>();
+        for (JdbcSession session : repository.findByPrincipalName(CountingSessionRegistry.principalName(principal)).values()) {
+            SessionInformation info = new JdbcSessionInformation(principal, session.getId(),
+                    Date.from(session.getLastAccessedTime()),
+                    session.getAttribute(JdbcSessionRepository.EXPIRED_ATTRIBUTE) != null);
+            if (includeExpiredSessions || !info.isExpired()) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public SessionInformation getSessionInformation(String sessionId) {
+        HttpSession current = currentSession();
+        if (current != null && current.getId().equals(sessionId)) {
+            Object principal = principal(current.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY));
+            return principal == null ? null : new JdbcSessionInformation(principal, sessionId,
+                    new Date(current.getLastAccessedTime()),
+                    current.getAttribute(JdbcSessionRepository.EXPIRED_ATTRIBUTE) != null);
+        }
+
+        JdbcSession session = repository.findById(sessionId);
+        if (session == null) {
+            return null;
+        }
+        Object principal = principal(session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY));
+        return principal == null ? null : new JdbcSessionInformation(principal, sessionId,
+                Date.from(session.getLastAccessedTime()),
+                session.getAttribute(JdbcSessionRepository.EXPIRED_ATTRIBUTE) != null);
+    }
+
+    /*
+     * The repository keeps the last access time.
+     */
+    @Override
+    public void refreshLastRequest(String sessionId) {
+    }
+
+    /*
+     * The user name is stored with the session when the request ends.
+     */
+    @Override
+    public void registerNewSession(String sessionId, Object principal) {
+    }
+
+    /*
+     * The session row is deleted by the repository (logout, expiry).
+     */
+    @Override
+    public void removeSessionInformation(String sessionId) {
+    }
+
+    /*
+     * Active sessions of logged-in users (one COUNT instead of one query per user).
+     */
+    @Override
+    public long sessionCount() {
+        return repository.countActive();
+    }
+
+    @Override
+    public long principalCount() {
+        return repository.principalNames().size();
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private static HttpSession currentSession() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest().getSession(false);
+        }
+        return null;
+    }
+
+    private static Object principal(Object securityContext) {
+        if (securityContext instanceof SecurityContext context) {
+            Authentication auth = context.getAuthentication();
+            return auth == null ? null : auth.getPrincipal();
+        }
+        return null;
+    }
+
+    /*
+     * expireNow() (called at login for the older session) is written to the database,
+     * so the node that serves that session sees it too.
+     */
+    private final class JdbcSessionInformation extends SessionInformation {
+
+        JdbcSessionInformation(Object principal, String sessionId, Date lastRequest, boolean expired) {
+            super(principal, sessionId, lastRequest);
+            if (expired) {
+                super.expireNow();
+            }
+        }
+
+        @Override
+        public void expireNow() {
+            repository.markExpired(getSessionId());
+            super.expireNow();
+        }
+    }
+}
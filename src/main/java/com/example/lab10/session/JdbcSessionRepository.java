@@ -0,0 +1,297 @@
+package com.example.lab10.session;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+import org.springframework.session.PrincipalNameIndexResolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Spring Session repository on the SQLite "sessions" table (V9), so sessions
+ * survive a restart and every node that uses the same database sees them.
+ *
+ * Writes per request:
+ * - a request that only reads its session writes nothing right away: the new
+ *   last access time goes to a local map, and flush() writes all of them
+ *   with one batch UPDATE every lab10.session.flush-ms (write-behind)
+ * - a request that changes an attribute (login, CSRF token) does one UPDATE
+ *
+ * Expiry: sweep() deletes expired rows using the expiry_time index. A row's
+ * expiry_time can be behind by up to one flush interval (write-behind), so
+ * the sweep only deletes rows that expired more than two intervals ago.
+ * Sessions already expired but not yet swept are ignored by findById().
+ *
+ * Attributes are stored with Java serialization (the security context and the
+ * CSRF token are Serializable). A row that can't be read anymore (classes changed)
+ * counts as no session: the user logs in again.
+ *
+ * The "expired" column is set by JdbcSessionRegistry when a newer login of the
+ * same user replaces this session; it is loaded as the EXPIRED_ATTRIBUTE attribute.
+ */
+public class JdbcSessionRepository implements FindByIndexNameSessionRepository<JdbcSession> {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcSessionRepository.class);
+
+    /*
+     * Present (true) on sessions replaced by a newer login. Not stored with the
+     * other attributes: it comes from the "expired" column, so an UPDATE of
+     * the attributes by a request still running can't remove it.
+     */
+    public static final String EXPIRED_ATTRIBUTE = JdbcSessionRepository.class.getName() + ".expired";
+
+    private static final String COLUMNS =
+            "id, creation_time, last_access_time, max_inactive_seconds, attributes, expired";
+
+    private final JdbcTemplate jdbc;
+    private final Duration defaultMaxInactive;
+    private final long flushMs;
+    private final ClassLoader classLoader;
+    private final PrincipalNameIndexResolver<JdbcSession> principalResolver = new PrincipalNameIndexResolver<>();
+
+    /*
+     * Write-behind: session id -> last access time (epoch ms) not written yet.
+     */
+    private final Map<String, Long> pendingAccess = new ConcurrentHashMap<>();
+
+    public JdbcSessionRepository(JdbcTemplate jdbc, Duration defaultMaxInactive, long flushMs, ClassLoader classLoader) {
+        this.jdbc = jdbc;
+        this.defaultMaxInactive = defaultMaxInactive;
+        this.flushMs = flushMs;
+        this.classLoader = classLoader;
+    }
+
+    // ============================================================
+    // SessionRepository
+    // ============================================================
+
+    @Override
+    public JdbcSession createSession() {
+        MapSession values = new MapSession();
+        values.setMaxInactiveInterval(defaultMaxInactive);
+        return new JdbcSession(values, true);
+    }
+
+    @Override
+    public void save(JdbcSession session) {
+        MapSession values = session.values();
+        long lastAccess = values.getLastAccessedTime().toEpochMilli();
+        long maxInactiveSeconds = values.getMaxInactiveInterval().getSeconds();
+
+        if (session.isNew()) {
+            jdbc.update("INSERT INTO sessions (id, principal_name, creation_time, last_access_time, "
+                            + "max_inactive_seconds, expiry_time, attributes) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    session.getId(), principalResolver.resolveIndexValueFor(session),
+                    values.getCreationTime().toEpochMilli(), lastAccess,
+                    maxInactiveSeconds, lastAccess + maxInactiveSeconds * 1000, serialize(values));
+
+        } else if (session.isChanged() || !session.getId().equals(session.originalId())) {
+            jdbc.update("UPDATE sessions SET id = ?, principal_name = ?, last_access_time = ?, "
+                            + "max_inactive_seconds = ?, expiry_time = ?, attributes = ? WHERE id = ?",
+                    session.getId(), principalResolver.resolveIndexValueFor(session), lastAccess,
+                    maxInactiveSeconds, lastAccess + maxInactiveSeconds * 1000, serialize(values),
+                    session.originalId());
+            pendingAccess.remove(session.originalId());
+
+        } else if (session.isAccessed()) {
+            // Only the last access time: written later by flush()
+            pendingAccess.merge(session.getId(), lastAccess, Math::max);
+        }
+
+        session.markSaved();
+    }
+
+    @Override
+    public JdbcSession findById(String id) {
+        List<JdbcSession> found = jdbc.query("SELECT " + COLUMNS + " FROM sessions WHERE id = ?",
+                (rs, row) -> load(rs), id);
+
+        if (found.isEmpty()) {
+            return null;
+        }
+        JdbcSession session = found.get(0);
+        if (session == null || session.isExpired()) {
+            deleteById(id);
+            return null;
+        }
+        return session;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        pendingAccess.remove(id);
+        jdbc.update("DELETE FROM sessions WHERE id = ?", id);
+    }
+
+    // ============================================================
+    // FindByIndexNameSessionRepository (sessions of one user)
+    // ============================================================
+
+    @Override
+    public Map<String, JdbcSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        if (!PRINCIPAL_NAME_INDEX_NAME.equals(indexName)) {
+            return Map.of();
+        }
+
+        Map<String, JdbcSession> sessions = new LinkedHashMap<>();
+        jdbc.query("SELECT " + COLUMNS + " FROM sessions WHERE principal_name = ? AND expiry_time > ?",
+                rs -> {
+                    JdbcSession session = load(rs);
+                    if (session != null && !session.isExpired()) {
+                        sessions.put(session.getId(), session);
+                    }
+                },
+                indexValue, System.currentTimeMillis());
+        return sessions;
+    }
+
+    // ============================================================
+    // Used by JdbcSessionRegistry
+    // ============================================================
+
+    /*
+     * A newer login replaced this session (one UPDATE, at login time only).
+     */
+    void markExpired(String id) {
+        jdbc.update("UPDATE sessions SET expired = 1 WHERE id = ?", id);
+    }
+
+    List<String> principalNames() {
+        return jdbc.queryForList("SELECT DISTINCT principal_name FROM sessions "
+                + "WHERE principal_name IS NOT NULL AND expired = 0 AND expiry_time > ?",
+                String.class, System.currentTimeMillis());
+    }
+
+    long countActive() {
+        Long count = jdbc.queryForObject("SELECT COUNT(*) FROM sessions "
+                + "WHERE principal_name IS NOT NULL AND expired = 0 AND expiry_time > ?",
+                Long.class, System.currentTimeMillis());
+        return count == null ? 0 : count;
+    }
+
+    // ============================================================
+    // Background work
+    // ============================================================
+
+    /*
+     * Writes the pending last access times (one batch UPDATE).
+     * "last_access_time < ?" keeps a newer time written by another node.
+     */
+    @Scheduled(fixedDelayString = "${lab10.session.flush-ms:10000}")
+    public void flush() {
+        if (pendingAccess.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, Long>> batch = new ArrayList<>(Map.copyOf(pendingAccess).entrySet());
+        jdbc.batchUpdate("UPDATE sessions SET last_access_time = ?, "
+                        + "expiry_time = ? + max_inactive_seconds * 1000 WHERE id = ? AND last_access_time < ?",
+                batch, batch.size(), (ps, e) -> {
+                    ps.setLong(1, e.getValue());
+                    ps.setLong(2, e.getValue());
+                    ps.setString(3, e.getKey());
+                    ps.setLong(4, e.getValue());
+                });
+
+        // Times that changed again during the flush stay for the next one
+        batch.forEach(e -> pendingAccess.remove(e.getKey(), e.getValue()));
+    }
+
+    /*
+     * Deletes expired sessions (index on expiry_time).
+     */
+    @Scheduled(fixedDelayString = "${lab10.session.sweep-ms:60000}")
+    public void sweep() {
+        jdbc.update("DELETE FROM sessions WHERE expiry_time < ?", System.currentTimeMillis() - 2 * flushMs);
+    }
+
+    /*
+     * Last access times must not be lost on shutdown.
+     */
+    @PreDestroy
+    public void stop() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // The database may already be closed: the sessions only expire a bit earlier
+            log.warn("Could not write the pending session access times on shutdown", e);
+        }
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private JdbcSession load(ResultSet rs) throws SQLException {
+        String id = rs.getString("id");
+
+        MapSession values = new MapSession(id);
+        values.setCreationTime(Instant.ofEpochMilli(rs.getLong("creation_time")));
+        values.setMaxInactiveInterval(Duration.ofSeconds(rs.getLong("max_inactive_seconds")));
+
+        // This node may know a newer access time than the row (write-behind)
+        long lastAccess = Math.max(rs.getLong("last_access_time"), pendingAccess.getOrDefault(id, 0L));
+        values.setLastAccessedTime(Instant.ofEpochMilli(lastAccess));
+
+        Map<String, Object> attributes = deserialize(id, rs.getBytes("attributes"));
+        if (attributes == null) {
+            return null;
+        }
+        attributes.forEach(values::setAttribute);
+        if (rs.getBoolean("expired")) {
+            values.setAttribute(EXPIRED_ATTRIBUTE, true);
+        }
+
+        return new JdbcSession(values, false);
+    }
+
+    private byte[] serialize(MapSession values) {
+        Map<String, Object> attributes = new HashMap<>();
+        for (String name : values.getAttributeNames()) {
+            if (!EXPIRED_ATTRIBUTE.equals(name)) {
+                attributes.put(name, values.getAttribute(name));
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(attributes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Session attributes are not serializable", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> deserialize(String id, byte[] data) {
+        if (data == null) {
+            return new HashMap<>();
+        }
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(data), classLoader)) {
+            return (Map<String, Object>) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // I log the error; the session is treated as missing
+            log.warn("Could not read the attributes of session {}, treating it as missing", id, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+-- Admin user purges (UserPurgeService)
+
+-- One row per purged user: progress is saved after every batch, so a purge
+-- stopped by a restart continues where it was.
+-- No foreign key: the users row is deleted at the end, this row stays as a record.
+-- status: RUNNING -> DONE / FAILED
+CREATE TABLE IF NOT EXISTS user_purges (
+  user_id INTEGER PRIMARY KEY,
+  email TEXT NOT NULL,
+  status TEXT NOT NULL,
+  step TEXT NOT NULL,
+  notes_deleted INTEGER NOT NULL DEFAULT 0,
+  uploads_deleted INTEGER NOT NULL DEFAULT 0,
+  sessions_deleted INTEGER NOT NULL DEFAULT 0,
+  last_error TEXT,
+  started_at BIGINT NOT NULL,
+  updated_at BIGINT NOT NULL
+);
+
+-- Finding the purges to resume at startup
+CREATE INDEX IF NOT EXISTS idx_user_purges_status ON user_purges(status);
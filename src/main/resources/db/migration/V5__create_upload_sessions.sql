@@ -0,0 +1,18 @@
+-- Create upload_sessions table
+-- This table tracks resumable (chunked) uploads.
+-- "received" is a bitmap: bit i is set when chunk i is safely on disk.
+CREATE TABLE IF NOT EXISTS upload_sessions (
+  id TEXT PRIMARY KEY,
+  user_id INTEGER NOT NULL,
+  filename TEXT NOT NULL,
+  total_size BIGINT NOT NULL,
+  chunk_size INTEGER NOT NULL,
+  received BLOB NOT NULL,
+  created_at BIGINT NOT NULL,
+  updated_at BIGINT NOT NULL,
+  CONSTRAINT fk_upload_sessions_user
+    FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+-- Index used by the cleanup job to find abandoned sessions
+CREATE INDEX IF NOT EXISTS idx_upload_sessions_updated_at ON upload_sessions(updated_at);
@@ -0,0 +1,28 @@
+-- Content-addressed upload storage
+
+-- Step 1: one row per stored file content (blob), keyed by its SHA-256.
+-- ref_count = how many uploads point to this blob.
+CREATE TABLE IF NOT EXISTS blobs (
+  sha256 TEXT PRIMARY KEY,
+  size BIGINT NOT NULL,
+  ref_count INTEGER NOT NULL,
+  created_at BIGINT NOT NULL
+);
+
+-- Step 2: one row per uploaded file (user + filename -> blob)
+CREATE TABLE IF NOT EXISTS uploads (
+  id INTEGER PRIMARY KEY AUTOINCREMENT,
+  user_id INTEGER NOT NULL,
+  filename TEXT NOT NULL,
+  blob_sha256 TEXT NOT NULL,
+  size BIGINT NOT NULL,
+  created_at BIGINT NOT NULL,
+  CONSTRAINT fk_uploads_user
+    FOREIGN KEY (user_id) REFERENCES users(id),
+  CONSTRAINT fk_uploads_blob
+    FOREIGN KEY (blob_sha256) REFERENCES blobs(sha256)
+);
+
+-- Step 3: a filename is unique per user, and I look up uploads by blob
+CREATE UNIQUE INDEX IF NOT EXISTS ux_uploads_user_filename ON uploads(user_id, filename);
+CREATE INDEX IF NOT EXISTS idx_uploads_blob_sha256 ON uploads(blob_sha256);
@@ -0,0 +1,23 @@
+-- Metadata extracted from uploaded content by the background pipeline
+
+-- Step 1: extracted values are stored per blob (same content = same metadata)
+ALTER TABLE blobs ADD COLUMN mime_type TEXT;
+ALTER TABLE blobs ADD COLUMN width INTEGER;
+ALTER TABLE blobs ADD COLUMN height INTEGER;
+ALTER TABLE blobs ADD COLUMN thumbnail BOOLEAN NOT NULL DEFAULT 0;
+
+-- Step 2: persistent job queue (one job per blob)
+-- status: PENDING -> RUNNING -> DONE / FAILED
+CREATE TABLE IF NOT EXISTS upload_jobs (
+  id INTEGER PRIMARY KEY AUTOINCREMENT,
+  blob_sha256 TEXT NOT NULL,
+  status TEXT NOT NULL,
+  attempts INTEGER NOT NULL DEFAULT 0,
+  last_error TEXT,
+  created_at BIGINT NOT NULL,
+  updated_at BIGINT NOT NULL
+);
+
+-- Step 3: one job per blob, and a fast way to find the next pending jobs
+CREATE UNIQUE INDEX IF NOT EXISTS ux_upload_jobs_blob_sha256 ON upload_jobs(blob_sha256);
+CREATE INDEX IF NOT EXISTS idx_upload_jobs_status ON upload_jobs(status, id);
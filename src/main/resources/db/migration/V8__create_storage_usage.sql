@@ -0,0 +1,18 @@
+-- Per-user storage quotas
+
+-- Step 1: one row per user with running counters (bytes)
+-- used_bytes     = total size of the user's uploads
+-- reserved_bytes = bytes of uploads that are still streaming in
+-- quota_bytes    = per-user limit (NULL = lab10.upload.quota-bytes)
+CREATE TABLE IF NOT EXISTS storage_usage (
+  user_id INTEGER PRIMARY KEY,
+  used_bytes BIGINT NOT NULL DEFAULT 0,
+  reserved_bytes BIGINT NOT NULL DEFAULT 0,
+  quota_bytes BIGINT,
+  CONSTRAINT fk_storage_usage_user
+    FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+-- Step 2: start the counters from the uploads that already exist
+INSERT OR IGNORE INTO storage_usage (user_id, used_bytes, reserved_bytes)
+SELECT user_id, SUM(size), 0 FROM uploads GROUP BY user_id;
@@ -0,0 +1,21 @@
+-- HTTP sessions shared by all app nodes (used when lab10.session.store=jdbc)
+
+-- Step 1: one row per session
+-- times are epoch milliseconds; expiry_time = last_access_time + max_inactive_seconds
+-- principal_name = email of the logged-in user (NULL before login)
+-- attributes     = serialized session attributes (security context, CSRF token)
+-- expired        = 1 when a newer login of the same user replaced it (max sessions per user)
+CREATE TABLE IF NOT EXISTS sessions (
+  id TEXT PRIMARY KEY,
+  principal_name TEXT,
+  creation_time BIGINT NOT NULL,
+  last_access_time BIGINT NOT NULL,
+  max_inactive_seconds INTEGER NOT NULL,
+  expiry_time BIGINT NOT NULL,
+  attributes BLOB,
+  expired BOOLEAN NOT NULL DEFAULT 0
+);
+
+-- Step 2: the expiry sweep and "sessions of this user" (max sessions per user) use indexes
+CREATE INDEX IF NOT EXISTS idx_sessions_expiry_time ON sessions(expiry_time);
+CREATE INDEX IF NOT EXISTS idx_sessions_principal_name ON sessions(principal_name);
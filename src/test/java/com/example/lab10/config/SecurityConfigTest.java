@@ -0,0 +1,88 @@
+package com.example.lab10.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * Who can read /actuator/prometheus. MockMvc requests come from 127.0.0.1,
+ * so these also check that a local address alone is not enough.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class SecurityConfigTest {
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("security.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+        registry.add("lab10.metrics.username", () -> "scraper");
+        registry.add("lab10.metrics.password", () -> "Scrape!Passw0rd");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void anonymousLocalRequestMustAuthenticate() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().exists("WWW-Authenticate"));
+    }
+
+    @Test
+    void scraperAccountCanRead() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "Scrape!Passw0rd")))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "wrong")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void onlyAdminsAmongUsers() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").with(user("admin@local.test").roles("ADMIN")))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus").with(user("user@local.test").roles("USER")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void otherActuatorEndpointsKeepTheMainRules() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+
+        // The scraper account is only for /actuator/prometheus
+        mockMvc.perform(get("/actuator/metrics").with(httpBasic("scraper", "Scrape!Passw0rd")))
+                .andExpect(status().is3xxRedirection());
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-security");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package com.example.lab10.controller;
+
+import com.example.lab10.model.Note;
+import com.example.lab10.model.User;
+import com.example.lab10.repository.NoteRepository;
+import com.example.lab10.repository.UploadedFileRepository;
+import com.example.lab10.service.AdminStats;
+import com.example.lab10.service.NoteListCache;
+import com.example.lab10.service.NoteService;
+import com.example.lab10.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.example.lab10.support.StatementBudget.atMost;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * SQL statement budget of every NoteController, AuthController and AdminController endpoint.
+ *
+ * An extra query per request (a second user lookup, a lazy load in a template,
+ * an N+1 over the notes) makes the request go over its budget and fails the build.
+ * When a change really needs more (or fewer) statements, update the number here
+ * in the same commit, so the reviewer sees it.
+ *
+ * Runs on its own temporary SQLite file and upload folder.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StatementBudgetTest {
+
+    private static final String OWNER = "owner@budget.test";
+    private static final String OTHER = "other@budget.test";
+    private static final String ADMIN = "admin@local.test";
+    private static final String PASSWORD = "Budget!Passw0rd-Long";
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("budget.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteListCache noteListCache;
+
+    @Autowired
+    private AdminStats adminStats;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    private Integer ownerId;
+    private Integer otherNoteId;
+
+    @BeforeAll
+    void users() throws Exception {
+        ownerId = userService.register(OWNER, PASSWORD).getId();
+        User other = userService.register(OTHER, PASSWORD);
+
+        loginAs(other.getEmail());
+        otherNoteId = noteService.create("not yours", "someone else's note").getId();
+
+        loginAs(OWNER);
+        for (int i = 0; i < 3; i++) {
+            noteService.create("note " + i, "content " + i);
+        }
+        SecurityContextHolder.clearContext();
+
+        // The first upload of a user also creates its storage_usage row:
+        // the budgets below are for the usual case
+        myFileId();
+    }
+
+    @AfterEach
+    void logout() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // ============================================================
+    // NoteController
+    // ============================================================
+
+    /*
+     * 1 user lookup (kept for the whole request), 1 notes query.
+     */
+    @Test
+    void listNotes() throws Exception {
+        noteListCache.invalidate(ownerId);
+
+        mockMvc.perform(get("/notes").with(owner()))
+                .andExpect(status().isOk())
+                .andExpect(atMost(2));
+    }
+
+    /*
+     * The second time the page comes from NoteListCache: only the user lookup,
+     * and the delete forms still get the CSRF token of this request.
+     */
+    @Test
+    void listNotesFromCache() throws Exception {
+        mockMvc.perform(get("/notes").with(owner()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/notes").with(owner()).with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(atMost(1))
+                .andExpect(result -> {
+                    CsrfToken token = (CsrfToken) result.getRequest().getAttribute(CsrfToken.class.getName());
+                    assertTrue(result.getResponse().getContentAsString().contains("value=\"" + token.getToken() + "\""));
+                });
+    }
+
+    /*
+     * A new note must show up right away (the cached page is invalidated).
+     */
+    @Test
+    void listNotesAfterCreate() throws Exception {
+        mockMvc.perform(get("/notes").with(owner()))
+                .andExpect(status().isOk());
+
+        loginAs(OWNER);
+        noteService.create("fresh note", "just created");
+
+        mockMvc.perform(get("/notes").with(owner()))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("fresh note")));
+    }
+
+    /*
+     * The list must not run one query per note (N+1).
+     */
+    @Test
+    void listNotesDoesNotGrowWithTheNumberOfNotes() throws Exception {
+        loginAs(OWNER);
+        for (int i = 0; i < 20; i++) {
+            noteService.create("more " + i, "one of many");
+        }
+
+        mockMvc.perform(get("/notes").with(owner()))
+                .andExpect(status().isOk())
+                .andExpect(atMost(2));
+    }
+
+    @Test
+    void createForm() throws Exception {
+        mockMvc.perform(get("/notes/create").with(owner()))
+                .andExpect(status().isOk())
+                .andExpect(atMost(0));
+    }
+
+    @Test
+    void createFromForm() throws Exception {
+        mockMvc.perform(post("/notes/create").with(owner()).with(csrf())
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("title", "from the form")
+                        .param("content", "budget"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(atMost(3));
+    }
+
+    @Test
+    void createFromFormWithErrors() throws Exception {
+        mockMvc.perform(post("/notes/create").with(owner()).with(csrf())
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("title", "")
+                        .param("content", "budget"))
+                .andExpect(status().isOk())
+                .andExpect(atMost(0));
+    }
+
+    @Test
+    void createFromJson() throws Exception {
+        mockMvc.perform(post("/notes/api").with(owner()).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"from json\",\"content\":\"budget\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(atMost(3));
+    }
+
+    @Test
+    void editForm() throws Exception {
+        mockMvc.perform(get("/notes/{id}/edit", myNoteId()).with(owner()))
+                .andExpect(status().isOk())
+                .andExpect(atMost(2));
+    }
+
+    @Test
+    void editFormOfSomeoneElsesNote() throws Exception {
+        mockMvc.perform(get("/notes/{id}/edit", otherNoteId).with(owner()))
+                .andExpect(status().isNotFound())
+                .andExpect(atMost(2));
+    }
+
+    @Test
+    void editSubmit() throws Exception {
+        mockMvc.perform(post("/notes/{id}/edit", myNoteId()).with(owner()).with(csrf())
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("title", "edited")
+                        .param("content", "budget"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(atMost(3));
+    }
+
+    @Test
+    void delete() throws Exception {
+        loginAs(OWNER);
+        Integer id = noteService.create("to delete", "budget").getId();
+
+        mockMvc.perform(post("/notes/{id}/delete", id).with(owner()).with(csrf()))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(atMost(3));
+    }
+
+    @Test
+    void upload() throws Exception {
+        mockMvc.perform(multipart("/notes/upload")
+                        .file(new MockMultipartFile("file", "budget.txt", "text/plain", "upload".getBytes()))
+                        .with(owner()).with(csrf()))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(atMost(11));
+    }
+
+    @Test
+    void uploadStream() throws Exception {
+        String boundary = "budgetboundary";
+        String body = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"stream.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "streamed upload\r\n"
+                + "--" + boundary + "--\r\n";
+
+        mockMvc.perform(post("/notes/upload/stream").with(owner()).with(csrf())
+                        .contentType("multipart/form-data; boundary=" + boundary)
+                        .content(body.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(atMost(11));
+    }
+
+    @Test
+    void download() throws Exception {
+        mockMvc.perform(get("/notes/files/{id}", myFileId()).with(owner()))
+                .andExpect(status().isOk())
+                .andExpect(atMost(2));
+    }
+
+    @Test
+    void thumbnail() throws Exception {
+        // A text file has no thumbnail: the lookup still costs its queries
+        mockMvc.perform(get("/notes/files/{id}/thumbnail", myFileId()).with(owner()))
+                .andExpect(status().isNotFound())
+                .andExpect(atMost(2));
+    }
+
+    // ============================================================
+    // AuthController (+ the login handled by Spring Security)
+    // ============================================================
+
+    @Test
+    void loginPage() throws Exception {
+        mockMvc.perform(get("/login"))
+                .andExpect(status().isOk())
+                .andExpect(atMost(0));
+    }
+
+    @Test
+    void login() throws Exception {
+        mockMvc.perform(post("/login").with(csrf())
+                        .param("username", OWNER)
+                        .param("password", PASSWORD))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(atMost(1));
+    }
+
+    @Test
+    void registerPage() throws Exception {
+        mockMvc.perform(get("/register"))
+                .andExpect(status().isOk())
+                .andExpect(atMost(0));
+    }
+
+    @Test
+    void registerSubmit() throws Exception {
+        mockMvc.perform(post("/register").with(csrf())
+                        .param("email", "new@budget.test")
+                        .param("password", PASSWORD))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(atMost(2));
+    }
+
+    @Test
+    void registerSubmitWithErrors() throws Exception {
+        mockMvc.perform(post("/register").with(csrf())
+                        .param("email", "not an email")
+                        .param("password", "short"))
+                .andExpect(status().isOk())
+                .andExpect(atMost(0));
+    }
+
+    // ============================================================
+    // AdminController
+    // ============================================================
+
+    /*
+     * The dashboard numbers are in-memory counters (AdminStats):
+     * only the emails of the top users are loaded (1 query).
+     */
+    @Test
+    void adminPanel() throws Exception {
+        mockMvc.perform(get("/admin").with(admin()))
+                .andExpect(status().isOk())
+                .andExpect(atMost(1));
+    }
+
+    /*
+     * A new note is counted right away, without a COUNT(*).
+     */
+    @Test
+    void adminPanelCountsNewNotes() throws Exception {
+        long before = adminStats.notes();
+        long mine = adminStats.notesOf(ownerId);
+
+        loginAs(OWNER);
+        noteService.create("counted", "dashboard");
+
+        assertEquals(before + 1, adminStats.notes());
+        assertEquals(mine + 1, adminStats.notesOf(ownerId));
+        mockMvc.perform(get("/admin").with(admin()))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(OWNER)));
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private static RequestPostProcessor owner() {
+        return SecurityMockMvcRequestPostProcessors.user(OWNER).roles("USER");
+    }
+
+    private static RequestPostProcessor admin() {
+        return SecurityMockMvcRequestPostProcessors.user(ADMIN).roles("ADMIN");
+    }
+
+    /*
+     * Services read the current user from the SecurityContext.
+     */
+    private static void loginAs(String email) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                email, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    private Integer myNoteId() {
+        return noteRepository.findAllByOwner_Id(ownerId).stream()
+                .map(Note::getId)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /*
+     * Uploads one file (outside the measured request) and returns its id.
+     */
+    private Integer myFileId() throws Exception {
+        var existing = uploadedFileRepository.findByUserIdAndFilename(ownerId, "download.txt");
+        if (existing.isPresent()) {
+            return existing.get().getId();
+        }
+
+        mockMvc.perform(multipart("/notes/upload")
+                        .file(new MockMultipartFile("file", "download.txt", "text/plain", "download me".getBytes()))
+                        .with(owner()).with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        var stored = uploadedFileRepository.findByUserIdAndFilename(ownerId, "download.txt").orElseThrow();
+        assertEquals(ownerId, stored.getUserId());
+        return stored.getId();
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-budget");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.lab10.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * SamplingTurboFilter: what is sampled and what is always let through.
+ * Uses its own LoggerContext, so the levels of the application's loggers are not touched.
+ */
+class SamplingTurboFilterTest {
+
+    private final SamplingTurboFilter filter = new SamplingTurboFilter();
+    private final LoggerContext context = new LoggerContext();
+
+    @AfterEach
+    void resetRates() {
+        for (LogCategory category : LogCategory.values()) {
+            category.setSampleRate(1.0);
+        }
+    }
+
+    @Test
+    void rateZeroDropsEveryDebugMessage() {
+        LogCategory.SQL.setSampleRate(0.0);
+        Logger sql = logger("org.hibernate.SQL", Level.DEBUG);
+
+        assertEquals(FilterReply.DENY, decide(sql, Level.DEBUG, "select ..."));
+        assertEquals(FilterReply.DENY, decide(logger("org.hibernate.orm.jdbc.bind", Level.TRACE), Level.TRACE, "binding ..."));
+    }
+
+    @Test
+    void rateOneKeepsEverything() {
+        Logger sql = logger("org.hibernate.SQL", Level.DEBUG);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(FilterReply.NEUTRAL, decide(sql, Level.DEBUG, "select ..."));
+        }
+    }
+
+    @Test
+    void partialRateKeepsAboutThatShare() {
+        LogCategory.SECURITY.setSampleRate(0.25);
+        Logger security = logger("org.springframework.security.web.FilterChainProxy", Level.DEBUG);
+
+        int kept = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (decide(security, Level.DEBUG, "Securing GET /") == FilterReply.NEUTRAL) kept++;
+        }
+        assertTrue(kept > 2_000 && kept < 3_000, "kept " + kept);
+    }
+
+    @Test
+    void infoAndAboveAreNeverSampled() {
+        LogCategory.SQL.setSampleRate(0.0);
+        Logger sql = logger("org.hibernate.SQL", Level.DEBUG);
+
+        assertEquals(FilterReply.NEUTRAL, decide(sql, Level.INFO, "slow query"));
+        assertEquals(FilterReply.NEUTRAL, decide(sql, Level.WARN, "slow query"));
+    }
+
+    @Test
+    void disabledLevelsAndGuardsAreLeftToLogback() {
+        LogCategory.SQL.setSampleRate(0.0);
+
+        // DEBUG while the logger is at INFO: logback drops it anyway
+        assertEquals(FilterReply.NEUTRAL, decide(logger("org.hibernate.SQL", Level.INFO), Level.DEBUG, "select ..."));
+
+        // isDebugEnabled() has no format and must stay true
+        assertEquals(FilterReply.NEUTRAL, decide(logger("org.hibernate.SQL", Level.DEBUG), Level.DEBUG, null));
+    }
+
+    @Test
+    void otherLoggersAreNotSampled() {
+        LogCategory.SQL.setSampleRate(0.0);
+        LogCategory.SECURITY.setSampleRate(0.0);
+
+        assertEquals(FilterReply.NEUTRAL, decide(logger("com.example.lab10.service.NoteService", Level.DEBUG), Level.DEBUG, "x"));
+    }
+
+    private Logger logger(String name, Level level) {
+        Logger logger = context.getLogger(name);
+        logger.setLevel(level);
+        return logger;
+    }
+
+    private FilterReply decide(Logger logger, Level level, String format) {
+        return filter.decide(null, logger, level, format, null, null);
+    }
+}
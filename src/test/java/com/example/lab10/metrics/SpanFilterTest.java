@@ -0,0 +1,66 @@
+package com.example.lab10.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * Who gets the Server-Timing header (every request is timed here).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SpanFilterTest {
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("spans.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+        registry.add("lab10.spans.sample-every", () -> "1");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void adminsGetTheHeader() throws Exception {
+        mockMvc.perform(get("/admin").with(user("admin@local.test").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", containsString("total;dur=")));
+    }
+
+    @Test
+    void otherUsersDoNot() throws Exception {
+        mockMvc.perform(get("/hello"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Server-Timing"));
+
+        mockMvc.perform(get("/user").with(user("user@local.test").roles("USER")))
+                .andExpect(header().doesNotExist("Server-Timing"));
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-spans");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.lab10.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * SpanRecorder: sampling, the ring buffer and the per-route summary.
+ */
+class SpanRecorderTest {
+
+    @Test
+    void samplesOneOfEveryNRequests() {
+        SpanRecorder recorder = new SpanRecorder(true, 100, false, 16);
+
+        int sampled = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (recorder.sample()) sampled++;
+        }
+        assertEquals(10, sampled);
+    }
+
+    @Test
+    void disabledNeverSamples() {
+        SpanRecorder recorder = new SpanRecorder(false, 1, true, 16);
+        assertFalse(recorder.sample());
+    }
+
+    @Test
+    void sampleEveryBelowOneMeansAll() {
+        SpanRecorder recorder = new SpanRecorder(true, 0, false, 16);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(recorder.sample());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void summaryKeepsOnlyTheLastRequestsPerRoute() {
+        SpanRecorder recorder = new SpanRecorder(true, 1, false, 4);
+
+        recorder.record("/old", row(Phase.TOTAL, 9_000_000));
+        for (int i = 1; i <= 4; i++) {
+            recorder.record("/notes", row(Phase.TOTAL, i * 1_000_000L));
+        }
+
+        Map<String, Object> summary = recorder.summary();
+        assertEquals(5L, summary.get("recorded"));
+
+        // The buffer holds 4 rows: "/old" was overwritten
+        Map<String, Object> routes = (Map<String, Object>) summary.get("routes");
+        assertEquals(1, routes.size());
+
+        Map<String, Object> notes = (Map<String, Object>) routes.get("/notes");
+        assertEquals(4, notes.get("count"));
+
+        Map<String, Object> total = (Map<String, Object>)
+                ((Map<String, Object>) notes.get("phases")).get(Phase.TOTAL.headerName());
+        assertEquals(2.5, total.get("avgMs"));
+        assertEquals(2.0, total.get("p50Ms"));
+        assertEquals(4.0, total.get("maxMs"));
+    }
+
+    private static long[] row(Phase phase, long nanos) {
+        long[] row = new long[Phase.values().length];
+        row[phase.ordinal()] = nanos;
+        return row;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.lab10.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Spans: untimed threads, phase sums, the Server-Timing value and the reuse
+ * of the per-thread object between requests.
+ */
+class SpansTest {
+
+    private static final long MS = 1_000_000;
+
+    @AfterEach
+    void endRequest() {
+        Spans spans = Spans.current();
+        if (spans != null) {
+            spans.end();
+        }
+    }
+
+    @Test
+    void nothingIsTimedOutsideARequest() {
+        assertEquals(0, Spans.start());
+        assertNull(Spans.current());
+
+        // Must not fail (background jobs call it too)
+        Spans.stop(Phase.QUERY, 0);
+    }
+
+    @Test
+    void aPhaseThatRunsTwiceAddsUp() {
+        Spans spans = Spans.begin();
+        assertTrue(Spans.start() != 0);
+
+        Spans.stop(Phase.QUERY, System.nanoTime() - 2 * MS);
+        Spans.stop(Phase.QUERY, System.nanoTime() - 3 * MS);
+
+        long[] nanos = spans.finish();
+        assertTrue(nanos[Phase.QUERY.ordinal()] >= 5 * MS);
+        assertTrue(nanos[Phase.TOTAL.ordinal()] > 0);
+    }
+
+    @Test
+    void serverTimingListsOnlyTheMeasuredPhases() {
+        Spans spans = Spans.begin();
+        Spans.stop(Phase.USER, System.nanoTime() - MS);
+
+        String header = spans.serverTiming();
+
+        // No controller ran, so the whole time is "filters"
+        assertTrue(header.matches("filters;dur=\\d+\\.\\d{3}, user;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"), header);
+        assertFalse(header.contains("query"));
+    }
+
+    @Test
+    void handlerAndRenderPhases() {
+        Spans spans = Spans.begin();
+        spans.handlerStarted();
+        spans.handlerFinished(true);
+        spans.beforeCommit();
+
+        String header = spans.serverTiming();
+        assertTrue(header.startsWith("filters;dur="), header);
+        assertTrue(header.contains("handler;dur="), header);
+        assertTrue(header.contains("render;dur="), header);
+    }
+
+    @Test
+    void beginResetsThePreviousRequest() {
+        Spans first = Spans.begin();
+        Spans.stop(Phase.QUERY, System.nanoTime() - MS);
+        first.showServerTiming();
+        first.end();
+
+        Spans second = Spans.begin();
+        assertEquals(first, second, "the object is reused on the same thread");
+        assertEquals(0, second.finish()[Phase.QUERY.ordinal()]);
+        assertFalse(second.isServerTimingShown());
+    }
+}
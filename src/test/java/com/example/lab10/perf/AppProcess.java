@@ -0,0 +1,99 @@
+package com.example.lab10.perf;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The app started as a separate process (jar, extracted jar or native binary).
+ *
+ * It gets a free port, its own SQLite file and upload folder in dataDir,
+ * and writes its output to a log file there. close() stops it.
+ */
+public final class AppProcess implements AutoCloseable {
+
+    private final Process process;
+    private final long startNanos;
+    private final int port;
+    private final Path log;
+
+    private AppProcess(Process process, long startNanos, int port, Path log) {
+        this.process = process;
+        this.startNanos = startNanos;
+        this.port = port;
+        this.log = log;
+    }
+
+    /*
+     * Starts the command (for example: java ... -jar app.jar, or ./lab10)
+     * with the port, database and upload folder added as arguments.
+     */
+    public static AppProcess start(List<String> command, Path dataDir, String logName) throws IOException {
+        int port = freePort();
+
+        List<String> full = new ArrayList<>(command);
+        full.add("--server.port=" + port);
+        full.add("--spring.datasource.url=jdbc:sqlite:" + dataDir.resolve("app.db"));
+        full.add("--lab10.upload.dir=" + dataDir.resolve("uploads"));
+
+        Path log = dataDir.resolve(logName);
+        ProcessBuilder builder = new ProcessBuilder(full)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+
+        long start = System.nanoTime();
+        return new AppProcess(builder.start(), start, port, log);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    /*
+     * Waits for the first 200 from GET /hello.
+     * Returns the time since the process was started (ms).
+     */
+    public long awaitReady(Duration timeout) throws IOException, InterruptedException {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest hello = HttpRequest.newBuilder(URI.create(baseUrl() + "/hello"))
+                .timeout(Duration.ofSeconds(1))
+                .build();
+
+        while (System.nanoTime() - startNanos < timeout.toNanos()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("App exited, see " + log);
+            }
+            try {
+                if (http.send(hello, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("No answer from /hello within " + timeout + ", see " + log);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.lab10.perf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+ * Small HTTP client for benchmarks and load tests.
+ *
+ * One instance = one browser: it keeps the session cookie and the CSRF token,
+ * so it can register, log in and post forms like a real user.
+ * It is thread-safe, so many worker threads can share one logged-in user.
+ * Redirects are not followed (a 302 after a POST counts as success).
+ */
+public class BenchmarkClient {
+
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+
+    private final String baseUrl;
+    private final HttpClient http;
+
+    private volatile String csrfToken;
+
+    public BenchmarkClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /*
+     * Registers a new user and logs in with it.
+     * Both forms are rate limited (SimpleRateLimitFilter), so keep the number of users small
+     * (or start the app with a higher lab10.ratelimit.limit).
+     */
+    public void registerAndLogin(String email, String password) throws IOException, InterruptedException {
+        register(email, password);
+        login(email, password);
+    }
+
+    /*
+     * Opens the register page and posts the form.
+     */
+    public HttpResponse<String> register(String email, String password) throws IOException, InterruptedException {
+        String token = csrfFrom(get("/register").body());
+        return postForm("/register", token, Map.of("email", email, "password", password));
+    }
+
+    /*
+     * Opens the login page and posts the form. Fails if the login is refused.
+     */
+    public HttpResponse<String> login(String email, String password) throws IOException, InterruptedException {
+        String token = csrfFrom(get("/login").body());
+        HttpResponse<String> login = postForm("/login", token, Map.of("username", email, "password", password));
+
+        String location = login.headers().firstValue("Location").orElse("");
+        if (login.statusCode() != 302 || location.contains("error")) {
+            throw new IllegalStateException("Login failed for " + email + ": " + login.statusCode() + " " + location);
+        }
+
+        // The session changes at login, so I read a fresh token from an authenticated page
+        csrfToken = csrfFrom(get("/notes/create").body());
+        return login;
+    }
+
+    /*
+     * Logs out (the session and its cookie are dropped by the server).
+     */
+    public HttpResponse<String> logout() throws IOException, InterruptedException {
+        HttpResponse<String> response = postForm("/logout", Map.of());
+        csrfToken = null;
+        return response;
+    }
+
+    public HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /*
+     * Posts an HTML form with the session's CSRF token.
+     */
+    public HttpResponse<String> postForm(String path, Map<String, String> fields) throws IOException, InterruptedException {
+        return postForm(path, csrfToken, fields);
+    }
+
+    private HttpResponse<String> postForm(String path, String token, Map<String, String> fields)
+            throws IOException, InterruptedException {
+        Map<String, String> all = new LinkedHashMap<>(fields);
+        all.put("_csrf", token);
+
+        String body = all.entrySet().stream()
+                .map(e -> encode(e.getKey()) + "=" + encode(e.getValue()))
+                .collect(Collectors.joining("&"));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /*
+     * Uploads one file as multipart/form-data (field "file"), like the upload form.
+     */
+    public HttpResponse<String> upload(String path, String filename, byte[] content)
+            throws IOException, InterruptedException {
+        String boundary = "----lab10" + Long.toHexString(System.nanoTime());
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 512);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"_csrf\"\r\n\r\n"
+                + csrfToken + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .header("X-CSRF-TOKEN", csrfToken)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /*
+     * True for 2xx and 3xx answers.
+     */
+    public static boolean ok(HttpResponse<?> response) {
+        return response.statusCode() >= 200 && response.statusCode() < 400;
+    }
+
+    private static String csrfFrom(String html) {
+        Matcher m = CSRF_INPUT.matcher(html);
+        if (!m.find()) {
+            throw new IllegalStateException("No CSRF token in page");
+        }
+        return m.group(1);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
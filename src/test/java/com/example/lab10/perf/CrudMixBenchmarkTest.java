@@ -0,0 +1,271 @@
+package com.example.lab10.perf;
+
+import com.example.lab10.Lab10Application;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Benchmark: note CRUD mix on platform threads vs virtual threads.
+ *
+ * It starts the app twice (fresh SQLite file each time), logs in two users
+ * and runs N client threads for a fixed time. Every client repeats:
+ *   create -> list -> edit -> list -> delete
+ * and the latency of every request is recorded (only after the warmup).
+ *
+ * Excluded from the normal build (tag "benchmark"). Run it with:
+ *   mvn test -Pbenchmark -Dtest=CrudMixBenchmarkTest
+ * Options: -Dbench.clients=64 -Dbench.warmup-seconds=5 -Dbench.seconds=20
+ *
+ * The virtual-thread run needs Java 21+; on Java 17 only the platform run is done.
+ */
+@Tag("benchmark")
+class CrudMixBenchmarkTest {
+
+    private static final int CLIENTS = Integer.getInteger("bench.clients", 32);
+    private static final int WARMUP_SECONDS = Integer.getInteger("bench.warmup-seconds", 5);
+    private static final int SECONDS = Integer.getInteger("bench.seconds", 15);
+
+    // Only 2 users: register + login are rate limited to 4 requests per minute
+    private static final int USERS = 2;
+    private static final String PASSWORD = "Bench!Passw0rd-Long";
+
+    private enum Op { CREATE, LIST, EDIT, DELETE }
+
+    @Test
+    void platformVsVirtualThreads() throws Exception {
+        Result platform = run(false);
+        System.out.println(platform.report("platform threads"));
+        assertTrue(platform.errors == 0, "platform run had errors");
+
+        if (Runtime.version().feature() < 21) {
+            System.out.println("Java " + Runtime.version().feature() + ": virtual-thread run skipped (needs Java 21+)");
+            return;
+        }
+
+        Result virtual = run(true);
+        System.out.println(virtual.report("virtual threads"));
+        System.out.printf("virtual / platform: throughput x%.2f, p99 x%.2f%n",
+                virtual.throughput() / platform.throughput(),
+                (double) virtual.percentile(null, 99) / platform.percentile(null, 99));
+        assertTrue(virtual.errors == 0, "virtual run had errors");
+    }
+
+    // ============================================================
+    // One run
+    // ============================================================
+
+    private Result run(boolean virtualThreads) throws Exception {
+        Path dir = Files.createTempDirectory("lab10-bench");
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(Lab10Application.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:sqlite:" + dir.resolve("bench.db"),
+                "--lab10.upload.dir=" + dir.resolve("uploads"),
+                "--lab10.upload.watch=false",
+                "--spring.threads.virtual.enabled=" + virtualThreads
+        );
+
+        try {
+            String baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+
+            List<BenchmarkClient> users = new ArrayList<>();
+            for (int u = 0; u < USERS; u++) {
+                BenchmarkClient client = new BenchmarkClient(baseUrl);
+                client.registerAndLogin("bench" + u + "@example.test", PASSWORD);
+                users.add(client);
+            }
+
+            long start = System.nanoTime();
+            long measureFrom = start + WARMUP_SECONDS * 1_000_000_000L;
+            long end = measureFrom + SECONDS * 1_000_000_000L;
+
+            ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+            List<Future<Worker>> futures = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                Worker worker = new Worker(i, users.get(i % USERS), measureFrom, end);
+                futures.add(pool.submit(() -> { worker.run(); return worker; }));
+            }
+
+            Result result = new Result(SECONDS);
+            for (Future<Worker> f : futures) {
+                result.add(f.get());
+            }
+            pool.shutdown();
+            return result;
+
+        } finally {
+            app.close();
+        }
+    }
+
+    // ============================================================
+    // Client worker
+    // ============================================================
+
+    private static final class Worker {
+
+        private final int id;
+        private final BenchmarkClient client;
+        private final long measureFrom;
+        private final long end;
+
+        private final Map<Op, LongList> latencies = new EnumMap<>(Op.class);
+        private int errors;
+        private int seq;
+
+        Worker(int id, BenchmarkClient client, long measureFrom, long end) {
+            this.id = id;
+            this.client = client;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            for (Op op : Op.values()) {
+                latencies.put(op, new LongList());
+            }
+        }
+
+        void run() throws Exception {
+            while (System.nanoTime() < end) {
+                String title = "w" + id + "-" + (seq++);
+
+                call(Op.CREATE, () -> client.postForm("/notes/create", Map.of("title", title, "content", "benchmark note")));
+                Integer noteId = findId(call(Op.LIST, () -> client.get("/notes")), title);
+                if (noteId == null) {
+                    errors++;
+                    continue;
+                }
+
+                call(Op.EDIT, () -> client.postForm("/notes/" + noteId + "/edit", Map.of("title", title, "content", "edited")));
+                call(Op.LIST, () -> client.get("/notes"));
+                call(Op.DELETE, () -> client.postForm("/notes/" + noteId + "/delete", Map.of()));
+            }
+        }
+
+        private HttpResponse<String> call(Op op, Request request) throws Exception {
+            long t0 = System.nanoTime();
+            HttpResponse<String> response = request.send();
+            long t1 = System.nanoTime();
+
+            if (t0 >= measureFrom && t1 <= end) {
+                latencies.get(op).add(t1 - t0);
+                if (!BenchmarkClient.ok(response)) errors++;
+            }
+            return response;
+        }
+
+        /*
+         * Finds the id of my note in the list page (titles are unique per worker).
+         */
+        private static Integer findId(HttpResponse<String> list, String title) {
+            Matcher m = Pattern.compile("<b>" + Pattern.quote(title) + "</b>.*?/notes/(\\d+)/edit", Pattern.DOTALL)
+                    .matcher(list.body());
+            return m.find() ? Integer.valueOf(m.group(1)) : null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        HttpResponse<String> send() throws Exception;
+    }
+
+    // ============================================================
+    // Results
+    // ============================================================
+
+    private static final class Result {
+
+        private final int seconds;
+        private final Map<Op, LongList> latencies = new EnumMap<>(Op.class);
+        private int errors;
+
+        Result(int seconds) {
+            this.seconds = seconds;
+            for (Op op : Op.values()) {
+                latencies.put(op, new LongList());
+            }
+        }
+
+        void add(Worker worker) {
+            worker.latencies.forEach((op, list) -> latencies.get(op).addAll(list));
+            errors += worker.errors;
+        }
+
+        double throughput() {
+            return (double) all().size / seconds;
+        }
+
+        /*
+         * Percentile in microseconds (op == null means all requests).
+         */
+        long percentile(Op op, double p) {
+            long[] sorted = (op == null ? all() : latencies.get(op)).sorted();
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1000;
+        }
+
+        String report(String name) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%n== %s: %d clients, %ds ==%n", name, CLIENTS, seconds));
+            sb.append(String.format("%-8s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p99 us", "max us"));
+            for (Op op : Op.values()) {
+                sb.append(line(op.name(), op));
+            }
+            sb.append(line("ALL", null));
+            sb.append(String.format("throughput: %.1f req/s, errors: %d%n", throughput(), errors));
+            return sb.toString();
+        }
+
+        private String line(String label, Op op) {
+            LongList list = op == null ? all() : latencies.get(op);
+            return String.format("%-8s %10d %10d %10d %10d%n",
+                    label, list.size, percentile(op, 50), percentile(op, 99), percentile(op, 100));
+        }
+
+        private LongList all() {
+            LongList all = new LongList();
+            latencies.values().forEach(all::addAll);
+            return all;
+        }
+    }
+
+    /*
+     * Growable long array (no boxing while recording).
+     */
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        void addAll(LongList other) {
+            for (int i = 0; i < other.size; i++) add(other.values[i]);
+        }
+
+        long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
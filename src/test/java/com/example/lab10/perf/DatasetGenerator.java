@@ -0,0 +1,399 @@
+package com.example.lab10.perf;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Fills a new SQLite database (and upload folder) with synthetic data,
+ * so performance questions can be asked at a realistic volume.
+ *
+ * What it writes:
+ * - users:   dataset.users accounts, all with the same password (dataset.password).
+ *            The BCrypt hash is computed once, so 1M users cost one hash, not 1M.
+ * - notes:   dataset.notes notes, spread with a Zipf-like skew (dataset.skew):
+ *            a few power users own most notes, many users have almost none.
+ *            Title 3-60 chars, content log-normal (median ~200 chars, max 1000 like the form).
+ * - uploads: dataset.uploads files, skewed over users the same way; the content comes
+ *            from dataset.blobs random blobs (log-normal size, median dataset.blob-median-kb),
+ *            popular blobs are shared by many uploads (like the same PDF sent around),
+ *            so dedup and ref counts look real. Blob files are written in the same
+ *            sharded layout as BlobStore ({upload dir}/blobs/ab/cd/<sha256>).
+ * - blobs, upload_jobs (DONE) and storage_usage rows that match the uploads.
+ *
+ * Speed: Flyway creates the schema, then everything is inserted with batched
+ * prepared statements in large transactions, with the journal and fsync off
+ * (it is a new file: if the run fails, delete it and start again). At the end
+ * the database is switched to WAL, like the app uses it. 10M notes take a few minutes.
+ *
+ * Run (needs a database file that does not exist yet):
+ *   mvn -Pdataset test-compile exec:java@dataset -Ddataset.users=100000 -Ddataset.notes=10000000
+ * Then start the app on it:
+ *   DB_URL=jdbc:sqlite:target/dataset/lab10.db ./mvnw spring-boot:run \
+ *     -Dspring-boot.run.arguments=--lab10.upload.dir=target/dataset/uploads
+ */
+public final class DatasetGenerator {
+
+    private static final Path DB = Paths.get(System.getProperty("dataset.db", "target/dataset/lab10.db"));
+    private static final Path UPLOAD_DIR = Paths.get(System.getProperty("dataset.upload-dir", "target/dataset/uploads"));
+
+    private static final int USERS = Integer.getInteger("dataset.users", 10_000);
+    private static final int NOTES = Integer.getInteger("dataset.notes", 1_000_000);
+    private static final int UPLOADS = Integer.getInteger("dataset.uploads", 20_000);
+    private static final int BLOBS = Integer.getInteger("dataset.blobs", 500);
+    private static final int BLOB_MEDIAN_KB = Integer.getInteger("dataset.blob-median-kb", 64);
+    private static final double SKEW = Double.parseDouble(System.getProperty("dataset.skew", "1.0"));
+    private static final String PASSWORD = System.getProperty("dataset.password", "Dataset!Passw0rd");
+    private static final long SEED = Long.getLong("dataset.seed", 42L);
+
+    // Rows per executeBatch() and per transaction
+    private static final int BATCH = 10_000;
+    private static final int COMMIT_EVERY = 500_000;
+
+    private static final int MAX_CONTENT = 1000;
+    private static final int MAX_BLOB_BYTES = 16 * 1024 * 1024;
+
+    private final Random random = new Random(SEED);
+    private final String text = textPool(1 << 20);
+    private final long now = System.currentTimeMillis();
+
+    public static void main(String[] args) throws Exception {
+        new DatasetGenerator().run();
+    }
+
+    private void run() throws Exception {
+        if (Files.exists(DB)) {
+            throw new IllegalStateException(DB + " already exists; the generator only fills a new database");
+        }
+        Files.createDirectories(DB.toAbsolutePath().getParent());
+        String url = "jdbc:sqlite:" + DB;
+
+        long start = System.nanoTime();
+        Flyway.configure().dataSource(url, null, null).locations("classpath:db/migration").load().migrate();
+
+        try (Connection c = DriverManager.getConnection(url)) {
+            try (Statement st = c.createStatement()) {
+                st.execute("PRAGMA journal_mode=OFF");
+                st.execute("PRAGMA synchronous=OFF");
+                st.execute("PRAGMA cache_size=-262144");   // 256 MB
+                st.execute("PRAGMA temp_store=MEMORY");
+            }
+            c.setAutoCommit(false);
+
+            int firstUserId = nextId(c, "users");
+            Zipf userSkew = new Zipf(USERS, SKEW, random);
+
+            timed("users", USERS, () -> insertUsers(c, firstUserId));
+            timed("notes", NOTES, () -> insertNotes(c, firstUserId, userSkew));
+            timed("uploads", UPLOADS, () -> insertUploads(c, firstUserId, userSkew));
+
+            try (Statement st = c.createStatement()) {
+                st.execute("INSERT OR REPLACE INTO storage_usage (user_id, used_bytes, reserved_bytes) "
+                        + "SELECT user_id, SUM(size), 0 FROM uploads GROUP BY user_id");
+            }
+            c.commit();
+
+            c.setAutoCommit(true);
+            try (Statement st = c.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+            }
+        }
+
+        System.out.printf("Done in %ds: %s (uploads in %s), password for every user: %s%n",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), DB, UPLOAD_DIR, PASSWORD);
+    }
+
+    // ============================================================
+    // Users
+    // ============================================================
+
+    private void insertUsers(Connection c, int firstId) throws SQLException {
+        // One hash for everybody: BCrypt(12) takes ~0.3 s, so per-user hashing would take days
+        String hash = new BCryptPasswordEncoder(12).encode(PASSWORD);
+
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO users (id, username, email, password, role) VALUES (?, ?, ?, ?, 'ROLE_USER')")) {
+            for (int i = 0; i < USERS; i++) {
+                String email = "user" + i + "@dataset.test";
+                ps.setInt(1, firstId + i);
+                ps.setString(2, email);
+                ps.setString(3, email);
+                ps.setString(4, hash);
+                ps.addBatch();
+                flush(c, ps, i + 1);
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // ============================================================
+    // Notes
+    // ============================================================
+
+    /*
+     * Notes are inserted user by user, so the user_id index grows in order.
+     */
+    private void insertNotes(Connection c, int firstUserId, Zipf userSkew) throws SQLException {
+        int[] perUser = userSkew.split(NOTES);
+        long written = 0;
+
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO notes (title, content, user_id) VALUES (?, ?, ?)")) {
+            for (int u = 0; u < USERS; u++) {
+                for (int n = 0; n < perUser[u]; n++) {
+                    ps.setString(1, title());
+                    ps.setString(2, text(logNormal(200, 0.8, 10, MAX_CONTENT)));
+                    ps.setInt(3, firstUserId + u);
+                    ps.addBatch();
+                    flush(c, ps, ++written);
+
+                    if (written % 1_000_000 == 0) {
+                        System.out.printf("  %,d notes%n", written);
+                    }
+                }
+            }
+            ps.executeBatch();
+        }
+
+        int[] sorted = perUser.clone();
+        Arrays.sort(sorted);
+        System.out.printf("  notes per user: median %d, p99 %d, max %d%n",
+                sorted[sorted.length / 2], sorted[(int) (sorted.length * 0.99)], sorted[sorted.length - 1]);
+    }
+
+    // ============================================================
+    // Uploads + blobs
+    // ============================================================
+
+    private void insertUploads(Connection c, int firstUserId, Zipf userSkew) throws Exception {
+        int[] perUser = userSkew.split(UPLOADS);
+
+        // Which blob each upload points to: a few blobs are very popular
+        Zipf blobSkew = new Zipf(BLOBS, SKEW, random);
+        int[] blobOf = new int[UPLOADS];
+        int[] refCount = new int[BLOBS];
+        for (int i = 0; i < UPLOADS; i++) {
+            blobOf[i] = blobSkew.sample();
+            refCount[blobOf[i]]++;
+        }
+
+        // Only blobs that are used are written
+        String[] sha = new String[BLOBS];
+        long[] size = new long[BLOBS];
+        long bytes = 0;
+        try (PreparedStatement blob = c.prepareStatement(
+                "INSERT INTO blobs (sha256, size, ref_count, created_at, mime_type, thumbnail) "
+                        + "VALUES (?, ?, ?, ?, 'application/octet-stream', 0)");
+             PreparedStatement job = c.prepareStatement(
+                     "INSERT INTO upload_jobs (blob_sha256, status, attempts, created_at, updated_at) "
+                             + "VALUES (?, 'DONE', 1, ?, ?)")) {
+
+            for (int b = 0; b < BLOBS; b++) {
+                if (refCount[b] == 0) continue;
+
+                byte[] content = new byte[logNormal(BLOB_MEDIAN_KB * 1024, 1.2, 1, MAX_BLOB_BYTES)];
+                random.nextBytes(content);
+                sha[b] = writeBlob(content);
+                size[b] = content.length;
+                bytes += content.length;
+
+                long created = pastMillis();
+                blob.setString(1, sha[b]);
+                blob.setLong(2, size[b]);
+                blob.setInt(3, refCount[b]);
+                blob.setLong(4, created);
+                blob.addBatch();
+
+                job.setString(1, sha[b]);
+                job.setLong(2, created);
+                job.setLong(3, created);
+                job.addBatch();
+            }
+            blob.executeBatch();
+            job.executeBatch();
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO uploads (user_id, filename, blob_sha256, size, created_at) VALUES (?, ?, ?, ?, ?)")) {
+            int i = 0;
+            for (int u = 0; u < USERS; u++) {
+                for (int n = 0; n < perUser[u]; n++, i++) {
+                    int b = blobOf[i];
+                    ps.setInt(1, firstUserId + u);
+                    ps.setString(2, "file-" + n + ".bin");
+                    ps.setString(3, sha[b]);
+                    ps.setLong(4, size[b]);
+                    ps.setLong(5, pastMillis());
+                    ps.addBatch();
+                    flush(c, ps, i + 1);
+                }
+            }
+            ps.executeBatch();
+        }
+
+        System.out.printf("  %d distinct blobs, %,d MB on disk%n",
+                Arrays.stream(refCount).filter(r -> r > 0).count(), bytes >> 20);
+    }
+
+    /*
+     * Same layout as BlobStore.pathFor(): blobs/ab/cd/<sha256>.
+     */
+    private String writeBlob(byte[] content) throws IOException, NoSuchAlgorithmException {
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        Path target = UPLOAD_DIR.resolve("blobs")
+                .resolve(sha256.substring(0, 2))
+                .resolve(sha256.substring(2, 4))
+                .resolve(sha256);
+        Files.createDirectories(target.getParent());
+        Files.write(target, content);
+        return sha256;
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /*
+     * Sends the batch every BATCH rows and commits every COMMIT_EVERY rows.
+     */
+    private static void flush(Connection c, PreparedStatement ps, long rows) throws SQLException {
+        if (rows % BATCH == 0) {
+            ps.executeBatch();
+        }
+        if (rows % COMMIT_EVERY == 0) {
+            c.commit();
+        }
+    }
+
+    private static int nextId(Connection c, String table) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /*
+     * Random piece of the text pool (no per-character work).
+     */
+    private String text(int length) {
+        int from = random.nextInt(text.length() - length);
+        return text.substring(from, from + length);
+    }
+
+    /*
+     * Title with at least 3 visible characters (the @ValidTitle rule).
+     */
+    private String title() {
+        String title = text(3 + random.nextInt(58)).trim();
+        return title.length() >= 3 ? title : "note";
+    }
+
+    /*
+     * Log-normal value with the given median, clamped to [min, max].
+     */
+    private int logNormal(double median, double sigma, int min, int max) {
+        double value = median * Math.exp(sigma * random.nextGaussian());
+        return (int) Math.max(min, Math.min(max, value));
+    }
+
+    // Some time in the last year
+    private long pastMillis() {
+        return now - (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(365));
+    }
+
+    private String textPool(int size) {
+        String[] words = ("lorem ipsum dolor sit amet meeting notes todo list call review draft budget plan "
+                + "project report idea shopping travel book recipe workout password reset invoice deadline "
+                + "team sprint release bug fix deploy server database backup migrate weekly monthly summary "
+                + "client email phone address birthday gift movie music garden car repair doctor school").split(" ");
+        StringBuilder sb = new StringBuilder(size + 16);
+        while (sb.length() < size) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return sb.toString();
+    }
+
+    private static void timed(String what, int rows, Step step) throws Exception {
+        long t0 = System.nanoTime();
+        step.run();
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("%-8s %,12d rows in %6.1fs (%,.0f rows/s)%n", what, rows, seconds, rows / seconds);
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /*
+     * Zipf-like popularity: item of rank r gets weight 1 / (r + 1)^skew.
+     * Ranks are shuffled, so popular users/blobs are not all at the start of the table.
+     */
+    private static final class Zipf {
+
+        private final double[] cumulative;
+        private final int[] itemOfRank;
+        private final Random random;
+
+        Zipf(int items, double skew, Random random) {
+            this.random = random;
+            this.cumulative = new double[items];
+            double sum = 0;
+            for (int r = 0; r < items; r++) {
+                sum += 1.0 / Math.pow(r + 1, skew);
+                cumulative[r] = sum;
+            }
+            for (int r = 0; r < items; r++) {
+                cumulative[r] /= sum;
+            }
+
+            itemOfRank = new int[items];
+            for (int i = 0; i < items; i++) {
+                itemOfRank[i] = i;
+            }
+            for (int i = items - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = itemOfRank[i];
+                itemOfRank[i] = itemOfRank[j];
+                itemOfRank[j] = tmp;
+            }
+        }
+
+        /*
+         * Random item, popular ones more often.
+         */
+        int sample() {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            return itemOfRank[Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1)];
+        }
+
+        /*
+         * Splits a total over the items by weight (exact total, no sampling noise).
+         */
+        int[] split(int total) {
+            int[] counts = new int[cumulative.length];
+            int given = 0;
+            for (int r = 0; r < cumulative.length; r++) {
+                int n = (int) Math.round(cumulative[r] * total) - given;
+                counts[itemOfRank[r]] = n;
+                given += n;
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.lab10.perf;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Load test: simulated users doing login, note CRUD and uploads, at fixed arrival rates.
+ *
+ * The app runs in its own JVM (so the load generator does not share its CPU
+ * budget with JIT/GC of the app) on a temporary SQLite file and upload folder.
+ * Everything is local: no network access is needed.
+ *
+ * Every virtual user is one browser (cookie + CSRF token) and repeats:
+ *   login -> N actions -> logout
+ * Actions are picked at random: list 50%, create 20%, edit 15%, delete 10%, upload 5%.
+ * After a logout, some users come back as a brand new user (register + login).
+ *
+ * Arrival rate: all users together send load.rates requests per second; every user
+ * sends one request every (users / rate) seconds. A user waits for each answer
+ * (closed loop), so when the app is slower than the schedule, requests pile up on the
+ * client side. Latency is measured from the scheduled time, not from the send time,
+ * so that waiting is counted too (no "coordinated omission"); "svc p99" is the
+ * plain send-to-answer time, for comparison.
+ *
+ * The warmup runs at the first rate; it also covers the first register + login of
+ * every user (BCrypt, slow on purpose), which would otherwise hide in the first stage.
+ *
+ * Each rate is a stage. The saturation point is the first stage where the throughput
+ * stops following the rate and p99 jumps.
+ *
+ * Output: per stage and endpoint, count, req/s and p50/p99/p99.9/max (HdrHistogram,
+ * already on the classpath through Micrometer), plus the full percentile distributions
+ * in target/load/*.hgrm (they can be plotted with HdrHistogram's plotter).
+ *
+ * Excluded from the normal build (tag "benchmark"). Run it with:
+ *   mvn test -Pbenchmark -Dtest=LoadTest
+ * Options: -Dload.users=32 -Dload.rates=20,50,100 -Dload.stage-seconds=20 -Dload.warmup-seconds=30
+ *          -Dload.session-actions=50 -Dload.new-user-share=0.1 -Dload.upload-bytes=16384
+ *          -Dload.app-args="--spring.profiles.active=jfr"   (extra arguments for the app)
+ */
+@Tag("benchmark")
+class LoadTest {
+
+    private static final int USERS = Integer.getInteger("load.users", 32);
+    private static final int[] RATES = Arrays.stream(System.getProperty("load.rates", "20,50,100").split(","))
+            .mapToInt(r -> Integer.parseInt(r.trim()))
+            .toArray();
+    private static final int STAGE_SECONDS = Integer.getInteger("load.stage-seconds", 20);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 30);
+    private static final int SESSION_ACTIONS = Integer.getInteger("load.session-actions", 50);
+    private static final double NEW_USER_SHARE = Double.parseDouble(System.getProperty("load.new-user-share", "0.1"));
+    private static final int UPLOAD_BYTES = Integer.getInteger("load.upload-bytes", 16 * 1024);
+    private static final String APP_ARGS = System.getProperty("load.app-args", "");
+
+    private static final String PASSWORD = "Load!Passw0rd-Long";
+    private static final Path OUTPUT = Paths.get("target", "load");
+
+    private static final Pattern NOTE_ID = Pattern.compile("/notes/(\\d+)/edit");
+
+    private enum Op {
+        REGISTER("POST /register"),
+        LOGIN("POST /login"),
+        LIST("GET /notes"),
+        CREATE("POST /notes/create"),
+        EDIT("POST /notes/{id}/edit"),
+        DELETE("POST /notes/{id}/delete"),
+        UPLOAD("POST /notes/upload"),
+        LOGOUT("POST /logout");
+
+        final String endpoint;
+
+        Op(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    @Test
+    void mixedTraffic() throws Exception {
+        Path dir = Files.createTempDirectory("lab10-load");
+
+        List<String> command = new ArrayList<>(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                // devtools is on the test classpath: no restart classloader
+                "-Dspring.devtools.restart.enabled=false",
+                "-cp", System.getProperty("java.class.path"),
+                "com.example.lab10.Lab10Application",
+                // Every simulated user comes from 127.0.0.1
+                "--lab10.ratelimit.limit=1000000"
+        ));
+        if (!APP_ARGS.isBlank()) {
+            command.addAll(List.of(APP_ARGS.trim().split("\\s+")));
+        }
+
+        try (AppProcess app = AppProcess.start(command, dir, "app.log")) {
+            app.awaitReady(Duration.ofSeconds(120));
+
+            Plan plan = new Plan(System.nanoTime() + 1_000_000_000L);
+            Stats stats = new Stats(RATES.length);
+            AtomicInteger userSeq = new AtomicInteger();
+
+            ExecutorService pool = Executors.newFixedThreadPool(USERS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                VirtualUser user = new VirtualUser(i, app.baseUrl(), plan, stats, userSeq);
+                futures.add(pool.submit(() -> { user.run(); return null; }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            pool.shutdown();
+
+            System.out.println(stats.report());
+            stats.writeHistograms();
+
+            // The lowest rate must be served without errors; higher stages may fail (that's the point)
+            assertEquals(0, stats.errors(0), "errors at " + RATES[0] + " req/s, see " + dir.resolve("app.log"));
+        }
+    }
+
+    // ============================================================
+    // Schedule
+    // ============================================================
+
+    /*
+     * Warmup (at the first rate), then one stage per rate.
+     */
+    private static final class Plan {
+
+        private final long start;
+        private final long measureFrom;
+        private final long end;
+
+        Plan(long start) {
+            this.start = start;
+            this.measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+            this.end = measureFrom + TimeUnit.SECONDS.toNanos((long) STAGE_SECONDS * RATES.length);
+        }
+
+        /*
+         * Stage of a point in time: -1 = warmup, RATES.length = after the end.
+         */
+        int stageAt(long nanos) {
+            if (nanos < measureFrom) return -1;
+            return (int) Math.min((nanos - measureFrom) / TimeUnit.SECONDS.toNanos(STAGE_SECONDS), RATES.length);
+        }
+
+        /*
+         * Time between two requests of one user in a stage.
+         */
+        long intervalNanos(int stage) {
+            int rate = RATES[Math.max(stage, 0)];
+            return TimeUnit.SECONDS.toNanos(1) * USERS / rate;
+        }
+    }
+
+    // ============================================================
+    // Virtual user
+    // ============================================================
+
+    private static final class VirtualUser {
+
+        private final String baseUrl;
+        private final Plan plan;
+        private final Stats stats;
+        private final AtomicInteger userSeq;
+        private final Random random;
+        private final byte[] upload = new byte[UPLOAD_BYTES];
+
+        private BenchmarkClient client;
+        private String email;
+        private boolean registered;
+        private boolean loggedIn;
+        private int actionsLeft;
+        private int seq;
+
+        // Ids of my notes, taken from the last list page
+        private final List<Integer> noteIds = new ArrayList<>();
+
+        VirtualUser(int id, String baseUrl, Plan plan, Stats stats, AtomicInteger userSeq) {
+            this.baseUrl = baseUrl;
+            this.plan = plan;
+            this.stats = stats;
+            this.userSeq = userSeq;
+            this.random = new Random(id);
+            newIdentity();
+        }
+
+        void run() throws InterruptedException {
+            // Users start spread over the first interval, not all at once
+            long next = plan.start + (long) (random.nextDouble() * plan.intervalNanos(-1));
+
+            while (next < plan.end && System.nanoTime() < plan.end) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+
+                Op op = nextOp();
+                execute(op, next);
+
+                next += plan.intervalNanos(plan.stageAt(next));
+            }
+        }
+
+        /*
+         * Session flow: register (new users) -> login -> actions -> logout.
+         */
+        private Op nextOp() {
+            if (!registered) return Op.REGISTER;
+            if (!loggedIn) return Op.LOGIN;
+            if (actionsLeft <= 0) return Op.LOGOUT;
+
+            actionsLeft--;
+            int dice = random.nextInt(100);
+            if (dice < 50) return Op.LIST;
+            if (dice < 70) return Op.CREATE;
+
+            // Edit/delete need a known note; the list page tells me which ones I have
+            if (dice < 95 && noteIds.isEmpty()) return Op.LIST;
+            if (dice < 85) return Op.EDIT;
+            if (dice < 95) return Op.DELETE;
+            return Op.UPLOAD;
+        }
+
+        private void execute(Op op, long scheduled) {
+            long sent = System.nanoTime();
+            boolean ok;
+            try {
+                ok = BenchmarkClient.ok(send(op));
+            } catch (Exception e) {
+                ok = false;
+                // After a failed login/register the user starts over
+                if (op == Op.REGISTER || op == Op.LOGIN) {
+                    newIdentity();
+                }
+            }
+            stats.record(plan, op, scheduled, sent, System.nanoTime(), ok);
+        }
+
+        private HttpResponse<String> send(Op op) throws Exception {
+            switch (op) {
+                case REGISTER -> {
+                    HttpResponse<String> response = client.register(email, PASSWORD);
+                    registered = true;
+                    return response;
+                }
+                case LOGIN -> {
+                    HttpResponse<String> response = client.login(email, PASSWORD);
+                    loggedIn = true;
+                    actionsLeft = SESSION_ACTIONS;
+                    return response;
+                }
+                case LOGOUT -> {
+                    HttpResponse<String> response = client.logout();
+                    loggedIn = false;
+                    if (random.nextDouble() < NEW_USER_SHARE) {
+                        newIdentity();
+                    }
+                    return response;
+                }
+                case LIST -> {
+                    HttpResponse<String> response = client.get("/notes");
+                    noteIds.clear();
+                    Matcher m = NOTE_ID.matcher(response.body());
+                    while (m.find()) {
+                        noteIds.add(Integer.valueOf(m.group(1)));
+                    }
+                    return response;
+                }
+                case CREATE -> {
+                    return client.postForm("/notes/create",
+                            Map.of("title", "load " + email + " " + (seq++), "content", "load test note"));
+                }
+                case EDIT -> {
+                    Integer id = noteIds.get(random.nextInt(noteIds.size()));
+                    return client.postForm("/notes/" + id + "/edit",
+                            Map.of("title", "edited " + (seq++), "content", "edited by the load test"));
+                }
+                case DELETE -> {
+                    Integer id = noteIds.remove(random.nextInt(noteIds.size()));
+                    return client.postForm("/notes/" + id + "/delete", Map.of());
+                }
+                case UPLOAD -> {
+                    // New content every time (new blob), a few file names per user (replaced)
+                    random.nextBytes(upload);
+                    return client.upload("/notes/upload", "load-" + random.nextInt(4) + ".bin", upload);
+                }
+                default -> throw new IllegalStateException(op.name());
+            }
+        }
+
+        /*
+         * A fresh browser for a user that does not exist yet.
+         */
+        private void newIdentity() {
+            client = new BenchmarkClient(baseUrl);
+            email = "load" + userSeq.incrementAndGet() + "@example.test";
+            registered = false;
+            loggedIn = false;
+            noteIds.clear();
+        }
+    }
+
+    // ============================================================
+    // Results
+    // ============================================================
+
+    private static final class Stats {
+
+        // Latency in microseconds, up to 1 hour, 3 significant digits
+        private static final long MAX_MICROS = TimeUnit.HOURS.toMicros(1);
+
+        private final Histogram[][] latency;       // [stage][op], from the scheduled time
+        private final Histogram[][] service;       // [stage][op], from the send time
+        private final LongAdder[][] completed;     // [stage][op], by completion time
+        private final LongAdder[][] errors;        // [stage][op]
+
+        Stats(int stages) {
+            latency = new Histogram[stages][Op.values().length];
+            service = new Histogram[stages][Op.values().length];
+            completed = new LongAdder[stages][Op.values().length];
+            errors = new LongAdder[stages][Op.values().length];
+            for (int s = 0; s < stages; s++) {
+                for (Op op : Op.values()) {
+                    latency[s][op.ordinal()] = new ConcurrentHistogram(MAX_MICROS, 3);
+                    service[s][op.ordinal()] = new ConcurrentHistogram(MAX_MICROS, 3);
+                    completed[s][op.ordinal()] = new LongAdder();
+                    errors[s][op.ordinal()] = new LongAdder();
+                }
+            }
+        }
+
+        /*
+         * Latency counts in the stage the request was scheduled in,
+         * throughput in the stage it finished in.
+         */
+        void record(Plan plan, Op op, long scheduled, long sent, long done, boolean ok) {
+            int scheduledStage = plan.stageAt(scheduled);
+            if (scheduledStage >= 0 && scheduledStage < latency.length) {
+                latency[scheduledStage][op.ordinal()].recordValue(Math.min((done - scheduled) / 1000, MAX_MICROS));
+                service[scheduledStage][op.ordinal()].recordValue(Math.min((done - sent) / 1000, MAX_MICROS));
+                if (!ok) errors[scheduledStage][op.ordinal()].increment();
+            }
+
+            int doneStage = plan.stageAt(done);
+            if (doneStage >= 0 && doneStage < completed.length) {
+                completed[doneStage][op.ordinal()].increment();
+            }
+        }
+
+        long errors(int stage) {
+            return Arrays.stream(errors[stage]).mapToLong(LongAdder::sum).sum();
+        }
+
+        String report() {
+            StringBuilder sb = new StringBuilder();
+            for (int s = 0; s < latency.length; s++) {
+                sb.append(String.format("%n== %d users, target %d req/s, %ds ==%n", USERS, RATES[s], STAGE_SECONDS));
+                sb.append(String.format("%-24s %8s %8s %9s %9s %9s %9s %9s %7s%n",
+                        "endpoint", "count", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99", "errors"));
+
+                Histogram all = new Histogram(MAX_MICROS, 3);
+                Histogram allService = new Histogram(MAX_MICROS, 3);
+                long allCompleted = 0;
+                for (Op op : Op.values()) {
+                    Histogram h = latency[s][op.ordinal()];
+                    long done = completed[s][op.ordinal()].sum();
+                    all.add(h);
+                    allService.add(service[s][op.ordinal()]);
+                    allCompleted += done;
+                    sb.append(line(op.endpoint, h, service[s][op.ordinal()], done, errors[s][op.ordinal()].sum()));
+                }
+                sb.append(line("ALL", all, allService, allCompleted, errors(s)));
+            }
+            return sb.toString();
+        }
+
+        private String line(String label, Histogram h, Histogram svc, long done, long errors) {
+            return String.format("%-24s %8d %8.1f %9.1f %9.1f %9.1f %9.1f %9.1f %7d%n",
+                    label, h.getTotalCount(), (double) done / STAGE_SECONDS,
+                    ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(99)),
+                    ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()),
+                    ms(svc.getValueAtPercentile(99)), errors);
+        }
+
+        /*
+         * One .hgrm file per stage and endpoint (values in ms).
+         */
+        void writeHistograms() throws IOException {
+            Files.createDirectories(OUTPUT);
+            for (int s = 0; s < latency.length; s++) {
+                for (Op op : Op.values()) {
+                    Histogram h = latency[s][op.ordinal()];
+                    if (h.getTotalCount() == 0) continue;
+
+                    Path file = OUTPUT.resolve(RATES[s] + "rps-" + op.name().toLowerCase() + ".hgrm");
+                    try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                        h.outputPercentileDistribution(out, 1000.0);
+                    }
+                }
+            }
+            System.out.println("Percentile distributions: " + OUTPUT.toAbsolutePath());
+        }
+
+        private static double ms(long micros) {
+            return micros / 1000.0;
+        }
+    }
+}
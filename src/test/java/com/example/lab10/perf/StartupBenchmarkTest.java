@@ -0,0 +1,92 @@
+package com.example.lab10.perf;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/*
+ * Benchmark: time from "java" process start to the first served GET /hello.
+ *
+ * Modes:
+ * - jar           plain executable jar
+ * - jar + fast    same jar with the "fast" profile (Flyway skipped when unchanged)
+ * - AOT + CDS     extracted jar from "mvn -Pfast-startup package" (only if it was built)
+ *
+ * Every mode starts several times on the same (new) database: the first start
+ * also runs the migrations, the next ones show a normal restart.
+ *
+ * Needs the packaged jar, so run:
+ *   mvn -Pfast-startup package -DskipTests && mvn test -Pbenchmark -Dtest=StartupBenchmarkTest
+ * Option: -Dbench.startup-runs=5
+ */
+@Tag("benchmark")
+class StartupBenchmarkTest {
+
+    private static final int RUNS = Integer.getInteger("bench.startup-runs", 3);
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    private static final Path TARGET = Paths.get("target");
+    private static final Path JAR = TARGET.resolve("lab10-0.0.1-SNAPSHOT.jar");
+    private static final Path FAST_DIR = TARGET.resolve("fast-startup");
+
+    @Test
+    void timeToFirstHello() throws Exception {
+        assumeTrue(Files.exists(JAR), "Build the jar first (mvn package)");
+
+        List<String> report = new ArrayList<>();
+        report.add(measure("jar", List.of("-jar", JAR.toString())));
+        report.add(measure("jar + fast", List.of("-Dspring.profiles.active=fast", "-jar", JAR.toString())));
+
+        if (Files.exists(FAST_DIR.resolve("lab10.jsa"))) {
+            report.add(measure("AOT + CDS", List.of(
+                    "-XX:SharedArchiveFile=" + FAST_DIR.resolve("lab10.jsa"),
+                    "-Dspring.aot.enabled=true",
+                    "-Dspring.profiles.active=fast",
+                    "-jar", FAST_DIR.resolve(JAR.getFileName()).toString())));
+        } else {
+            report.add("AOT + CDS: skipped (run mvn -Pfast-startup package)");
+        }
+
+        System.out.println();
+        System.out.println("== time to first /hello (ms) ==");
+        report.forEach(System.out::println);
+    }
+
+    /*
+     * Starts the app RUNS times and returns one report line.
+     */
+    private String measure(String mode, List<String> javaArgs) throws Exception {
+        Path dir = Files.createTempDirectory("lab10-startup");
+        long[] times = new long[RUNS];
+
+        for (int i = 0; i < RUNS; i++) {
+            times[i] = startOnce(javaArgs, dir, i);
+        }
+
+        long[] restarts = Arrays.copyOfRange(times, 1, times.length);
+        Arrays.sort(restarts);
+        String median = restarts.length == 0 ? "-" : String.valueOf(restarts[restarts.length / 2]);
+
+        return String.format("%-12s first start: %6d   restarts: %-24s median restart: %s",
+                mode, times[0], Arrays.toString(Arrays.copyOfRange(times, 1, times.length)), median);
+    }
+
+    private long startOnce(List<String> javaArgs, Path dir, int run) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(javaArgs);
+
+        try (AppProcess app = AppProcess.start(command, dir, "run-" + run + ".log")) {
+            return app.awaitReady(TIMEOUT);
+        }
+    }
+}
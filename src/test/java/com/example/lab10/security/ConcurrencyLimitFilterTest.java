@@ -0,0 +1,49 @@
+package com.example.lab10.security;
+
+import com.example.lab10.security.ConcurrencyLimitFilter.EndpointClass;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Which limit a request is counted against.
+ */
+class ConcurrencyLimitFilterTest {
+
+    @Test
+    void loginAndRegisterPostsAreAuth() {
+        assertEquals(EndpointClass.AUTH, classify("POST", "/login"));
+        assertEquals(EndpointClass.AUTH, classify("POST", "/register"));
+
+        // The forms themselves are plain pages
+        assertEquals(EndpointClass.READ, classify("GET", "/login"));
+    }
+
+    @Test
+    void uploadsHaveTheirOwnClass() {
+        assertEquals(EndpointClass.UPLOAD, classify("POST", "/notes/upload"));
+        assertEquals(EndpointClass.UPLOAD, classify("POST", "/notes/upload/stream"));
+        assertEquals(EndpointClass.UPLOAD, classify("PUT", "/notes/uploads/abc"));
+    }
+
+    @Test
+    void fileDownloadsAreNotReads() {
+        assertEquals(EndpointClass.DOWNLOAD, classify("GET", "/notes/files/42"));
+        assertEquals(EndpointClass.DOWNLOAD, classify("HEAD", "/notes/files/42"));
+
+        // Thumbnails are small and stay with the pages
+        assertEquals(EndpointClass.READ, classify("GET", "/notes/files/42/thumbnail"));
+    }
+
+    @Test
+    void everythingElseByMethod() {
+        assertEquals(EndpointClass.READ, classify("GET", "/notes"));
+        assertEquals(EndpointClass.WRITE, classify("POST", "/notes"));
+        assertEquals(EndpointClass.WRITE, classify("DELETE", "/notes/5"));
+    }
+
+    private static EndpointClass classify(String method, String path) {
+        return ConcurrencyLimitFilter.classify(new MockHttpServletRequest(method, path));
+    }
+}
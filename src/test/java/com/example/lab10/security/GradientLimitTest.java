@@ -0,0 +1,96 @@
+package com.example.lab10.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * GradientLimit: requests over the limit are refused, the limit follows the latency.
+ */
+class GradientLimitTest {
+
+    private static final long NORMAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void refusesOverTheLimit() {
+        GradientLimit limit = new GradientLimit(3, 1, 10, true);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.release(NORMAL);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void growsWhileLatencyStaysNormalAndTheLimitIsUsed() {
+        GradientLimit limit = new GradientLimit(10, 2, 100, true);
+
+        for (int i = 0; i < 200; i++) {
+            fill(limit);
+            drain(limit, NORMAL);
+        }
+
+        assertTrue(limit.limit() > 10, "limit " + limit.limit());
+    }
+
+    @Test
+    void doesNotGrowWhenIdle() {
+        GradientLimit limit = new GradientLimit(10, 2, 100, true);
+
+        // One request at a time: never close to the limit
+        for (int i = 0; i < 200; i++) {
+            limit.tryAcquire();
+            limit.release(NORMAL);
+        }
+
+        assertEquals(10, limit.limit());
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        GradientLimit limit = new GradientLimit(50, 2, 100, true);
+        for (int i = 0; i < 50; i++) {
+            fill(limit);
+            drain(limit, NORMAL);
+        }
+        int before = limit.limit();
+
+        // Saturated: every request takes 10x longer
+        for (int i = 0; i < 20; i++) {
+            fill(limit);
+            drain(limit, NORMAL * 10);
+        }
+
+        assertTrue(limit.limit() < before / 2, before + " -> " + limit.limit());
+        assertTrue(limit.limit() >= 2);
+    }
+
+    @Test
+    void fixedLimitNeverMoves() {
+        GradientLimit limit = new GradientLimit(4, 4, 4, false);
+        for (int i = 0; i < 50; i++) {
+            fill(limit);
+            drain(limit, NORMAL * (i % 2 == 0 ? 1 : 100));
+        }
+        assertEquals(4, limit.limit());
+    }
+
+    private static void fill(GradientLimit limit) {
+        while (limit.tryAcquire()) {
+            // take every free slot
+        }
+    }
+
+    private static void drain(GradientLimit limit, long rttNanos) {
+        while (limit.inFlight() > 0) {
+            limit.release(rttNanos);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.lab10.service;
+
+import com.example.lab10.model.StorageUsage;
+import com.example.lab10.model.UploadSession;
+import com.example.lab10.repository.UploadSessionRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * Resumable uploads through /notes/uploads: chunks in any order, the resume
+ * point, complete, abort, the cleanup of idle sessions, the quota reservation
+ * held by a session, and sessions of another user (always 404).
+ *
+ * Chunks of 4 bytes, so a 10 byte file has 3 chunks (4 + 4 + 2).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ChunkedUploadServiceTest {
+
+    private static final String OWNER = "owner@chunks.test";
+    private static final String OTHER = "other@chunks.test";
+    private static final String LIMITED = "limited@chunks.test";
+    private static final String PASSWORD = "Chunks!Passw0rd-Long";
+    private static final byte[] DATA = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("chunks.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+        registry.add("lab10.upload.chunk-bytes", () -> "4");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private StorageQuotaService quotaService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @MockitoSpyBean
+    private UploadSessionRepository sessionRepository;
+
+    private final ObjectMapper json = new ObjectMapper();
+
+    @BeforeAll
+    void users() {
+        userService.register(OWNER, PASSWORD);
+        userService.register(OTHER, PASSWORD);
+        userService.register(LIMITED, PASSWORD);
+    }
+
+    @Test
+    void resumesFromTheFirstMissingChunk() throws Exception {
+        String id = start("resume.txt");
+
+        putChunk(id, 0, 0, 4);
+        JsonNode afterLast = putChunk(id, 8, 8, 10);
+
+        // Chunk 1 is missing: the client resumes at offset 4
+        assertEquals(4, afterLast.get("nextOffset").asLong());
+        assertFalse(afterLast.get("complete").asBoolean());
+        assertEquals(4, sessionStatus(id).get("nextOffset").asLong());
+
+        putChunk(id, 4, 4, 8);
+        assertEquals(true, sessionStatus(id).get("complete").asBoolean());
+    }
+
+    @Test
+    void completeStoresTheAssembledFile() throws Exception {
+        String id = start("complete.txt");
+        putChunk(id, 8, 8, 10);
+        putChunk(id, 0, 0, 4);
+
+        // Not all chunks yet
+        mockMvc.perform(post("/notes/uploads/{id}/complete", id).with(as(OWNER)).with(csrf()))
+                .andExpect(status().isConflict());
+
+        putChunk(id, 4, 4, 8);
+        mockMvc.perform(post("/notes/uploads/{id}/complete", id).with(as(OWNER)).with(csrf()))
+                .andExpect(status().isOk());
+
+        String sha = jdbc.queryForObject("SELECT u.blob_sha256 FROM uploads u JOIN users s ON s.id = u.user_id "
+                + "WHERE s.email = ? AND u.filename = 'complete.txt'", String.class, OWNER);
+        assertEquals(new String(DATA, StandardCharsets.UTF_8),
+                Files.readString(blobStore.pathFor(sha), StandardCharsets.UTF_8));
+
+        // The session is gone
+        mockMvc.perform(get("/notes/uploads/{id}", id).with(as(OWNER)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void abortDeletesTheSessionAndItsFile() throws Exception {
+        String id = start("abort.txt");
+        putChunk(id, 0, 0, 4);
+        Path part = uploadService.chunkDir().resolve(id + ".part");
+
+        mockMvc.perform(delete("/notes/uploads/{id}", id).with(as(OWNER)).with(csrf()))
+                .andExpect(status().isNoContent());
+
+        assertFalse(Files.exists(part));
+        mockMvc.perform(get("/notes/uploads/{id}", id).with(as(OWNER)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/notes/uploads/{id}", id).param("offset", "4")
+                        .with(as(OWNER)).with(csrf())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(slice(4, 8)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void cleanupKeepsASessionThatResumedAfterItWasListed() throws Exception {
+        String idle = start("idle.txt");
+        String resumed = start("resumed.txt");
+        jdbc.update("UPDATE upload_sessions SET updated_at = 0 WHERE id IN (?, ?)", idle, resumed);
+
+        // Both are listed as idle, then a chunk of "resumed" arrives before the lock is taken
+        List<UploadSession> stale = List.of(
+                sessionRepository.findById(idle).orElseThrow(), sessionRepository.findById(resumed).orElseThrow());
+        Mockito.doAnswer(call -> {
+            jdbc.update("UPDATE upload_sessions SET updated_at = ? WHERE id = ?", System.currentTimeMillis(), resumed);
+            return stale;
+        }).when(sessionRepository).findAllByUpdatedAtBefore(anyLong());
+        try {
+            chunkedUploadService.deleteAbandonedSessions();
+        } finally {
+            Mockito.reset(sessionRepository);
+        }
+
+        mockMvc.perform(get("/notes/uploads/{id}", idle).with(as(OWNER)))
+                .andExpect(status().isNotFound());
+        assertFalse(Files.exists(uploadService.chunkDir().resolve(idle + ".part")));
+
+        putChunk(resumed, 0, 0, 4);
+        assertTrue(Files.exists(uploadService.chunkDir().resolve(resumed + ".part")));
+    }
+
+    @Test
+    void sessionHoldsItsQuotaUntilItEnds() throws Exception {
+        Integer userId = jdbc.queryForObject("SELECT id FROM users WHERE email = ?", Integer.class, LIMITED);
+        quotaService.usageOf(userId);
+        jdbc.update("UPDATE storage_usage SET quota_bytes = 25 WHERE user_id = ?", userId);
+
+        // Two sessions of 10 bytes fit, a third one would not (30 > 25)
+        String aborted = start(LIMITED, "a.txt").get("id").asText();
+        String completed = start(LIMITED, "b.txt").get("id").asText();
+        assertUsage(userId, 0, 20);
+        mockMvc.perform(post("/notes/uploads").with(as(LIMITED)).with(csrf())
+                        .param("filename", "c.txt")
+                        .param("size", String.valueOf(DATA.length)))
+                .andExpect(status().isInsufficientStorage());
+
+        // Abort gives the space back
+        mockMvc.perform(delete("/notes/uploads/{id}", aborted).with(as(LIMITED)).with(csrf()))
+                .andExpect(status().isNoContent());
+        assertUsage(userId, 0, 10);
+
+        // Complete turns the reservation into used bytes
+        for (int offset = 0; offset < DATA.length; offset += 4) {
+            mockMvc.perform(put("/notes/uploads/{id}", completed).param("offset", String.valueOf(offset))
+                            .with(as(LIMITED)).with(csrf())
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                            .content(slice(offset, Math.min(offset + 4, DATA.length))))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/notes/uploads/{id}/complete", completed).with(as(LIMITED)).with(csrf()))
+                .andExpect(status().isOk());
+        assertUsage(userId, 10, 0);
+
+        // An idle session gives it back when it is cleaned up
+        String idle = start(LIMITED, "c.txt").get("id").asText();
+        jdbc.update("UPDATE upload_sessions SET updated_at = 0 WHERE id = ?", idle);
+        assertUsage(userId, 10, 10);
+
+        // A restart drops the reservations, the open session takes its own back
+        quotaService.start();
+        assertUsage(userId, 10, 0);
+        chunkedUploadService.restoreReservations();
+        assertUsage(userId, 10, 10);
+
+        chunkedUploadService.deleteAbandonedSessions();
+        assertUsage(userId, 10, 0);
+    }
+
+    @Test
+    void sessionsOfAnotherUserAreNotFound() throws Exception {
+        String id = start("mine.txt");
+
+        mockMvc.perform(get("/notes/uploads/{id}", id).with(as(OTHER)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/notes/uploads/{id}", id).param("offset", "0")
+                        .with(as(OTHER)).with(csrf())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(slice(0, 4)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/notes/uploads/{id}/complete", id).with(as(OTHER)).with(csrf()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/notes/uploads/{id}", id).with(as(OTHER)).with(csrf()))
+                .andExpect(status().isNotFound());
+
+        // Made-up ids too
+        mockMvc.perform(post("/notes/uploads/{id}/complete", "no-such-id").with(as(OTHER)).with(csrf()))
+                .andExpect(status().isNotFound());
+
+        // Nothing of it was touched: the owner still sees an empty session
+        assertEquals(0, sessionStatus(id).get("receivedBytes").asLong());
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private static RequestPostProcessor as(String email) {
+        return SecurityMockMvcRequestPostProcessors.user(email).roles("USER");
+    }
+
+    private String start(String filename) throws Exception {
+        return start(OWNER, filename).get("id").asText();
+    }
+
+    private JsonNode start(String email, String filename) throws Exception {
+        String body = mockMvc.perform(post("/notes/uploads").with(as(email)).with(csrf())
+                        .param("filename", filename)
+                        .param("size", String.valueOf(DATA.length)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return json.readTree(body);
+    }
+
+    private void assertUsage(Integer userId, long used, long reserved) {
+        StorageUsage usage = quotaService.usageOf(userId);
+        assertEquals(used, usage.getUsedBytes());
+        assertEquals(reserved, usage.getReservedBytes());
+    }
+
+    private JsonNode putChunk(String id, long offset, int from, int to) throws Exception {
+        String body = mockMvc.perform(put("/notes/uploads/{id}", id).param("offset", String.valueOf(offset))
+                        .with(as(OWNER)).with(csrf())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(slice(from, to)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return json.readTree(body);
+    }
+
+    private JsonNode sessionStatus(String id) throws Exception {
+        String body = mockMvc.perform(get("/notes/uploads/{id}", id).with(as(OWNER)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return json.readTree(body);
+    }
+
+    private static byte[] slice(int from, int to) {
+        byte[] part = new byte[to - from];
+        System.arraycopy(DATA, from, part, 0, part.length);
+        return part;
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-chunks");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.lab10.service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * Downloads through /notes/files/{id}: ETag / If-None-Match, Range and If-Range.
+ * MockMvc has no sendfile support, so the bytes come from the transferTo() path.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FileDownloadServiceTest {
+
+    private static final String OWNER = "owner@downloads.test";
+    private static final String OTHER = "other@downloads.test";
+    private static final String PASSWORD = "Downloads!Passw0rd-Long";
+    private static final String DATA = "abcdefghijklmnopqrstuvwxyz";
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("downloads.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private Integer fileId;
+    private String etag;
+
+    @BeforeAll
+    void upload() throws Exception {
+        userService.register(OWNER, PASSWORD);
+        userService.register(OTHER, PASSWORD);
+
+        mockMvc.perform(multipart("/notes/upload")
+                        .file(new MockMultipartFile("file", "letters.txt", "text/plain",
+                                DATA.getBytes(StandardCharsets.UTF_8)))
+                        .with(as(OWNER))
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        fileId = jdbc.queryForObject("SELECT id FROM uploads WHERE filename = 'letters.txt'", Integer.class);
+        etag = "\"" + UploadServiceTest.sha256(DATA.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    @Test
+    void fullDownloadHasTheContentHashAsETag() throws Exception {
+        download(OWNER)
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, DATA.length()))
+                .andExpect(content().string(DATA));
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        download(OWNER, HttpHeaders.IF_NONE_MATCH, etag)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        // Weak validators and lists are compared by value
+        download(OWNER, HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + etag)
+                .andExpect(status().isNotModified());
+
+        download(OWNER, HttpHeaders.IF_NONE_MATCH, "\"other\"")
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void rangeReturnsPartialContent() throws Exception {
+        download(OWNER, HttpHeaders.RANGE, "bytes=2-5")
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/26"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().string("cdef"));
+
+        // Open end and suffix ranges
+        download(OWNER, HttpHeaders.RANGE, "bytes=20-")
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("uvwxyz"));
+        download(OWNER, HttpHeaders.RANGE, "bytes=-3")
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 23-25/26"))
+                .andExpect(content().string("xyz"));
+    }
+
+    @Test
+    void rangeOutsideTheFileIsNotSatisfiable() throws Exception {
+        download(OWNER, HttpHeaders.RANGE, "bytes=26-30")
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */26"));
+    }
+
+    @Test
+    void unsupportedRangesAreIgnored() throws Exception {
+        download(OWNER, HttpHeaders.RANGE, "bytes=0-1,4-5")
+                .andExpect(status().isOk())
+                .andExpect(content().string(DATA));
+        download(OWNER, HttpHeaders.RANGE, "items=0-1")
+                .andExpect(status().isOk())
+                .andExpect(content().string(DATA));
+    }
+
+    @Test
+    void ifRangeOnlyResumesTheSameVersion() throws Exception {
+        mockMvc.perform(get("/notes/files/{id}", fileId).with(as(OWNER))
+                        .header(HttpHeaders.RANGE, "bytes=24-")
+                        .header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("yz"));
+
+        // The client has another version: the whole file is sent
+        mockMvc.perform(get("/notes/files/{id}", fileId).with(as(OWNER))
+                        .header(HttpHeaders.RANGE, "bytes=24-")
+                        .header(HttpHeaders.IF_RANGE, "\"old-version\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string(DATA));
+    }
+
+    @Test
+    void filesOfAnotherUserAreNotFound() throws Exception {
+        download(OTHER).andExpect(status().isNotFound());
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private ResultActions download(String email) throws Exception {
+        return mockMvc.perform(request(email));
+    }
+
+    private ResultActions download(String email, String header, String value) throws Exception {
+        return mockMvc.perform(request(email).header(header, value));
+    }
+
+    private MockHttpServletRequestBuilder request(String email) {
+        return get("/notes/files/{id}", fileId).with(as(email));
+    }
+
+    private static RequestPostProcessor as(String email) {
+        return SecurityMockMvcRequestPostProcessors.user(email).roles("USER");
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-downloads");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
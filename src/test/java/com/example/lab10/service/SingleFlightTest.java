@@ -0,0 +1,152 @@
+package com.example.lab10.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * SingleFlight: callers of the same key share one call, its result and its errors.
+ * The leader is held on a latch until all the others have joined.
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight<Integer, Object> flights = new SingleFlight<>("test", Duration.ofSeconds(5), registry);
+    private final ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneCall() throws Exception {
+        Object result = new Object();
+        List<Future<Object>> futures = startCallers(CALLERS, () -> result);
+
+        waitForJoined(CALLERS - 1);
+        release.countDown();
+
+        for (Future<Object> f : futures) {
+            assertSame(result, f.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void errorsReachEveryCaller() throws Exception {
+        List<Future<Object>> futures = startCallers(CALLERS, () -> {
+            throw new IllegalStateException("database is locked");
+        });
+
+        waitForJoined(CALLERS - 1);
+        release.countDown();
+
+        for (Future<Object> f : futures) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void followersTimeOut() throws Exception {
+        SingleFlight<Integer, Object> quick = new SingleFlight<>("quick", Duration.ofMillis(50), registry);
+        CountDownLatch started = new CountDownLatch(1);
+
+        pool.submit(() -> quick.run(1, () -> {
+            started.countDown();
+            awaitRelease();
+            return "late";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> quick.run(1, () -> "mine"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+    }
+
+    @Test
+    void forgetStartsANewCall() throws Exception {
+        startCallers(1, () -> "before the write");
+        waitForCalls(1);
+
+        // A write finished: the next read must not reuse the running call
+        flights.forget(1);
+        assertEquals("after the write", flights.run(1, () -> "after the write"));
+    }
+
+    @Test
+    void differentKeysDoNotWait() {
+        assertEquals("a", flights.run(1, () -> "a"));
+        assertEquals("b", flights.run(2, () -> "b"));
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private List<Future<Object>> startCallers(int count, Supplier<Object> call) {
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(pool.submit(() -> flights.run(1, () -> {
+                calls.incrementAndGet();
+                awaitRelease();
+                return call.get();
+            })));
+        }
+        return futures;
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitForJoined(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (joined() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, joined());
+    }
+
+    private void waitForCalls(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, calls.get());
+    }
+
+    private int joined() {
+        return (int) registry.get("lab10.singleflight.calls").tag("name", "test").tag("role", "joined").counter().count();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.lab10.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * TopK: the biggest values, kept up to date by offer() and rebuilt by reset().
+ */
+class TopKTest {
+
+    private final TopK top = new TopK(2);
+
+    @Test
+    void keepsTheBiggestFirst() {
+        top.offer(1, 5);
+        top.offer(2, 9);
+        top.offer(3, 7);
+
+        assertEquals(List.of(2, 3), ids());
+    }
+
+    @Test
+    void aGrowingUserGetsIn() {
+        for (int id = 1; id <= 4; id++) {
+            top.offer(id, 10 + id);
+        }
+        top.offer(5, 1);
+        top.offer(5, 100);
+
+        assertEquals(List.of(5, 4), ids());
+    }
+
+    @Test
+    void aShrinkingUserIsReplacedByACandidate() {
+        top.offer(1, 10);
+        top.offer(2, 9);
+        top.offer(3, 8);
+        top.offer(1, 1);
+
+        assertEquals(List.of(2, 3), ids());
+    }
+
+    @Test
+    void zeroRemovesTheUser() {
+        top.offer(1, 3);
+        top.offer(1, 0);
+
+        assertEquals(List.of(), ids());
+    }
+
+    @Test
+    void resetRebuildsFromAllValues() {
+        top.offer(1, 50);
+        top.reset(Map.of(1, 1L, 2, 20L, 3, 30L, 4, 0L, 5, 10L));
+
+        assertEquals(List.of(3, 2), ids());
+    }
+
+    private List<Integer> ids() {
+        return top.top().stream().map(Map.Entry::getKey).toList();
+    }
+}
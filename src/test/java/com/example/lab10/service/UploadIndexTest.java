@@ -0,0 +1,174 @@
+package com.example.lab10.service;
+
+import com.example.lab10.dto.UploadedFileView;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * The upload index when blob files change outside the app: a shared blob
+ * that is deleted hides the files of all its owners, and they come back
+ * with the file. checkBlobs() is called directly (the schedule is 1 hour)
+ * and stats one blob per run; a failed download hides the file at once.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UploadIndexTest {
+
+    private static final String ALICE = "alice@index.test";
+    private static final String BOB = "bob@index.test";
+    private static final String PASSWORD = "Index!Passw0rd-Long";
+    private static final byte[] SHARED = "one blob, two owners".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OWN = "only alice".getBytes(StandardCharsets.UTF_8);
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("index.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "true");
+        registry.add("lab10.upload.watch-ms", () -> "3600000");
+        registry.add("lab10.upload.watch-batch", () -> "1");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UploadIndex uploadIndex;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeAll
+    void uploads() throws Exception {
+        userService.register(ALICE, PASSWORD);
+        userService.register(BOB, PASSWORD);
+
+        upload(ALICE, "a.txt", SHARED);
+        upload(ALICE, "own.txt", OWN);
+        upload(BOB, "b.txt", SHARED);
+    }
+
+    @Test
+    void deletedBlobIsHiddenUntilItComesBack() throws Exception {
+        Path blob = blobStore.pathFor(UploadServiceTest.sha256(SHARED));
+        Path aside = DIR.resolve("aside");
+
+        // Two blobs, one per run: a full round takes two runs
+        Files.move(blob, aside);
+        uploadIndex.checkBlobs();
+        uploadIndex.checkBlobs();
+        assertEquals(List.of("own.txt"), filenames(ALICE));
+        assertEquals(List.of(), filenames(BOB));
+
+        // Missing blobs are checked on every run
+        Files.move(aside, blob);
+        uploadIndex.checkBlobs();
+        assertEquals(List.of("a.txt", "own.txt"), filenames(ALICE));
+        assertEquals(List.of("b.txt"), filenames(BOB));
+    }
+
+    @Test
+    void oneRunOnlyChecksItsBatch() throws Exception {
+        Path shared = blobStore.pathFor(UploadServiceTest.sha256(SHARED));
+        Path own = blobStore.pathFor(UploadServiceTest.sha256(OWN));
+        Files.move(shared, DIR.resolve("aside-shared"));
+        Files.move(own, DIR.resolve("aside-own"));
+        try {
+            uploadIndex.checkBlobs();
+            assertTrue(visible() > 0, "one run must not stat every blob");
+
+            uploadIndex.checkBlobs();
+            assertEquals(0, visible());
+        } finally {
+            Files.move(DIR.resolve("aside-shared"), shared);
+            Files.move(DIR.resolve("aside-own"), own);
+            uploadIndex.checkBlobs();
+        }
+        assertEquals(3, visible());
+    }
+
+    @Test
+    void failedDownloadHidesTheFileRightAway() throws Exception {
+        Path blob = blobStore.pathFor(UploadServiceTest.sha256(SHARED));
+        Path aside = DIR.resolve("aside-download");
+        Integer id = jdbc.queryForObject("SELECT u.id FROM uploads u JOIN users s ON s.id = u.user_id "
+                + "WHERE s.email = ? AND u.filename = 'b.txt'", Integer.class, BOB);
+
+        Files.move(blob, aside);
+        try {
+            mockMvc.perform(get("/notes/files/{id}", id)
+                            .with(SecurityMockMvcRequestPostProcessors.user(BOB).roles("USER")))
+                    .andExpect(status().isNotFound());
+
+            // No background check ran
+            assertEquals(List.of(), filenames(BOB));
+            assertEquals(List.of("own.txt"), filenames(ALICE));
+        } finally {
+            Files.move(aside, blob);
+            uploadIndex.checkBlobs();
+        }
+        assertEquals(List.of("b.txt"), filenames(BOB));
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private void upload(String email, String filename, byte[] content) throws Exception {
+        mockMvc.perform(multipart("/notes/upload")
+                        .file(new MockMultipartFile("file", filename, "text/plain", content))
+                        .with(SecurityMockMvcRequestPostProcessors.user(email).roles("USER"))
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+    }
+
+    private List<String> filenames(String email) {
+        Integer userId = jdbc.queryForObject("SELECT id FROM users WHERE email = ?", Integer.class, email);
+        return uploadIndex.page(userId, 0, 100).map(UploadedFileView::getFilename).getContent();
+    }
+
+    private int visible() {
+        return filenames(ALICE).size() + filenames(BOB).size();
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-index");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.lab10.service;
+
+import com.example.lab10.repository.UploadJobRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * The upload pipeline when its job can't be written: the upload still
+ * succeeds, and the next poll adds the missing job. A failed job waits
+ * for its backoff before it is offered again.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UploadPipelineTest {
+
+    private static final String USER = "user@pipeline.test";
+    private static final String PASSWORD = "Pipeline!Passw0rd-Long";
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("pipeline.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+        registry.add("lab10.pipeline.poll-ms", () -> "3600000");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UploadPipeline uploadPipeline;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @MockitoSpyBean
+    private UploadJobRepository jobRepository;
+
+    @BeforeAll
+    void users() {
+        userService.register(USER, PASSWORD);
+    }
+
+    @Test
+    void failedSubmitKeepsTheUploadAndThePollAddsTheJob() throws Exception {
+        byte[] content = "saved even though its job was not".getBytes(StandardCharsets.UTF_8);
+        String sha = UploadServiceTest.sha256(content);
+
+        Mockito.doThrow(new IllegalStateException("database is locked"))
+                .when(jobRepository).enqueue(anyString(), anyLong());
+        try {
+            mockMvc.perform(multipart("/notes/upload")
+                            .file(new MockMultipartFile("file", "late.txt", "text/plain", content))
+                            .with(SecurityMockMvcRequestPostProcessors.user(USER).roles("USER"))
+                            .with(csrf()))
+                    .andExpect(status().is3xxRedirection());
+        } finally {
+            Mockito.reset(jobRepository);
+        }
+
+        assertEquals(1, count("SELECT COUNT(*) FROM uploads WHERE blob_sha256 = ?", sha));
+        assertEquals(0, count("SELECT COUNT(*) FROM upload_jobs WHERE blob_sha256 = ?", sha));
+
+        uploadPipeline.pollPending();
+        assertEquals(1, count("SELECT COUNT(*) FROM upload_jobs WHERE blob_sha256 = ?", sha));
+    }
+
+    @Test
+    void failedJobWaitsForItsBackoffBeforeTheNextAttempt() throws Exception {
+        byte[] content = "failed once, retried later".getBytes(StandardCharsets.UTF_8);
+        String sha = UploadServiceTest.sha256(content);
+
+        mockMvc.perform(multipart("/notes/upload")
+                        .file(new MockMultipartFile("file", "retry.txt", "text/plain", content))
+                        .with(SecurityMockMvcRequestPostProcessors.user(USER).roles("USER"))
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        // Let the first run finish, then make it look like it failed at 'now'
+        for (int i = 0; i < 100 && count("SELECT COUNT(*) FROM upload_jobs WHERE blob_sha256 = ? AND status = 'DONE'", sha) == 0; i++) {
+            Thread.sleep(50);
+        }
+        long now = System.currentTimeMillis();
+        jdbc.update("UPDATE upload_jobs SET status = 'PENDING', attempts = 2, updated_at = ? WHERE blob_sha256 = ?", now, sha);
+
+        // Second failure: twice the base backoff
+        assertFalse(isReady(sha, now + 1_500));
+        assertTrue(isReady(sha, now + 2_000));
+    }
+
+    private boolean isReady(String sha, long now) {
+        return jobRepository.findReady(now, 1_000, 100).stream()
+                .anyMatch(job -> sha.equals(job.getBlobSha256()));
+    }
+
+    private int count(String sql, String sha) {
+        Integer n = jdbc.queryForObject(sql, Integer.class, sha);
+        return n == null ? 0 : n;
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-pipeline");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
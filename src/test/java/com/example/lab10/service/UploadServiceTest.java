@@ -0,0 +1,311 @@
+package com.example.lab10.service;
+
+import com.example.lab10.model.StorageUsage;
+import com.example.lab10.model.UploadedFile;
+import com.example.lab10.repository.BlobRepository;
+import com.example.lab10.repository.UploadedFileRepository;
+import jakarta.servlet.MultipartConfigElement;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * Saving uploads into the blob store: the size limit of the classic upload,
+ * the quota reservation of classic and streaming uploads, one blob per content with a reference per upload,
+ * the reference count when the uploads row cannot be saved or the old blob
+ * cannot be released, and the one-time import of the old flat layout.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UploadServiceTest {
+
+    private static final String USER = "user@uploads.test";
+    private static final String ALICE = "alice@uploads.test";
+    private static final String BOB = "bob@uploads.test";
+    private static final String EXACT = "exact@uploads.test";
+    private static final String LIMITED = "limited@uploads.test";
+    private static final String PASSWORD = "Uploads!Passw0rd-Long";
+    private static final String ADMIN = "admin@local.test";
+
+    // Written flat into the upload folder before the app starts (old layout)
+    private static final byte[] LEGACY = "written by an older version".getBytes(StandardCharsets.UTF_8);
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("uploads.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private MultipartConfigElement multipartConfig;
+
+    @Autowired
+    private StorageQuotaService quotaService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @MockitoSpyBean
+    private UploadedFileRepository uploadedFileRepository;
+
+    @MockitoSpyBean
+    private BlobRepository blobRepository;
+
+    @BeforeAll
+    void users() {
+        userService.register(USER, PASSWORD);
+        userService.register(ALICE, PASSWORD);
+        userService.register(BOB, PASSWORD);
+        userService.register(EXACT, PASSWORD);
+        userService.register(LIMITED, PASSWORD);
+    }
+
+    @Test
+    void sameContentIsStoredOnceWithOneReferencePerUpload() throws Exception {
+        byte[] content = "the same bytes, uploaded by two users".getBytes(StandardCharsets.UTF_8);
+        String sha = sha256(content);
+
+        upload(ALICE, "shared.txt", content).andExpect(status().is3xxRedirection());
+        upload(BOB, "copy.txt", content).andExpect(status().is3xxRedirection());
+        assertEquals(2, refCount(sha));
+
+        // Alice replaces her file: the blob is still used by Bob
+        upload(ALICE, "shared.txt", bytes(7)).andExpect(status().is3xxRedirection());
+        assertEquals(1, refCount(sha));
+        assertTrue(Files.exists(blobStore.pathFor(sha)));
+
+        // Bob replaces his too: nobody uses it anymore
+        upload(BOB, "copy.txt", bytes(9)).andExpect(status().is3xxRedirection());
+        assertEquals(0, refCount(sha));
+        assertFalse(Files.exists(blobStore.pathFor(sha)));
+    }
+
+    @Test
+    void failedReleaseOfTheReplacedBlobKeepsTheUploadAndIsFixedAtStartup() throws Exception {
+        byte[] first = "first version, released late".getBytes(StandardCharsets.UTF_8);
+        String oldSha = sha256(first);
+        upload(USER, "replaced.txt", first).andExpect(status().is3xxRedirection());
+
+        Mockito.doThrow(new IllegalStateException("database is locked"))
+                .when(blobRepository).decrementRefCount(anyString());
+        try {
+            // The new version is saved, so this is not an error for the user
+            upload(USER, "replaced.txt", bytes(11)).andExpect(status().is3xxRedirection());
+        } finally {
+            Mockito.reset(blobRepository);
+        }
+        assertEquals(sha256(bytes(11)), jdbc.queryForObject("SELECT u.blob_sha256 FROM uploads u "
+                + "JOIN users s ON s.id = u.user_id WHERE s.email = ? AND u.filename = 'replaced.txt'", String.class, USER));
+        assertEquals(1, refCount(oldSha), "no upload uses it, but it is still counted");
+
+        blobStore.start();
+        assertEquals(0, refCount(oldSha));
+        assertFalse(Files.exists(blobStore.pathFor(oldSha)));
+        assertEquals(1, refCount(sha256(bytes(11))));
+    }
+
+    @Test
+    void classicUploadHasTheSameSizeLimit() {
+        // Not Boot's 1MB default: the multipart parser allows what the service allows
+        assertEquals(uploadService.getMaxBytes(), multipartConfig.getMaxFileSize());
+        assertTrue(multipartConfig.getMaxRequestSize() > multipartConfig.getMaxFileSize());
+    }
+
+    @Test
+    void legacyFilesAreImportedOnceForTheOwner() {
+        Path legacy = DIR.resolve("uploads").resolve("old-report.txt");
+        assertFalse(Files.exists(legacy), "the flat file is removed after the import");
+
+        String sha = jdbc.queryForObject("SELECT u.blob_sha256 FROM uploads u JOIN users s ON s.id = u.user_id "
+                + "WHERE s.email = ? AND u.filename = 'old-report.txt'", String.class, ADMIN);
+        assertEquals(sha256(LEGACY), sha);
+        assertEquals(1, refCount(sha));
+        assertEquals(new String(LEGACY, StandardCharsets.UTF_8), read(blobStore.pathFor(sha)));
+    }
+
+    @Test
+    void uploadOverQuotaIsRejectedAndItsReservationGivenBack() throws Exception {
+        Integer userId = userId(LIMITED);
+        quotaService.usageOf(userId);
+        jdbc.update("UPDATE storage_usage SET quota_bytes = 32 WHERE user_id = ?", userId);
+
+        upload(LIMITED, "a.bin", bytes(20)).andExpect(status().is3xxRedirection());
+        assertUsage(userId, 20);
+
+        // 20 + 20 > 32: rejected before the file is written
+        upload(LIMITED, "b.bin", bytes(20)).andExpect(status().isInsufficientStorage());
+        assertUsage(userId, 20);
+
+        // Replacing a file with a smaller one frees the difference
+        upload(LIMITED, "a.bin", bytes(5)).andExpect(status().is3xxRedirection());
+        assertUsage(userId, 5);
+
+        upload(LIMITED, "b.bin", bytes(20)).andExpect(status().is3xxRedirection());
+        assertUsage(userId, 25);
+    }
+
+    @Test
+    void streamingUploadOnlyCountsTheFileBytes() throws Exception {
+        Integer userId = userId(EXACT);
+        quotaService.usageOf(userId);
+        jdbc.update("UPDATE storage_usage SET quota_bytes = 24 WHERE user_id = ?", userId);
+
+        // One byte too many is rejected, and nothing stays reserved
+        stream(EXACT, "big.bin", bytes(25)).andExpect(status().isInsufficientStorage());
+        assertUsage(userId, 0);
+
+        // The request (boundaries, headers) is bigger than 24 bytes, the file is not
+        stream(EXACT, "fits.bin", bytes(24)).andExpect(status().is3xxRedirection());
+        assertUsage(userId, 24);
+
+        stream(EXACT, "more.bin", bytes(1)).andExpect(status().isInsufficientStorage());
+        assertUsage(userId, 24);
+    }
+
+    @Test
+    void referenceIsGivenBackWhenTheRowCannotBeSaved() throws Exception {
+        byte[] content = "the uploads row of this file is never saved".getBytes(StandardCharsets.UTF_8);
+        String sha = sha256(content);
+
+        Mockito.doThrow(new IllegalStateException("disk full"))
+                .when(uploadedFileRepository).save(any(UploadedFile.class));
+        try {
+            upload(USER, "lost.txt", content).andExpect(status().isInternalServerError());
+        } finally {
+            Mockito.reset(uploadedFileRepository);
+        }
+
+        // No upload uses the blob, so it is gone (row and file)
+        assertEquals(0, refCount(sha));
+        assertFalse(Files.exists(blobStore.pathFor(sha)));
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private ResultActions upload(String email, String filename, byte[] content) throws Exception {
+        return mockMvc.perform(multipart("/notes/upload")
+                .file(new MockMultipartFile("file", filename, "application/octet-stream", content))
+                .with(SecurityMockMvcRequestPostProcessors.user(email).roles("USER"))
+                .with(csrf()));
+    }
+
+    /*
+     * Streaming endpoint: the multipart body is written by hand, since the
+     * handler parses the raw request itself.
+     */
+    private ResultActions stream(String email, String filename, byte[] content) throws Exception {
+        String boundary = "lab10-test-boundary";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return mockMvc.perform(post("/notes/upload/stream")
+                .contentType("multipart/form-data; boundary=" + boundary)
+                .content(body.toByteArray())
+                .with(SecurityMockMvcRequestPostProcessors.user(email).roles("USER"))
+                .with(csrf().asHeader()));
+    }
+
+    private void assertUsage(Integer userId, long used) {
+        StorageUsage usage = quotaService.usageOf(userId);
+        assertEquals(used, usage.getUsedBytes());
+        assertEquals(0, usage.getReservedBytes(), "nothing stays reserved after an upload");
+    }
+
+    private Integer userId(String email) {
+        return jdbc.queryForObject("SELECT id FROM users WHERE email = ?", Integer.class, email);
+    }
+
+    // Every byte is the length, so each size is a different blob
+    private static byte[] bytes(int length) {
+        byte[] content = new byte[length];
+        Arrays.fill(content, (byte) length);
+        return content;
+    }
+
+    private int refCount(String sha) {
+        return jdbc.queryForList("SELECT ref_count FROM blobs WHERE sha256 = ?", Integer.class, sha)
+                .stream().findFirst().orElse(0);
+    }
+
+    private static String read(Path path) {
+        try {
+            return Files.readString(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path tempDir() {
+        try {
+            Path dir = Files.createTempDirectory("lab10-uploads");
+            Path uploads = Files.createDirectories(dir.resolve("uploads"));
+            Files.write(uploads.resolve("old-report.txt"), LEGACY);
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
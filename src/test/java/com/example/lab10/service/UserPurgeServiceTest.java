@@ -0,0 +1,202 @@
+package com.example.lab10.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ * Admin user purge: notes and uploads go in batches, a blob shared with another
+ * user stays, the account goes last, and the progress is in user_purges.
+ *
+ * Batches of 10 rows and no pause, so 25 notes take 3 transactions.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserPurgeServiceTest {
+
+    private static final String PASSWORD = "Purge!Passw0rd-Long";
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("purge.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+        registry.add("lab10.admin.purge.batch-size", () -> "10");
+        registry.add("lab10.admin.purge.pause-ms", () -> "0");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private UserPurgeService purgeService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private AdminStats adminStats;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @AfterEach
+    void logout() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void deletesTheUserAndAllTheirData() throws Exception {
+        Integer goneId = userService.register("gone@purge.test", PASSWORD).getId();
+        userService.register("stays@purge.test", PASSWORD);
+
+        loginAs("gone@purge.test");
+        for (int i = 0; i < 25; i++) {
+            noteService.create("note " + i, "to be purged");
+        }
+        upload("gone@purge.test", "shared.txt", "same content");
+        upload("gone@purge.test", "own.txt", "only mine");
+        upload("stays@purge.test", "shared.txt", "same content");
+
+        loginAs("stays@purge.test");
+        noteService.create("kept", "not purged");
+
+        String ownSha = sha("gone@purge.test", "own.txt");
+        String sharedSha = sha("gone@purge.test", "shared.txt");
+        long usersBefore = adminStats.users();
+
+        purgeService.start("gone@purge.test");
+        Map<String, Object> done = waitForEnd(goneId);
+
+        assertEquals(UserPurgeService.DONE, done.get("status"));
+        assertEquals(25, ((Number) done.get("notes_deleted")).intValue());
+        assertEquals(2, ((Number) done.get("uploads_deleted")).intValue());
+
+        assertEquals(0, count("SELECT COUNT(*) FROM users WHERE id = ?", goneId));
+        assertEquals(0, count("SELECT COUNT(*) FROM notes WHERE user_id = ?", goneId));
+        assertEquals(0, count("SELECT COUNT(*) FROM uploads WHERE user_id = ?", goneId));
+        assertEquals(0, count("SELECT COUNT(*) FROM storage_usage WHERE user_id = ?", goneId));
+        assertEquals(1, count("SELECT COUNT(*) FROM notes WHERE title = 'kept'"));
+
+        // The other user's copy keeps the shared blob
+        assertFalse(Files.exists(blobStore.pathFor(ownSha)));
+        assertTrue(Files.exists(blobStore.pathFor(sharedSha)));
+        assertEquals(1, count("SELECT ref_count FROM blobs WHERE sha256 = ?", sharedSha));
+
+        assertEquals(usersBefore - 1, adminStats.users());
+        assertEquals(0, adminStats.notesOf(goneId));
+
+        // The counters already went to 0, so the reconcile has nothing to correct
+        double corrections = meterRegistry.get("lab10.stats.corrections").counter().count();
+        adminStats.reconcile();
+        assertEquals(corrections, meterRegistry.get("lab10.stats.corrections").counter().count());
+    }
+
+    @Test
+    void otherUnreferencedBlobsAreLeftToTheBlobSweep() throws Exception {
+        Integer emptyId = userService.register("empty@purge.test", PASSWORD).getId();
+
+        // A blob at 0 references that this purge did not release
+        String orphan = "0".repeat(63) + "1";
+        jdbc.update("INSERT INTO blobs (sha256, size, ref_count, created_at, thumbnail) VALUES (?, 3, 0, 0, 0)", orphan);
+        Path file = blobStore.pathFor(orphan);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "old");
+
+        purgeService.start("empty@purge.test");
+        assertEquals(UserPurgeService.DONE, waitForEnd(emptyId).get("status"));
+        assertTrue(Files.exists(file));
+
+        blobStore.sweepUnreferenced();
+        assertFalse(Files.exists(file));
+        assertEquals(0, count("SELECT COUNT(*) FROM blobs WHERE sha256 = ?", orphan));
+    }
+
+    @Test
+    void adminsCantBePurged() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> purgeService.start("admin@local.test"));
+        assertEquals(400, e.getStatusCode().value());
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    private static void loginAs(String email) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                email, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    private void upload(String email, String filename, String content) throws Exception {
+        mockMvc.perform(multipart("/notes/upload")
+                        .file(new MockMultipartFile("file", filename, "text/plain", content.getBytes()))
+                        .with(SecurityMockMvcRequestPostProcessors.user(email).roles("USER")).with(csrf()))
+                .andExpect(status().is3xxRedirection());
+    }
+
+    private String sha(String email, String filename) {
+        return jdbc.queryForObject("SELECT u.blob_sha256 FROM uploads u JOIN users s ON s.id = u.user_id "
+                + "WHERE s.email = ? AND u.filename = ?", String.class, email, filename);
+    }
+
+    private int count(String sql, Object... args) {
+        return jdbc.queryForObject(sql, Integer.class, args);
+    }
+
+    private Map<String, Object> waitForEnd(Integer userId) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> status = purgeService.status(userId);
+            if (!UserPurgeService.RUNNING.equals(status.get("status"))) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Purge did not finish");
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-purge");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
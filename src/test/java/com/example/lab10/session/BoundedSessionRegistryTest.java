@@ -0,0 +1,172 @@
+package com.example.lab10.session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.security.core.session.SessionIdChangedEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * BoundedSessionRegistry: lookups, cleanup by event, by idle sweep and by capacity.
+ */
+class BoundedSessionRegistryTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    @Test
+    void sessionsAreFoundByIdAndByUser() {
+        BoundedSessionRegistry registry = registry(Duration.ofMinutes(10), 100);
+        registry.registerNewSession("s1", "ana@test");
+        registry.registerNewSession("s2", "ana@test");
+        registry.registerNewSession("s3", "bob@test");
+
+        assertEquals(2, registry.getAllSessions("ana@test", false).size());
+        assertEquals("bob@test", registry.getSessionInformation("s3").getPrincipal());
+        assertEquals(3, registry.sessionCount());
+        assertEquals(2, registry.principalCount());
+
+        // Expired (newer login) sessions are only listed on request
+        registry.getSessionInformation("s1").expireNow();
+        assertEquals(1, registry.getAllSessions("ana@test", false).size());
+        assertEquals(2, registry.getAllSessions("ana@test", true).size());
+    }
+
+    @Test
+    void destroyedSessionsAreRemoved() {
+        BoundedSessionRegistry registry = registry(Duration.ofMinutes(10), 100);
+        registry.registerNewSession("s1", "ana@test");
+
+        registry.onApplicationEvent(new Destroyed("s1"));
+
+        assertNull(registry.getSessionInformation("s1"));
+        assertEquals(0, registry.principalCount());
+        assertEquals(1.0, removed("destroyed"));
+    }
+
+    @Test
+    void changedSessionIdKeepsTheUser() {
+        BoundedSessionRegistry registry = registry(Duration.ofMinutes(10), 100);
+        registry.registerNewSession("old", "ana@test");
+
+        registry.onApplicationEvent(new SessionIdChangedEvent("source") {
+            @Override
+            public String getOldSessionId() {
+                return "old";
+            }
+
+            @Override
+            public String getNewSessionId() {
+                return "new";
+            }
+        });
+
+        assertNull(registry.getSessionInformation("old"));
+        assertNotNull(registry.getSessionInformation("new"));
+        assertEquals(1, registry.sessionCount());
+    }
+
+    @Test
+    void idleSessionsAreSweptWithoutEvents() {
+        // A timeout below zero: every session is already idle
+        BoundedSessionRegistry registry = registry(Duration.ofMinutes(-2), 100);
+        registry.registerNewSession("s1", "ana@test");
+        registry.registerNewSession("s2", "bob@test");
+
+        registry.sweep();
+
+        assertEquals(0, registry.sessionCount());
+        assertEquals(0, registry.principalCount());
+        assertEquals(2.0, removed("idle"));
+    }
+
+    @Test
+    void neverHoldsMoreThanTheCapacity() {
+        BoundedSessionRegistry registry = registry(Duration.ofMinutes(10), 3);
+        for (int i = 0; i < 10; i++) {
+            registry.registerNewSession("s" + i, "user" + i + "@test");
+            assertTrue(registry.sessionCount() <= 3, "size " + registry.sessionCount());
+        }
+
+        // The newest one is always kept
+        assertNotNull(registry.getSessionInformation("s9"));
+        assertEquals(List.of(), registry.getAllSessions("user0@test", true));
+        assertEquals(7.0, removed("capacity"));
+    }
+
+    @Test
+    void concurrentLoginsAtCapacityStayNearTheLimit() throws Exception {
+        int threads = 8;
+        BoundedSessionRegistry registry = registry(Duration.ofMinutes(10), 100);
+        for (int i = 0; i < 100; i++) {
+            registry.registerNewSession("old" + i, "old" + i + "@test");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> logins = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                logins.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 500; i++) {
+                        registry.registerNewSession("t" + thread + "-" + i, "t" + thread + "@test");
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> login : logins) {
+                login.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // Logins that found the eviction busy went on without it, but only within 1% of the
+        // limit (plus the ones that were registering at that moment)
+        assertTrue(registry.sessionCount() <= 100 + 1 + threads, "size " + registry.sessionCount());
+        assertTrue(registry.sessionCount() >= 100 - 1, "size " + registry.sessionCount());
+    }
+
+    private BoundedSessionRegistry registry(Duration timeout, int maxSessions) {
+        return new BoundedSessionRegistry(timeout, maxSessions, meters);
+    }
+
+    private double removed(String reason) {
+        return meters.get("lab10.sessions.removed").tag("reason", reason).counter().count();
+    }
+
+    private static final class Destroyed extends SessionDestroyedEvent {
+
+        private final String id;
+
+        Destroyed(String id) {
+            super(id);
+            this.id = id;
+        }
+
+        @Override
+        public List<SecurityContext> getSecurityContexts() {
+            return List.of();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.lab10.session;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Sessions in the SQLite "sessions" table (lab10.session.store=jdbc):
+ * attributes round trip, write-behind of the last access time, the expiry sweep,
+ * and "max sessions" information through JdbcSessionRegistry.
+ *
+ * The scheduled flush and sweep are pushed far away; the tests call them.
+ */
+@SpringBootTest
+class JdbcSessionRepositoryTest {
+
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DIR.resolve("sessions.db"));
+        registry.add("lab10.upload.dir", () -> DIR.resolve("uploads").toString());
+        registry.add("lab10.upload.watch", () -> "false");
+        registry.add("lab10.session.store", () -> "jdbc");
+        registry.add("lab10.session.flush-ms", () -> "3600000");
+        registry.add("lab10.session.sweep-ms", () -> "3600000");
+    }
+
+    @Autowired
+    private JdbcSessionRepository repository;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void attributesAreStoredAndLoaded() {
+        JdbcSession session = repository.createSession();
+        session.setAttribute("color", "blue");
+        repository.save(session);
+
+        JdbcSession loaded = repository.findById(session.getId());
+        assertNotNull(loaded);
+        assertEquals("blue", loaded.getAttribute("color"));
+    }
+
+    @Test
+    void lastAccessTimeIsWrittenByTheFlush() {
+        JdbcSession session = repository.createSession();
+        repository.save(session);
+        long stored = lastAccessInDb(session.getId());
+
+        JdbcSession loaded = repository.findById(session.getId());
+        loaded.setLastAccessedTime(Instant.ofEpochMilli(stored + 5000));
+        repository.save(loaded);
+
+        // No write yet, but this node already sees the new time
+        assertEquals(stored, lastAccessInDb(session.getId()));
+        assertEquals(stored + 5000, repository.findById(session.getId()).getLastAccessedTime().toEpochMilli());
+
+        repository.flush();
+        assertEquals(stored + 5000, lastAccessInDb(session.getId()));
+    }
+
+    @Test
+    void sweepDeletesExpiredSessions() {
+        JdbcSession session = repository.createSession();
+        session.setMaxInactiveInterval(Duration.ofMinutes(1));
+        // Expired longer ago than the sweep's grace time (2 flush intervals)
+        session.setLastAccessedTime(Instant.now().minus(Duration.ofDays(1)));
+        repository.save(session);
+
+        repository.sweep();
+
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM sessions WHERE id = ?", Integer.class, session.getId()));
+    }
+
+    @Test
+    void olderSessionOfAUserCanBeExpiredFromAnyNode() {
+        JdbcSession session = repository.createSession();
+        session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, new SecurityContextImpl(
+                new UsernamePasswordAuthenticationToken("max@session.test", null, AuthorityUtils.createAuthorityList("ROLE_USER"))));
+        repository.save(session);
+
+        List<SessionInformation> sessions = sessionRegistry.getAllSessions("max@session.test", false);
+        assertEquals(1, sessions.size());
+
+        // What ConcurrentSessionControlAuthenticationStrategy does on a second login
+        sessions.get(0).expireNow();
+
+        assertTrue(sessionRegistry.getSessionInformation(session.getId()).isExpired());
+        assertTrue(sessionRegistry.getAllSessions("max@session.test", false).isEmpty());
+        assertNull(sessionRegistry.getSessionInformation("no-such-session"));
+    }
+
+    private long lastAccessInDb(String id) {
+        return jdbc.queryForObject("SELECT last_access_time FROM sessions WHERE id = ?", Long.class, id);
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("lab10-sessions");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
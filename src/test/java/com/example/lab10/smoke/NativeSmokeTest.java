@@ -0,0 +1,79 @@
+package com.example.lab10.smoke;
+
+import com.example.lab10.perf.AppProcess;
+import com.example.lab10.perf.BenchmarkClient;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/*
+ * Smoke test for the native binary: register, log in, and create / edit / delete a note.
+ *
+ * If reflection or resource hints are missing (NativeHints), this is where it
+ * shows up: Flyway finds no migrations, a template is missing, an entity or
+ * validator can't be created, etc.
+ *
+ * Run it after the native build:
+ *   mvn -Pnative native:compile -DskipTests
+ *   mvn test -Dgroups=native-smoke -Dtest.excludedGroups=none
+ * Option: -Dnative.binary=path/to/lab10
+ */
+@Tag("native-smoke")
+class NativeSmokeTest {
+
+    private static final Path BINARY = Paths.get(System.getProperty("native.binary", "target/lab10"));
+
+    @Test
+    void loginAndNoteCrud() throws Exception {
+        assumeTrue(Files.isExecutable(BINARY), "Build the native image first (mvn -Pnative native:compile)");
+
+        Path dir = Files.createTempDirectory("lab10-native");
+        try (AppProcess app = AppProcess.start(List.of(BINARY.toAbsolutePath().toString()), dir, "native.log")) {
+            long readyMs = app.awaitReady(Duration.ofSeconds(30));
+            System.out.println("Native binary ready in " + readyMs + " ms");
+
+            BenchmarkClient client = new BenchmarkClient(app.baseUrl());
+            client.registerAndLogin("native@example.test", "Native!Passw0rd-Long");
+
+            // Create
+            HttpResponse<String> created = client.postForm("/notes/create",
+                    Map.of("title", "native note", "content", "first version"));
+            assertEquals(302, created.statusCode());
+
+            // Read
+            String list = client.get("/notes").body();
+            Integer id = noteId(list, "native note");
+            assertNotNull(id, "created note is not listed");
+            assertTrue(list.contains("first version"));
+
+            // Update
+            client.postForm("/notes/" + id + "/edit", Map.of("title", "native note", "content", "second version"));
+            assertTrue(client.get("/notes").body().contains("second version"));
+
+            // Delete
+            client.postForm("/notes/" + id + "/delete", Map.of());
+            assertFalse(client.get("/notes").body().contains("native note"));
+        }
+    }
+
+    private static Integer noteId(String html, String title) {
+        Matcher m = Pattern.compile("<b>" + Pattern.quote(title) + "</b>.*?/notes/(\\d+)/edit", Pattern.DOTALL)
+                .matcher(html);
+        return m.find() ? Integer.valueOf(m.group(1)) : null;
+    }
+}
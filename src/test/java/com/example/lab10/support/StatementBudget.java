@@ -0,0 +1,41 @@
+package com.example.lab10.support;
+
+import com.example.lab10.metrics.RequestMetricsFilter;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * MockMvc check on the number of SQL statements of one request.
+ *
+ * The count comes from RequestMetricsFilter (Hibernate statement inspector),
+ * so it covers the whole request: security filters, controller, services
+ * and the Thymeleaf render (lazy loads in a template are counted too).
+ *
+ *   mockMvc.perform(get("/notes")).andExpect(StatementBudget.atMost(2));
+ */
+public final class StatementBudget {
+
+    private StatementBudget() {
+    }
+
+    public static ResultMatcher atMost(int budget) {
+        return result -> {
+            int statements = of(result);
+            assertTrue(statements <= budget, () -> String.format(
+                    "%s %s ran %d SQL statements, the budget is %d",
+                    result.getRequest().getMethod(), result.getRequest().getRequestURI(), statements, budget));
+        };
+    }
+
+    /*
+     * Statements of a finished request.
+     */
+    public static int of(MvcResult result) {
+        Object count = result.getRequest().getAttribute(RequestMetricsFilter.STATEMENTS_ATTRIBUTE);
+        assertNotNull(count, "No statement count: RequestMetricsFilter is not in the MockMvc filter chain");
+        return (Integer) count;
+    }
+}